@@ -0,0 +1,143 @@
+package com.dr.ktjsonschema.cli
+
+import com.dr.ktjsonschema.JsonSchemaExporter
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.annotation.JacksonAnnotation
+import java.io.File
+import java.lang.reflect.AnnotatedElement
+import java.net.URLClassLoader
+import java.util.*
+import java.util.jar.JarFile
+
+/**
+ * Exports the schemas of the classes found in jars or classes dirs, without running the application they belong to.
+ *
+ * Usage: ktjsonschema-cli --output <dir or file> [options] <jar or classes dir>...
+ *
+ *   --format files|ndjson          files (default): one file per class, as read by PrebuiltJsonSchemas - see
+ *                                  JsonSchemaExporter. ndjson: a single file, one line per class - see NdjsonExporter
+ *   --manifest <file>              where hashes are kept between runs. Default: <output>.manifest
+ *   --classpath <path>             what the scanned classes depend on (but ktjsonschema and jackson)
+ *   --package <package>            only export classes of this package, or of its sub-packages
+ *   --all                          export every public class, not only the ones using jackson or ktjsonschema annotations
+ *   --config <config>              vanillaJsonSchemaDraft4 (default), html5EnabledSchema, or the name of a class
+ *                                  implementing Callable<JsonSchemaConfig>
+ *   --object-mapper-factory <class>    name of a class implementing Callable<ObjectMapper>. Default: a plain ObjectMapper
+ */
+object JsonSchemaCli {
+
+    private val ANNOTATIONS_PACKAGE = "com.dr.ktjsonschema.annotations."
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        var output: File? = null
+        var manifestFile: File? = null
+        var format = "files"
+        var configName = "vanillaJsonSchemaDraft4"
+        var objectMapperFactory: String? = null
+        var all = false
+        val classpath = ArrayList<File>()
+        val packages = ArrayList<String>()
+        val sources = ArrayList<File>()
+
+        var i = 0
+        while (i < args.size) {
+            val arg = args[i]
+            if (!arg.startsWith("--")) {
+                sources.add(File(arg))
+                i += 1
+                continue
+            }
+            if (arg == "--all") {
+                all = true
+                i += 1
+                continue
+            }
+            if (i + 1 == args.size)
+                throw IllegalArgumentException("Missing value of $arg")
+            val value = args[i + 1]
+            when (arg) {
+                "--output" -> output = File(value)
+                "--manifest" -> manifestFile = File(value)
+                "--format" -> format = value
+                "--classpath" -> value.split(File.pathSeparator).filter { it.isNotEmpty() }.forEach { classpath.add(File(it)) }
+                "--package" -> packages.add(value)
+                "--config" -> configName = value
+                "--object-mapper-factory" -> objectMapperFactory = value
+                else -> throw IllegalArgumentException("Unknown argument $arg")
+            }
+            i += 2
+        }
+        val outputFile = output
+        if (outputFile == null || sources.isEmpty())
+            throw IllegalArgumentException("Usage: ktjsonschema-cli --output <dir or file> [options] <jar or classes dir>...")
+        if (format != "files" && format != "ndjson")
+            throw IllegalArgumentException("--format must be files or ndjson")
+
+        val classLoader = URLClassLoader((sources + classpath).map { it.toURI().toURL() }.toTypedArray(), JsonSchemaCli::class.java.classLoader)
+        val objectMapper = JsonSchemaExporter.createObjectMapper(objectMapperFactory, classLoader)
+        val config = JsonSchemaExporter.createConfig(configName, classLoader)
+        val settingsId = JsonSchemaExporter.getSettingsId(config, objectMapper, objectMapperFactory, configName, classLoader)
+        val generator = JsonSchemaGenerator(objectMapper, config)
+
+        val classes = ArrayList<Class<*>>()
+        for (className in sources.flatMap { findClassNames(it) }.filter { isInPackages(it, packages) }.toSortedSet()) {
+            val clazz = try {
+                Class.forName(className, false, classLoader)
+            } catch (e: LinkageError) {
+                System.err.println("Skipping $className: $e")
+                continue
+            } catch (e: ClassNotFoundException) {
+                System.err.println("Skipping $className: $e")
+                continue
+            }
+            if (JsonSchemaExporter.isExportable(clazz) && (all || usesAnnotations(clazz)))
+                classes.add(clazz)
+        }
+
+        val manifest = manifestFile ?: File(outputFile.path + ".manifest")
+        if (format == "ndjson") {
+            val result = NdjsonExporter(generator, outputFile, manifest, settingsId).export(classes)
+            println("JSON Schemas: ${result.changed.size} changed, ${result.unchanged.size} unchanged, " +
+                    "${result.skipped.size} up-to-date, ${result.removed.size} removed - ${outputFile.path} " +
+                    if (result.rewritten) "written" else "up-to-date")
+        } else {
+            val result = JsonSchemaExporter(generator, outputFile, manifest, settingsId).export(classes)
+            println("JSON Schemas: ${result.written.size} written, ${result.unchanged.size} unchanged, " +
+                    "${result.skipped.size} up-to-date, ${result.deleted.size} deleted")
+        }
+    }
+
+    // Names of the classes in a jar or classes dir
+    private fun findClassNames(source: File): List<String> {
+        val paths = if (source.isDirectory) {
+            source.walkTopDown().filter { it.isFile }.map { it.toRelativeString(source).replace(File.separatorChar, '/') }.toList()
+        } else {
+            JarFile(source).use { it.entries().toList().filter { !it.isDirectory }.map { it.name } }
+        }
+        return paths.filter { it.endsWith(".class") && !it.endsWith("package-info.class") && !it.startsWith("META-INF/") }
+                .map { it.removeSuffix(".class").replace('/', '.') }
+    }
+
+    private fun isInPackages(className: String, packages: List<String>): Boolean =
+            packages.isEmpty() || packages.any { className.startsWith(it + ".") }
+
+    // Whether clazz, its fields or its methods use jackson or ktjsonschema annotations
+    private fun usesAnnotations(clazz: Class<*>): Boolean {
+        return try {
+            val annotated = ArrayList<AnnotatedElement>()
+            annotated.add(clazz)
+            annotated.addAll(clazz.declaredFields)
+            annotated.addAll(clazz.declaredMethods)
+            annotated.any { it.declaredAnnotations.any { isSchemaAnnotation(it) } }
+        } catch (e: LinkageError) {
+            System.err.println("Skipping ${clazz.name}: $e")
+            false
+        }
+    }
+
+    private fun isSchemaAnnotation(annotation: Annotation): Boolean {
+        val annotationType = annotation.annotationClass.java
+        return annotationType.isAnnotationPresent(JacksonAnnotation::class.java) || annotationType.name.startsWith(ANNOTATIONS_PACKAGE)
+    }
+}
@@ -0,0 +1,217 @@
+package com.dr.ktjsonschema.cli
+
+import com.dr.ktjsonschema.JsonSchemaExporter
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.sha256Hex
+import com.fasterxml.jackson.databind.SerializationFeature
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Writes the schemas of many classes to a single NDJSON file - one line per class: {"class":"<name>","schema":{...}}
+ *
+ * Exporting is incremental, as with JsonSchemaExporter: manifestFile keeps the fingerprint of each class, the hash of
+ * its line and where that line is in outputFile. The line of a class whose fingerprint did not change is copied
+ * from the previous outputFile, the others are generated in parallel.
+ *
+ * Lines are written in the order the classes are given, each as soon as it and the ones before it are ready - at most
+ * a few lines per thread are held in memory. They are streamed through a buffered FileChannel into a temporary file,
+ * which replaces outputFile only when its content changed.
+ *
+ * @param generator generates the schemas
+ * @param outputFile the NDJSON file
+ * @param manifestFile where fingerprints and hashes are kept between exports
+ * @param settingsId Default = "" - identifies the ObjectMapper and config of generator - when it changes, every
+ *      schema is generated again. See JsonSchemaExporter.getSettingsId
+ * @param threads Default = one per available processor - how many schemas are generated at once
+ */
+class NdjsonExporter @JvmOverloads constructor(
+        val generator: JsonSchemaGenerator,
+        val outputFile: File,
+        val manifestFile: File,
+        val settingsId: String = "",
+        val threads: Int = Runtime.getRuntime().availableProcessors()
+) {
+
+    companion object {
+        private val FILE_KEY = "file"
+        private val SETTINGS_KEY = "settings"
+        private val CLASS_KEY_PREFIX = "class."
+        private val FINGERPRINT_KEY_PREFIX = "fingerprint."
+        private val LINE_KEY_PREFIX = "line."
+        private val BUFFER_SIZE = 64 * 1024
+        private val NEW_LINE = byteArrayOf('\n'.toByte())
+
+        // Lines generated ahead of the one being written, per thread
+        private val LINES_AHEAD_PER_THREAD = 4
+    }
+
+    /**
+     * @param changed classes whose schema is new or changed
+     * @param unchanged classes generated again, to the same schema as in the previous export
+     * @param skipped classes not generated again since their fingerprint did not change - their line was copied
+     * @param removed names of the classes no longer exported
+     * @param rewritten whether outputFile was written - false if its content would be the same
+     */
+    data class Result(val changed: List<Class<*>>, val unchanged: List<Class<*>>, val skipped: List<Class<*>>,
+                      val removed: List<String>, val rewritten: Boolean)
+
+    // A line to write: copied from the previous file when generated is null
+    private class PendingLine(val clazz: Class<*>, val fingerprint: String?, val generated: Future<ByteArray>?)
+
+    fun export(classes: Collection<Class<*>>): Result {
+        val previousManifest = readManifest()
+        val settingsChanged = previousManifest.getProperty(SETTINGS_KEY) != settingsId
+        val manifest = Properties()
+        manifest.setProperty(SETTINGS_KEY, settingsId)
+        val changed = ArrayList<Class<*>>()
+        val unchanged = ArrayList<Class<*>>()
+        val skipped = ArrayList<Class<*>>()
+        // The hash of each line - the file is identified by them
+        val lineHashes = ArrayList<String>()
+
+        val fingerprints = JsonSchemaExporter.getFingerprints(generator.rootObjectMapper, LinkedHashSet(classes))
+        val previousFile = if (outputFile.isFile && !settingsChanged) RandomAccessFile(outputFile, "r") else null
+        val tempFile = File(outputFile.absoluteFile.parentFile, outputFile.name + ".tmp")
+        tempFile.parentFile.mkdirs()
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            FileOutputStream(tempFile).use {
+                val output = BufferedChannelOutput(it.channel)
+
+                fun writeLine(pending: PendingLine) {
+                    val clazz = pending.clazz
+                    val previousLine = if (pending.generated == null) readPreviousLine(previousFile!!, clazz, previousManifest) else null
+                    val bytes = previousLine ?: getResult(pending.generated ?: executor.submit(Callable { generateLine(clazz) }))
+                    val hash = sha256Hex(bytes)
+                    when {
+                        previousLine != null -> skipped.add(clazz)
+                        hash == previousManifest.getProperty(CLASS_KEY_PREFIX + clazz.name) -> unchanged.add(clazz)
+                        else -> changed.add(clazz)
+                    }
+                    manifest.setProperty(CLASS_KEY_PREFIX + clazz.name, hash)
+                    manifest.setProperty(FINGERPRINT_KEY_PREFIX + clazz.name, pending.fingerprint ?: "")
+                    manifest.setProperty(LINE_KEY_PREFIX + clazz.name, "${output.position}:${bytes.size}")
+                    lineHashes.add(hash)
+                    output.write(bytes)
+                    output.write(NEW_LINE)
+                }
+
+                val pendingLines = ArrayDeque<PendingLine>()
+                for ((clazz, fingerprint) in fingerprints) {
+                    val reusable = previousFile != null && fingerprint != null &&
+                            fingerprint == previousManifest.getProperty(FINGERPRINT_KEY_PREFIX + clazz.name)
+                    pendingLines.add(PendingLine(clazz, fingerprint, if (reusable) null else executor.submit(Callable { generateLine(clazz) })))
+                    while (pendingLines.size > threads * LINES_AHEAD_PER_THREAD) {
+                        writeLine(pendingLines.poll())
+                    }
+                }
+                while (pendingLines.isNotEmpty()) {
+                    writeLine(pendingLines.poll())
+                }
+                output.flush()
+            }
+        } finally {
+            executor.shutdownNow()
+            previousFile?.close()
+        }
+
+        val fileHash = sha256Hex(lineHashes.joinToString("\n").toByteArray(Charsets.UTF_8))
+        manifest.setProperty(FILE_KEY, fileHash)
+        val rewritten = !outputFile.isFile || fileHash != previousManifest.getProperty(FILE_KEY)
+        if (rewritten) {
+            if (!tempFile.renameTo(outputFile) && !(outputFile.delete() && tempFile.renameTo(outputFile)))
+                throw Exception("Could not replace $outputFile")
+        } else {
+            tempFile.delete()
+        }
+
+        val classNames = fingerprints.keys.map { it.name }.toSet()
+        val removed = previousManifest.stringPropertyNames()
+                .filter { it.startsWith(CLASS_KEY_PREFIX) }
+                .map { it.substring(CLASS_KEY_PREFIX.length) }
+                .filter { !classNames.contains(it) }
+                .sorted()
+
+        writeManifest(manifest)
+        return Result(changed, unchanged, skipped, removed, rewritten)
+    }
+
+    private fun generateLine(clazz: Class<*>): ByteArray {
+        val line = generator.rootObjectMapper.createObjectNode()
+        line.put("class", clazz.name)
+        line.set("schema", generator.generateJsonSchema(clazz))
+        return generator.rootObjectMapper.writer().without(SerializationFeature.INDENT_OUTPUT).writeValueAsBytes(line)
+    }
+
+    private fun getResult(line: Future<ByteArray>): ByteArray {
+        try {
+            return line.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    // The line of clazz in the previous file, as the manifest tells - null when it is not there as it was written
+    private fun readPreviousLine(previousFile: RandomAccessFile, clazz: Class<*>, previousManifest: Properties): ByteArray? {
+        val location = previousManifest.getProperty(LINE_KEY_PREFIX + clazz.name)?.split(':') ?: return null
+        val position = location[0].toLong()
+        val length = location[1].toInt()
+        if (position + length > previousFile.length())
+            return null
+        val bytes = ByteArray(length)
+        previousFile.seek(position)
+        previousFile.readFully(bytes)
+        return if (sha256Hex(bytes) == previousManifest.getProperty(CLASS_KEY_PREFIX + clazz.name)) bytes else null
+    }
+
+    private fun readManifest(): Properties {
+        val manifest = Properties()
+        if (manifestFile.isFile)
+            FileInputStream(manifestFile).use { manifest.load(it) }
+        return manifest
+    }
+
+    private fun writeManifest(manifest: Properties) {
+        manifestFile.absoluteFile.parentFile.mkdirs()
+        FileOutputStream(manifestFile).use { manifest.store(it, null) }
+    }
+
+    // Gathers small writes in a direct buffer, written to channel when full
+    private class BufferedChannelOutput(val channel: FileChannel) {
+        private val buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+
+        // Bytes written so far
+        var position = 0L
+            private set
+
+        fun write(bytes: ByteArray) {
+            var offset = 0
+            while (offset < bytes.size) {
+                val length = Math.min(buffer.remaining(), bytes.size - offset)
+                buffer.put(bytes, offset, length)
+                offset += length
+                if (!buffer.hasRemaining())
+                    flush()
+            }
+            position += bytes.size
+        }
+
+        fun flush() {
+            buffer.flip()
+            while (buffer.hasRemaining()) {
+                channel.write(buffer)
+            }
+            buffer.clear()
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.dr.ktjsonschema.cli.testData;
+
+import javax.validation.constraints.Min;
+
+public class Parcel {
+
+    @Min(1)
+    public int weight;
+}
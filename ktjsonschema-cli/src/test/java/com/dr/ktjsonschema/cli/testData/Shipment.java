@@ -0,0 +1,13 @@
+package com.dr.ktjsonschema.cli.testData;
+
+import com.dr.ktjsonschema.annotations.JsonSchemaTitle;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonSchemaTitle("Shipment")
+public class Shipment {
+
+    @JsonProperty(required = true)
+    public String trackingNumber;
+
+    public Parcel parcel;
+}
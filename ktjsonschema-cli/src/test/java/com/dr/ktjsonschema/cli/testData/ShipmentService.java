@@ -0,0 +1,9 @@
+package com.dr.ktjsonschema.cli.testData;
+
+// Not a DTO - no jackson or ktjsonschema annotations
+public class ShipmentService {
+
+    public Shipment find(String trackingNumber) {
+        return null;
+    }
+}
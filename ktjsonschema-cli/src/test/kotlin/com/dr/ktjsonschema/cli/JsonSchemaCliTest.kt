@@ -0,0 +1,86 @@
+package com.dr.ktjsonschema.cli
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.PrebuiltJsonSchemas
+import com.dr.ktjsonschema.cli.testData.Parcel
+import com.dr.ktjsonschema.cli.testData.Shipment
+import com.dr.ktjsonschema.cli.testData.ShipmentService
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+
+class JsonSchemaCliTest {
+    val _objectMapper = ObjectMapper()
+    val jsonSchemaGenerator = JsonSchemaGenerator(_objectMapper)
+
+    // Where the test data was compiled to - scanned as the classes of an application
+    val classesDir = File(Shipment::class.java.protectionDomain.codeSource.location.toURI())
+
+    // The schema of clazz as read back from a file - numbers are then parsed to the smallest type that fits
+    fun generateJsonSchema(clazz: Class<*>) =
+            _objectMapper.readTree(_objectMapper.writeValueAsString(jsonSchemaGenerator.generateJsonSchema(clazz)))
+
+    @Test
+    fun exportFiles() {
+        val dir = createTempDir()
+        try {
+            val outputDir = File(dir, "schemas")
+            JsonSchemaCli.main(arrayOf("--output", outputDir.path, "--package", "com.dr.ktjsonschema.cli.testData", classesDir.path))
+
+            // Only classes using jackson or ktjsonschema annotations
+            val file = File(outputDir, PrebuiltJsonSchemas.getResourceName(Shipment::class.java.name))
+            Assert.assertEquals(generateJsonSchema(Shipment::class.java), _objectMapper.readTree(file))
+            Assert.assertFalse(File(outputDir, PrebuiltJsonSchemas.getResourceName(Parcel::class.java.name)).exists())
+            Assert.assertFalse(File(outputDir, PrebuiltJsonSchemas.getResourceName(ShipmentService::class.java.name)).exists())
+
+            JsonSchemaCli.main(arrayOf("--output", outputDir.path, "--all", "--package", "com.dr.ktjsonschema.cli.testData", classesDir.path))
+            Assert.assertTrue(File(outputDir, PrebuiltJsonSchemas.getResourceName(Parcel::class.java.name)).exists())
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun exportNdjson() {
+        val dir = createTempDir()
+        try {
+            val outputFile = File(dir, "schemas.ndjson")
+            JsonSchemaCli.main(arrayOf("--output", outputFile.path, "--format", "ndjson", "--all",
+                    "--package", "com.dr.ktjsonschema.cli.testData", classesDir.path))
+
+            // One line per class, in the order of their names
+            val lines = outputFile.readLines().map { _objectMapper.readTree(it) }
+            Assert.assertEquals(listOf(Parcel::class.java.name, Shipment::class.java.name, ShipmentService::class.java.name),
+                    lines.map { it.get("class").asText() })
+            Assert.assertEquals(generateJsonSchema(Shipment::class.java), lines[1].get("schema"))
+
+            // Other settings - generated again, to the same content: the file is left as is
+            val exporter = NdjsonExporter(jsonSchemaGenerator, outputFile, File(dir, "schemas.ndjson.manifest"), threads = 2)
+            val classes = listOf(Parcel::class.java, Shipment::class.java, ShipmentService::class.java)
+            val second = exporter.export(classes)
+            Assert.assertFalse(second.rewritten)
+            Assert.assertEquals(classes, second.unchanged)
+
+            // Same classes - every line is copied, none generated
+            val content = outputFile.readText()
+            val third = exporter.export(classes)
+            Assert.assertFalse(third.rewritten)
+            Assert.assertEquals(classes, third.skipped)
+            Assert.assertEquals(content, outputFile.readText())
+
+            // Copied from where they were in the file written last
+            val fourth = exporter.export(listOf(Shipment::class.java, ShipmentService::class.java))
+            Assert.assertTrue(fourth.rewritten)
+            Assert.assertEquals(listOf(Shipment::class.java, ShipmentService::class.java), fourth.skipped)
+            Assert.assertEquals(listOf(Parcel::class.java.name), fourth.removed)
+            val fifth = exporter.export(listOf(ShipmentService::class.java, Parcel::class.java))
+            Assert.assertEquals(listOf(ShipmentService::class.java), fifth.skipped)
+            Assert.assertEquals(listOf(Parcel::class.java), fifth.changed)
+            Assert.assertEquals(listOf(ShipmentService::class.java.name, Parcel::class.java.name),
+                    outputFile.readLines().map { _objectMapper.readTree(it).get("class").asText() })
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.dr.ktjsonschema.gradle
+
+import com.dr.ktjsonschema.JsonSchemaExporter
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import java.io.File
+import java.util.*
+
+/**
+ * Runs JsonSchemaExporter in the JVM forked by GenerateJsonSchemasTask - so the classes of the project, and the
+ * jackson modules its ObjectMapper uses, are loaded from the runtime classpath of the project only.
+ *
+ * Arguments: --output <dir> --manifest <file> [--config <config>] [--object-mapper-factory <class>]
+ *      [--class <class>]... [--classes-dir <dir>]... [--package <package>]...
+ * See KtJsonSchemaExtension for the meaning of each.
+ */
+object ExportMain {
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        var outputDir: File? = null
+        var manifestFile: File? = null
+        var configName = KtJsonSchemaExtension.DEFAULT_CONFIG
+        var objectMapperFactory: String? = null
+        val classNames = LinkedHashSet<String>()
+        val classesDirs = ArrayList<File>()
+        val packages = ArrayList<String>()
+
+        var i = 0
+        while (i < args.size) {
+            if (i + 1 == args.size)
+                throw IllegalArgumentException("Missing value of ${args[i]}")
+            val value = args[i + 1]
+            when (args[i]) {
+                "--output" -> outputDir = File(value)
+                "--manifest" -> manifestFile = File(value)
+                "--config" -> configName = value
+                "--object-mapper-factory" -> objectMapperFactory = value
+                "--class" -> classNames.add(value)
+                "--classes-dir" -> classesDirs.add(File(value))
+                "--package" -> packages.add(value)
+                else -> throw IllegalArgumentException("Unknown argument ${args[i]}")
+            }
+            i += 2
+        }
+        if (outputDir == null || manifestFile == null)
+            throw IllegalArgumentException("--output and --manifest are required")
+
+        for (packageName in packages) {
+            classesDirs.forEach { classNames.addAll(findClassNames(it, packageName)) }
+        }
+
+        val classLoader = ExportMain::class.java.classLoader
+        val objectMapper = JsonSchemaExporter.createObjectMapper(objectMapperFactory, classLoader)
+        val config = JsonSchemaExporter.createConfig(configName, classLoader)
+        val settingsId = JsonSchemaExporter.getSettingsId(config, objectMapper, objectMapperFactory, configName, classLoader)
+
+        val exporter = JsonSchemaExporter(JsonSchemaGenerator(objectMapper, config), outputDir, manifestFile, settingsId)
+        val classes = classNames.map { Class.forName(it, false, classLoader) }.filter { JsonSchemaExporter.isExportable(it) }
+        val result = exporter.export(classes)
+        println("JSON Schemas: ${result.written.size} written, ${result.unchanged.size} unchanged, " +
+                "${result.skipped.size} up-to-date, ${result.deleted.size} deleted")
+    }
+
+    // Names of the classes found in packageName, or in one of its sub-packages
+    private fun findClassNames(classesDir: File, packageName: String): List<String> {
+        val packageDir = File(classesDir, packageName.replace('.', File.separatorChar))
+        return packageDir.walkTopDown()
+                .filter { it.isFile && it.name.endsWith(".class") && it.name != "package-info.class" }
+                .map { it.toRelativeString(classesDir).removeSuffix(".class").replace(File.separatorChar, '.') }
+                .sorted()
+                .toList()
+    }
+}
@@ -0,0 +1,63 @@
+package com.dr.ktjsonschema.gradle
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.annotation.JsonTypeInfo
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.FileCollection
+import org.gradle.api.tasks.*
+import java.io.File
+import javax.validation.constraints.NotNull
+
+/**
+ * Writes the schema of each configured class to outputDir, as read by PrebuiltJsonSchemas.
+ *
+ * Generation runs in a forked JVM, using classpath followed by ktjsonschema and its dependencies.
+ * Between runs, the fingerprint of each class is kept in the temporary dir of the task - see JsonSchemaExporter.
+ */
+open class GenerateJsonSchemasTask : DefaultTask() {
+
+    @get:Input
+    var classNames: List<String> = listOf()
+
+    @get:Input
+    var packages: List<String> = listOf()
+
+    @get:Input
+    @get:Optional
+    var objectMapperFactory: String? = null
+
+    @get:Input
+    var config: String = KtJsonSchemaExtension.DEFAULT_CONFIG
+
+    // Where the classes of packages are looked for
+    @get:InputFiles
+    var classesDirs: FileCollection = project.files()
+
+    @get:InputFiles
+    var classpath: FileCollection = project.files()
+
+    @get:OutputDirectory
+    var outputDir: File = File(project.buildDir, "generated/ktjsonschema")
+
+    @TaskAction
+    fun generate() {
+        // ktjsonschema, the exporter, and what they need - in case the project does not use them at runtime
+        val toolClasspath = project.files(listOf(ExportMain::class.java, JsonSchemaGenerator::class.java, Unit::class.java,
+                ObjectMapper::class.java, JsonFactory::class.java, JsonTypeInfo::class.java, NotNull::class.java)
+                .map { File(it.protectionDomain.codeSource.location.toURI()) })
+
+        val args = arrayListOf("--output", outputDir.path, "--manifest", File(temporaryDir, "manifest.properties").path, "--config", config)
+        objectMapperFactory?.let { args.addAll(listOf("--object-mapper-factory", it)) }
+        classNames.forEach { args.addAll(listOf("--class", it)) }
+        packages.forEach { args.addAll(listOf("--package", it)) }
+        classesDirs.forEach { args.addAll(listOf("--classes-dir", it.path)) }
+
+        project.javaexec {
+            it.main = ExportMain::class.java.name
+            it.classpath = classpath.plus(toolClasspath)
+            it.args = args
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.dr.ktjsonschema.gradle
+
+/**
+ * The ktJsonSchema { } block of a build script:
+ *
+ *     ktJsonSchema {
+ *         packages = ['com.example.dto']
+ *         objectMapperFactory = 'com.example.ObjectMapperFactory'
+ *         config = 'html5EnabledSchema'
+ *     }
+ */
+open class KtJsonSchemaExtension {
+
+    companion object {
+        const val DEFAULT_CONFIG = "vanillaJsonSchemaDraft4"
+    }
+
+    // Names of the classes to generate schemas for
+    var classes: MutableList<String> = mutableListOf()
+
+    // Packages to generate schemas for - every public class in them, or in their sub-packages
+    var packages: MutableList<String> = mutableListOf()
+
+    // Name of a class implementing java.util.concurrent.Callable<ObjectMapper>, with a no-arg constructor.
+    // If null, a plain ObjectMapper is used
+    var objectMapperFactory: String? = null
+
+    // "vanillaJsonSchemaDraft4", "html5EnabledSchema", or the name of a class implementing
+    // java.util.concurrent.Callable<JsonSchemaConfig>, with a no-arg constructor
+    var config: String = DEFAULT_CONFIG
+}
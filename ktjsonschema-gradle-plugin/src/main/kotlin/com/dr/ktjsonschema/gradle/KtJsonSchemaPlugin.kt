@@ -0,0 +1,43 @@
+package com.dr.ktjsonschema.gradle
+
+import org.gradle.api.Plugin
+import org.gradle.api.Project
+import org.gradle.api.plugins.JavaPlugin
+import org.gradle.api.plugins.JavaPluginConvention
+import org.gradle.api.tasks.SourceSet
+import org.gradle.api.tasks.bundling.Jar
+
+/**
+ * Generates the schemas of a project at build time, so they don't have to be generated at startup.
+ *
+ * Adds the ktJsonSchema extension (see KtJsonSchemaExtension) and the generateJsonSchemas task, whose output is added
+ * to the jar, where PrebuiltJsonSchemas finds them. It is not part of the main source set output: the classes task
+ * depends on what builds that output, and the task needs the compiled classes.
+ */
+open class KtJsonSchemaPlugin : Plugin<Project> {
+
+    override fun apply(project: Project) {
+        val extension = project.extensions.create("ktJsonSchema", KtJsonSchemaExtension::class.java)
+
+        project.plugins.withType(JavaPlugin::class.java) {
+            val main = project.convention.getPlugin(JavaPluginConvention::class.java).sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME)
+            val task = project.tasks.create("generateJsonSchemas", GenerateJsonSchemasTask::class.java)
+            task.group = "build"
+            task.description = "Generates the JSON Schemas of the classes configured in ktJsonSchema."
+            // Not main.classesTaskName, which would be a cycle. compileJava runs after compileKotlin
+            task.dependsOn(main.compileJavaTaskName, main.processResourcesTaskName)
+            task.classesDirs = project.files(main.output.classesDir)
+            // Not main.runtimeClasspath, which holds the output of the task itself
+            task.classpath = project.files(main.output.classesDir, main.output.resourcesDir)
+                    .plus(project.configurations.getByName(main.runtimeConfigurationName))
+            (project.tasks.getByName(JavaPlugin.JAR_TASK_NAME) as Jar).from(task)
+
+            project.afterEvaluate {
+                task.classNames = extension.classes.toList()
+                task.packages = extension.packages.toList()
+                task.objectMapperFactory = extension.objectMapperFactory
+                task.config = extension.config
+            }
+        }
+    }
+}
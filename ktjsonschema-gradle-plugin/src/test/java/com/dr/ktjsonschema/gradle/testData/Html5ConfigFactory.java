@@ -0,0 +1,13 @@
+package com.dr.ktjsonschema.gradle.testData;
+
+import com.dr.ktjsonschema.JsonSchemaConfig;
+
+import java.util.concurrent.Callable;
+
+public class Html5ConfigFactory implements Callable<JsonSchemaConfig> {
+
+    @Override
+    public JsonSchemaConfig call() {
+        return JsonSchemaConfig.getHtml5EnabledSchema();
+    }
+}
@@ -0,0 +1,15 @@
+package com.dr.ktjsonschema.gradle.testData;
+
+import com.dr.ktjsonschema.annotations.JsonSchemaTitle;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonSchemaTitle("Invoice")
+public class Invoice {
+
+    @JsonProperty(required = true)
+    public String number;
+
+    public List<InvoiceLine> lines;
+}
@@ -0,0 +1,16 @@
+package com.dr.ktjsonschema.gradle.testData;
+
+import javax.validation.constraints.Min;
+
+public class InvoiceLine {
+
+    public String product;
+
+    @Min(1)
+    public int quantity;
+
+    // Not a DTO - not exported
+    interface Visitor {
+        void visit(InvoiceLine line);
+    }
+}
@@ -0,0 +1,104 @@
+package com.dr.ktjsonschema.gradle
+
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.PrebuiltJsonSchemas
+import com.dr.ktjsonschema.gradle.testData.Html5ConfigFactory
+import com.dr.ktjsonschema.gradle.testData.Invoice
+import com.dr.ktjsonschema.gradle.testData.InvoiceLine
+import com.dr.ktjsonschema.sha256Hex
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+import java.io.FileInputStream
+import java.util.*
+
+class ExportMainTest {
+    val _objectMapper = ObjectMapper()
+
+    // Where the test data was compiled to - as the classes dir of a project
+    val classesDir = File(Invoice::class.java.protectionDomain.codeSource.location.toURI())
+
+    val testDataPackage = Invoice::class.java.`package`.name
+
+    // The schema of clazz as read back from a file - numbers are then parsed to the smallest type that fits
+    fun generateJsonSchema(clazz: Class<*>, config: JsonSchemaConfig) =
+            _objectMapper.readTree(_objectMapper.writeValueAsString(JsonSchemaGenerator(_objectMapper, config).generateJsonSchema(clazz)))
+
+    fun readManifest(file: File): Properties {
+        val manifest = Properties()
+        FileInputStream(file).use { manifest.load(it) }
+        return manifest
+    }
+
+    @Test
+    fun exportPackages() {
+        val dir = createTempDir()
+        try {
+            val outputDir = File(dir, "schemas")
+            val manifestFile = File(dir, "manifest.properties")
+            ExportMain.main(arrayOf("--output", outputDir.path, "--manifest", manifestFile.path,
+                    "--classes-dir", classesDir.path, "--package", testDataPackage))
+
+            for (clazz in listOf(Invoice::class.java, InvoiceLine::class.java)) {
+                val file = File(outputDir, PrebuiltJsonSchemas.getResourceName(clazz.name))
+                Assert.assertEquals(generateJsonSchema(clazz, JsonSchemaConfig.vanillaJsonSchemaDraft4), _objectMapper.readTree(file))
+            }
+            // Public classes only - not what can't be a DTO
+            Assert.assertFalse(File(outputDir, PrebuiltJsonSchemas.getResourceName(InvoiceLine::class.java.name + "\$Visitor")).exists())
+            Assert.assertEquals(setOf("settings", "class." + Invoice::class.java.name, "class." + InvoiceLine::class.java.name,
+                    "class." + Html5ConfigFactory::class.java.name), readManifest(manifestFile).stringPropertyNames())
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    // The settings identify the config factory by the SHA-256 of its bytecode - a changed factory exports everything again
+    @Test
+    fun configFactory() {
+        val dir = createTempDir()
+        try {
+            val outputDir = File(dir, "schemas")
+            val manifestFile = File(dir, "manifest.properties")
+            ExportMain.main(arrayOf("--output", outputDir.path, "--manifest", manifestFile.path,
+                    "--config", Html5ConfigFactory::class.java.name, "--class", Invoice::class.java.name))
+
+            val file = File(outputDir, PrebuiltJsonSchemas.getResourceName(Invoice::class.java.name))
+            Assert.assertEquals(generateJsonSchema(Invoice::class.java, JsonSchemaConfig.html5EnabledSchema), _objectMapper.readTree(file))
+
+            val bytecode = File(classesDir, Html5ConfigFactory::class.java.name.replace('.', '/') + ".class").readBytes()
+            val settings = readManifest(manifestFile).getProperty("settings")
+            Assert.assertTrue(settings, settings.endsWith("|" + sha256Hex(bytecode)))
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun configNotAFactory() {
+        val dir = createTempDir()
+        try {
+            ExportMain.main(arrayOf("--output", File(dir, "schemas").path, "--manifest", File(dir, "manifest.properties").path,
+                    "--config", Invoice::class.java.name, "--class", Invoice::class.java.name))
+            Assert.fail()
+        } catch (e: IllegalArgumentException) {
+            Assert.assertEquals("Factory ${Invoice::class.java.name} must implement java.util.concurrent.Callable", e.message)
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun invalidArguments() {
+        listOf(arrayOf("--output", "schemas"), arrayOf("--output", "schemas", "--manifest"),
+                arrayOf("--output", "schemas", "--manifest", "manifest", "--unknown", "x")).forEach {
+            try {
+                ExportMain.main(it)
+                Assert.fail("Ran with ${it.toList()}")
+            } catch (e: IllegalArgumentException) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.dr.ktjsonschema.gradle
+
+import org.gradle.api.Project
+import org.gradle.api.Task
+import org.gradle.api.internal.project.ProjectInternal
+import org.gradle.api.plugins.JavaPlugin
+import org.gradle.api.plugins.JavaPluginConvention
+import org.gradle.api.tasks.SourceSet
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Assert
+import org.junit.Test
+
+class KtJsonSchemaPluginTest {
+
+    fun createProject(vararg plugins: Class<*>): Project {
+        val project = ProjectBuilder.builder().build()
+        plugins.forEach { project.pluginManager.apply(it) }
+        return project
+    }
+
+    fun getTask(project: Project) = project.tasks.getByName("generateJsonSchemas") as GenerateJsonSchemasTask
+
+    // All the tasks task depends on, directly or not - failing on a cycle
+    fun getAllDependencies(task: Task, path: List<Task> = listOf(), found: MutableSet<Task> = linkedSetOf()): Set<Task> {
+        for (dependency in task.taskDependencies.getDependencies(task)) {
+            if (dependency == task || path.contains(dependency))
+                Assert.fail("Cycle: " + (path + task + dependency).map { it.name })
+            if (found.add(dependency))
+                getAllDependencies(dependency, path + task, found)
+        }
+        return found
+    }
+
+    @Test
+    fun taskWiring() {
+        val project = createProject(JavaPlugin::class.java, KtJsonSchemaPlugin::class.java)
+        val main = project.convention.getPlugin(JavaPluginConvention::class.java).sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME)
+        val task = getTask(project)
+
+        Assert.assertTrue(task.dependsOn.contains(main.compileJavaTaskName))
+        Assert.assertTrue(task.dependsOn.contains(main.processResourcesTaskName))
+        Assert.assertEquals(setOf(main.output.classesDir), task.classesDirs.files)
+        // Its classpath must not hold its own output
+        Assert.assertTrue(task.classpath.files.contains(main.output.classesDir))
+        Assert.assertFalse(task.classpath.files.contains(task.outputDir))
+        Assert.assertFalse(main.output.dirs.files.contains(task.outputDir))
+    }
+
+    // So the schemas end up in the jar
+    @Test
+    fun taskGraph() {
+        val project = createProject(JavaPlugin::class.java, KtJsonSchemaPlugin::class.java)
+        (project as ProjectInternal).evaluate()
+        val main = project.convention.getPlugin(JavaPluginConvention::class.java).sourceSets.getByName(SourceSet.MAIN_SOURCE_SET_NAME)
+        val task = getTask(project)
+
+        val jarDependencies = getAllDependencies(project.tasks.getByName(JavaPlugin.JAR_TASK_NAME))
+        Assert.assertTrue(jarDependencies.contains(task))
+        Assert.assertTrue(jarDependencies.contains(project.tasks.getByName(main.classesTaskName)))
+        val taskDependencies = getAllDependencies(task)
+        Assert.assertTrue(taskDependencies.contains(project.tasks.getByName(main.compileJavaTaskName)))
+        Assert.assertFalse(taskDependencies.contains(project.tasks.getByName(main.classesTaskName)))
+        Assert.assertFalse(getAllDependencies(project.tasks.getByName(main.classesTaskName)).contains(task))
+    }
+
+    // The extension is read once the build script was evaluated
+    @Test
+    fun extensionCopiedToTask() {
+        val project = createProject(JavaPlugin::class.java, KtJsonSchemaPlugin::class.java)
+        val extension = project.extensions.getByType(KtJsonSchemaExtension::class.java)
+        extension.classes.add("com.example.dto.Invoice")
+        extension.packages.add("com.example.model")
+        extension.objectMapperFactory = "com.example.ObjectMapperFactory"
+        extension.config = "html5EnabledSchema"
+        (project as ProjectInternal).evaluate()
+
+        val task = getTask(project)
+        Assert.assertEquals(listOf("com.example.dto.Invoice"), task.classNames)
+        Assert.assertEquals(listOf("com.example.model"), task.packages)
+        Assert.assertEquals("com.example.ObjectMapperFactory", task.objectMapperFactory)
+        Assert.assertEquals("html5EnabledSchema", task.config)
+    }
+
+    @Test
+    fun defaults() {
+        val project = createProject(JavaPlugin::class.java, KtJsonSchemaPlugin::class.java)
+        (project as ProjectInternal).evaluate()
+
+        val task = getTask(project)
+        Assert.assertEquals(listOf<String>(), task.classNames)
+        Assert.assertNull(task.objectMapperFactory)
+        Assert.assertEquals(KtJsonSchemaExtension.DEFAULT_CONFIG, task.config)
+    }
+
+    // Nothing to generate schemas of without the java plugin
+    @Test
+    fun withoutJavaPlugin() {
+        val project = createProject(KtJsonSchemaPlugin::class.java)
+        Assert.assertNotNull(project.extensions.findByType(KtJsonSchemaExtension::class.java))
+        Assert.assertNull(project.tasks.findByName("generateJsonSchemas"))
+    }
+}
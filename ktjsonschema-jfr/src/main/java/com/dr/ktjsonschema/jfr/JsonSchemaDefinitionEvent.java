@@ -0,0 +1,24 @@
+package com.dr.ktjsonschema.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.dr.ktjsonschema.Definition")
+@Label("JSON Schema Definition")
+@Category("KtJsonSchema")
+@Description("Building a definition - includes the definitions it creates")
+public class JsonSchemaDefinitionEvent extends Event {
+
+    @Label("Class")
+    public String className;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Types visited")
+    public int nodeCount;
+}
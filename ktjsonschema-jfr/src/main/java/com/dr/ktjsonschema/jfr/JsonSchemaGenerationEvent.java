@@ -0,0 +1,21 @@
+package com.dr.ktjsonschema.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.dr.ktjsonschema.Generation")
+@Label("JSON Schema Generation")
+@Category("KtJsonSchema")
+@Description("Visiting a root class and everything it refers to")
+public class JsonSchemaGenerationEvent extends Event {
+
+    @Label("Class")
+    public String className;
+
+    @Label("Nodes")
+    @Description("Types visited")
+    public int nodeCount;
+}
@@ -0,0 +1,27 @@
+package com.dr.ktjsonschema.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.dr.ktjsonschema.Subtype")
+@Label("JSON Schema Polymorphic Subtype")
+@Category("KtJsonSchema")
+@Description("Expanding one subtype of a polymorphic type")
+public class JsonSchemaSubtypeEvent extends Event {
+
+    @Label("Base Class")
+    public String baseClassName;
+
+    @Label("Class")
+    public String className;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Types visited")
+    public int nodeCount;
+}
@@ -0,0 +1,107 @@
+package com.dr.ktjsonschema.jfr
+
+import com.dr.ktjsonschema.JsonSchemaGenerationListener
+import com.fasterxml.jackson.databind.JavaType
+import jdk.jfr.Event
+import java.util.*
+
+/**
+ * Emits Java Flight Recorder events while JsonSchemaGenerator generates schemas - pass it as its listener:
+ *
+ * - com.dr.ktjsonschema.Generation: each root class compiled
+ * - com.dr.ktjsonschema.Definition: each definition built, at the depth where it was first met
+ * - com.dr.ktjsonschema.Subtype: each subtype of a polymorphic type expanded
+ *
+ * Each event holds the number of types visited while it lasted. Events nest - e.g. a Definition event covers the
+ * definitions created while building it. When none of them is enabled in a recording, only visits are counted.
+ */
+class JfrJsonSchemaGenerationListener : JsonSchemaGenerationListener() {
+
+    // What is being recorded on one thread
+    private class State {
+        var active = false
+        var nodeCount = 0
+        val events = ArrayList<Event>()
+        val startNodeCounts = ArrayList<Int>()
+    }
+
+    private val states = object : ThreadLocal<State>() {
+        override fun initialValue() = State()
+    }
+
+    override fun onCompileStart(rootClass: Class<*>) {
+        val state = states.get()
+        // A previous generation may have thrown half way
+        state.events.clear()
+        state.startNodeCounts.clear()
+        state.nodeCount = 0
+
+        val event = JsonSchemaGenerationEvent()
+        state.active = event.isEnabled || JsonSchemaDefinitionEvent().isEnabled || JsonSchemaSubtypeEvent().isEnabled
+        if (!state.active)
+            return
+        event.className = rootClass.name
+        push(state, event)
+    }
+
+    override fun onCompileEnd(rootClass: Class<*>) {
+        pop(states.get())
+    }
+
+    override fun onVisitStart(type: JavaType, depth: Int) {
+        val state = states.get()
+        if (state.active)
+            state.nodeCount++
+    }
+
+    override fun onDefinitionCreated(clazz: Class<*>, depth: Int) {
+        val state = states.get()
+        if (!state.active)
+            return
+        val event = JsonSchemaDefinitionEvent()
+        event.className = clazz.name
+        event.depth = depth
+        push(state, event)
+    }
+
+    override fun onDefinitionEnd(clazz: Class<*>, depth: Int) {
+        pop(states.get())
+    }
+
+    override fun onPolymorphismBranch(baseType: JavaType, subType: Class<*>, depth: Int) {
+        val state = states.get()
+        if (!state.active)
+            return
+        val event = JsonSchemaSubtypeEvent()
+        event.baseClassName = baseType.rawClass.name
+        event.className = subType.name
+        event.depth = depth
+        push(state, event)
+    }
+
+    override fun onPolymorphismBranchEnd(baseType: JavaType, subType: Class<*>, depth: Int) {
+        pop(states.get())
+    }
+
+    private fun push(state: State, event: Event) {
+        state.events.add(event)
+        state.startNodeCounts.add(state.nodeCount)
+        event.begin()
+    }
+
+    private fun pop(state: State) {
+        if (!state.active || state.events.isEmpty())
+            return
+        val event = state.events.removeAt(state.events.size - 1)
+        val nodeCount = state.nodeCount - state.startNodeCounts.removeAt(state.startNodeCounts.size - 1)
+        event.end()
+        if (!event.shouldCommit())
+            return
+        when (event) {
+            is JsonSchemaGenerationEvent -> event.nodeCount = nodeCount
+            is JsonSchemaDefinitionEvent -> event.nodeCount = nodeCount
+            is JsonSchemaSubtypeEvent -> event.nodeCount = nodeCount
+        }
+        event.commit()
+    }
+}
@@ -0,0 +1,66 @@
+package com.dr.ktjsonschema.jfr
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.annotation.JsonSubTypes
+import com.fasterxml.jackson.annotation.JsonTypeInfo
+import com.fasterxml.jackson.databind.ObjectMapper
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+
+class JfrJsonSchemaGenerationListenerTest {
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+    @JsonSubTypes(JsonSubTypes.Type(value = Dog::class, name = "dog"), JsonSubTypes.Type(value = Cat::class, name = "cat"))
+    abstract class Pet {
+        var name: String? = null
+    }
+
+    class Dog : Pet() {
+        var barks: Boolean = false
+    }
+
+    class Cat : Pet() {
+        var lives: Int = 9
+    }
+
+    class Owner {
+        var pet: Pet? = null
+    }
+
+    @Test
+    fun recordEvents() {
+        val generator = JsonSchemaGenerator(ObjectMapper(), listener = JfrJsonSchemaGenerationListener())
+        val file = File.createTempFile("ktjsonschema", ".jfr")
+        try {
+            Recording().use {
+                recording ->
+                recording.enable(JsonSchemaGenerationEvent::class.java)
+                recording.enable(JsonSchemaDefinitionEvent::class.java)
+                recording.enable(JsonSchemaSubtypeEvent::class.java)
+                recording.start()
+                generator.generateJsonSchema(Owner::class.java)
+                recording.stop()
+                recording.dump(file.toPath())
+            }
+
+            val events = RecordingFile.readAllEvents(file.toPath())
+            val generation = events.single { it.eventType.name == "com.dr.ktjsonschema.Generation" }
+            Assert.assertEquals(Owner::class.java.name, generation.getString("className"))
+            // Owner, its pet (Pet), Dog with name and barks, Cat with name and lives
+            Assert.assertEquals(8, generation.getInt("nodeCount"))
+
+            val subtypes = events.filter { it.eventType.name == "com.dr.ktjsonschema.Subtype" }
+            Assert.assertEquals(listOf(Dog::class.java.name, Cat::class.java.name), subtypes.map { it.getString("className") })
+            Assert.assertTrue(subtypes.all { it.getString("baseClassName") == Pet::class.java.name && it.getInt("depth") == 1 })
+
+            val definitions = events.filter { it.eventType.name == "com.dr.ktjsonschema.Definition" }
+            Assert.assertEquals(setOf(Dog::class.java.name, Cat::class.java.name), definitions.map { it.getString("className") }.toSet())
+            Assert.assertTrue(definitions.all { it.getInt("depth") == 2 && it.getInt("nodeCount") == 3 })
+        } finally {
+            file.delete()
+        }
+    }
+}
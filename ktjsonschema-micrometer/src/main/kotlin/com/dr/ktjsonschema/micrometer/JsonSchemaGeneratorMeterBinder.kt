@@ -0,0 +1,92 @@
+package com.dr.ktjsonschema.micrometer
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.JsonSchemaGeneratorMetrics
+import io.micrometer.core.instrument.FunctionCounter
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Tag
+import io.micrometer.core.instrument.Timer
+import io.micrometer.core.instrument.binder.MeterBinder
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.function.ToDoubleFunction
+
+/**
+ * Publishes the metrics of a JsonSchemaGenerator to Micrometer:
+ *
+ * - ktjsonschema.generation: timer of each schema generated, tagged by its root class (only schemas generated after
+ *   binding are recorded)
+ * - ktjsonschema.types.visited, ktjsonschema.visitor.invocations, ktjsonschema.definitions.created,
+ *   ktjsonschema.refs.reused and ktjsonschema.definitions.reused: see JsonSchemaGeneratorMetrics
+ * - cache.gets (tagged result = hit or miss) and cache.evictions of its cache and persistentCache, tagged
+ *   cache = ktjsonschema.schemas or ktjsonschema.persistent
+ *
+ * Counters and timers need the generator to be created with metrics, cache metrics need the caches.
+ *
+ * @param tags added to every meter
+ */
+class JsonSchemaGeneratorMeterBinder @JvmOverloads constructor(
+        val generator: JsonSchemaGenerator,
+        val tags: Iterable<Tag> = emptyList()
+) : MeterBinder {
+
+    override fun bindTo(registry: MeterRegistry) {
+        generator.metrics?.let { bindMetrics(registry, it) }
+
+        generator.cache?.let {
+            cacheCounter(registry, "cache.gets", "ktjsonschema.schemas", it, ToDoubleFunction { it.hitCount.toDouble() }, "hit")
+            cacheCounter(registry, "cache.gets", "ktjsonschema.schemas", it, ToDoubleFunction { it.missCount.toDouble() }, "miss")
+            cacheCounter(registry, "cache.evictions", "ktjsonschema.schemas", it, ToDoubleFunction { it.evictionCount.toDouble() }, null)
+        }
+        generator.persistentCache?.let {
+            cacheCounter(registry, "cache.gets", "ktjsonschema.persistent", it, ToDoubleFunction { it.hitCount.toDouble() }, "hit")
+            cacheCounter(registry, "cache.gets", "ktjsonschema.persistent", it, ToDoubleFunction { it.missCount.toDouble() }, "miss")
+        }
+    }
+
+    private fun bindMetrics(registry: MeterRegistry, metrics: JsonSchemaGeneratorMetrics) {
+        counter(registry, "ktjsonschema.types.visited", "Types jackson described to the generator",
+                metrics, ToDoubleFunction { it.typesVisited.toDouble() })
+        counter(registry, "ktjsonschema.visitor.invocations", "Calls to ObjectMapper.acceptJsonFormatVisitor",
+                metrics, ToDoubleFunction { it.visitorInvocations.toDouble() })
+        counter(registry, "ktjsonschema.definitions.created", "Definitions created",
+                metrics, ToDoubleFunction { it.definitionsCreated.toDouble() })
+        counter(registry, "ktjsonschema.refs.reused", "\$refs to a definition already in the same schema",
+                metrics, ToDoubleFunction { it.refsReused.toDouble() })
+        counter(registry, "ktjsonschema.definitions.reused", "Definitions copied from a previous schema",
+                metrics, ToDoubleFunction { it.definitionsReused.toDouble() })
+
+        val timers = ConcurrentHashMap<Class<*>, Timer>()
+        metrics.addObserver(object : JsonSchemaGeneratorMetrics.GenerationObserver {
+            override fun onGeneration(rootClass: Class<*>, nanos: Long) {
+                val timer = timers.getOrPut(rootClass) {
+                    Timer.builder("ktjsonschema.generation")
+                            .description("Time spent generating the schema of a class not found in a cache")
+                            .tags(tags)
+                            .tag("class", rootClass.name)
+                            .publishPercentileHistogram()
+                            .register(registry)
+                }
+                timer.record(nanos, TimeUnit.NANOSECONDS)
+            }
+        })
+    }
+
+    private fun counter(registry: MeterRegistry, name: String, description: String,
+                        metrics: JsonSchemaGeneratorMetrics, count: ToDoubleFunction<JsonSchemaGeneratorMetrics>) {
+        FunctionCounter.builder(name, metrics, count)
+                .description(description)
+                .tags(tags)
+                .register(registry)
+    }
+
+    private fun <T> cacheCounter(registry: MeterRegistry, name: String, cacheName: String,
+                                 cache: T, count: ToDoubleFunction<T>, result: String?) {
+        val builder = FunctionCounter.builder(name, cache, count)
+                .tags(tags)
+                .tag("cache", cacheName)
+        if (result != null)
+            builder.tag("result", result)
+        builder.register(registry)
+    }
+}
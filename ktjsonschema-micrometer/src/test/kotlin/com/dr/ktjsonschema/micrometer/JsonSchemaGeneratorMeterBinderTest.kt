@@ -0,0 +1,36 @@
+package com.dr.ktjsonschema.micrometer
+
+import com.dr.ktjsonschema.JsonSchemaCache
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.JsonSchemaGeneratorMetrics
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.micrometer.core.instrument.Tag
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.junit.Assert
+import org.junit.Test
+
+class JsonSchemaGeneratorMeterBinderTest {
+
+    class Item {
+        var name: String? = null
+        var children: List<Item>? = null
+    }
+
+    @Test
+    fun bindTo() {
+        val registry = SimpleMeterRegistry()
+        val generator = JsonSchemaGenerator(ObjectMapper(), cache = JsonSchemaCache(), metrics = JsonSchemaGeneratorMetrics())
+        JsonSchemaGeneratorMeterBinder(generator, listOf(Tag.of("app", "test"))).bindTo(registry)
+
+        generator.generateJsonSchema(Item::class.java)
+        generator.generateJsonSchema(Item::class.java)
+
+        val timer = registry.get("ktjsonschema.generation").tag("class", Item::class.java.name).tag("app", "test").timer()
+        Assert.assertEquals(1, timer.count())
+        Assert.assertEquals(1.0, registry.get("ktjsonschema.definitions.created").functionCounter().count(), 0.0)
+        Assert.assertEquals(1.0, registry.get("ktjsonschema.refs.reused").functionCounter().count(), 0.0)
+        Assert.assertEquals(1.0, registry.get("cache.gets").tag("cache", "ktjsonschema.schemas").tag("result", "hit").functionCounter().count(), 0.0)
+        Assert.assertEquals(1.0, registry.get("cache.gets").tag("cache", "ktjsonschema.schemas").tag("result", "miss").functionCounter().count(), 0.0)
+        Assert.assertEquals(0.0, registry.get("cache.evictions").tag("cache", "ktjsonschema.schemas").functionCounter().count(), 0.0)
+    }
+}
@@ -0,0 +1,666 @@
+package com.dr.ktjsonschema.processor
+
+import com.dr.ktjsonschema.CompiledSchema
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.SchemaIr
+import com.dr.ktjsonschema.annotations.JsonSchemaDefault
+import com.dr.ktjsonschema.annotations.JsonSchemaDescription
+import com.dr.ktjsonschema.annotations.JsonSchemaFormat
+import com.dr.ktjsonschema.annotations.JsonSchemaTitle
+import com.fasterxml.jackson.annotation.*
+import java.util.*
+import javax.annotation.processing.ProcessingEnvironment
+import javax.lang.model.element.*
+import javax.lang.model.type.*
+import javax.lang.model.util.ElementFilter
+import javax.validation.constraints.*
+
+// Reported as a compile error on element
+internal class ElementException(val element: Element, message: String) : Exception(message)
+
+/**
+ * Compiles a class into its schema at compile time, from what javac tells annotation processors about the source -
+ * the counterpart of JsonSchemaGenerator.compileJsonSchema, which finds it out using jackson at runtime. The result is
+ * rendered by JsonSchemaDraft4Renderer, as the one of the generator.
+ *
+ * Follows what a plain ObjectMapper does: properties are found as jackson finds them (public fields and getters,
+ * @JsonProperty, @JsonIgnore, @JsonIgnoreProperties, @JsonPropertyOrder), polymorphism comes from
+ * @JsonTypeInfo/@JsonSubTypes/@JsonTypeName, and the same annotations as JsonSchemaGenerator are read.
+ * What only an ObjectMapper instance knows - mixins, registered subtypes, naming strategies, custom serializers
+ * of modules - is not taken into account. Dates are written as when using JavaTimeModule and JodaModule.
+ * Properties only found as getters are in the order they are declared, where jackson uses the order the JVM lists
+ * methods in - use @JsonPropertyOrder when it matters.
+ *
+ * @param config only tells whether to report warnings - the rest of it is applied when rendering
+ * @param writeDatesAsTimestamps as SerializationFeature.WRITE_DATES_AS_TIMESTAMPS
+ */
+internal class ElementSchemaCompiler(val env: ProcessingEnvironment, val config: JsonSchemaConfig, val writeDatesAsTimestamps: Boolean) {
+
+    companion object {
+        private val OPTIONAL_CLASS_NAMES = setOf("java.util.Optional", "java8.util.Optional")
+
+        // Types jackson writes as a single value of a json type
+        private val SCALAR_TYPES = mapOf(
+                "java.lang.Boolean" to "boolean",
+                "java.util.concurrent.atomic.AtomicBoolean" to "boolean",
+                "java.lang.Byte" to "integer",
+                "java.lang.Short" to "integer",
+                "java.lang.Integer" to "integer",
+                "java.lang.Long" to "integer",
+                "java.math.BigInteger" to "integer",
+                "java.util.concurrent.atomic.AtomicInteger" to "integer",
+                "java.util.concurrent.atomic.AtomicLong" to "integer",
+                "java.lang.Float" to "number",
+                "java.lang.Double" to "number",
+                "java.lang.Number" to "number",
+                "java.math.BigDecimal" to "number",
+                "java.lang.String" to "string",
+                "java.lang.Character" to "string",
+                "java.lang.StringBuilder" to "string",
+                "java.lang.StringBuffer" to "string",
+                "java.lang.Class" to "string",
+                "java.util.UUID" to "string",
+                "java.util.Locale" to "string",
+                "java.util.Currency" to "string",
+                "java.util.TimeZone" to "string",
+                "java.util.regex.Pattern" to "string",
+                "java.net.URI" to "string",
+                "java.net.URL" to "string",
+                "java.net.InetAddress" to "string",
+                "java.nio.charset.Charset" to "string",
+                "java.io.File" to "string"
+        )
+    }
+
+    private val types = env.typeUtils
+    private val elements = env.elementUtils
+
+    fun compile(element: TypeElement): CompiledSchema = Compilation().compile(element)
+
+    // A property as jackson finds it
+    private class BeanProperty(
+            val name: String,
+            val type: TypeMirror,
+            // Where its annotations are looked for, first one wins: getter (and methods it overrides), field, setter
+            val annotated: List<Element>
+    ) {
+        fun <A : Annotation> getAnnotation(annotationClass: Class<A>): A? {
+            for (element in annotated) {
+                element.getAnnotation(annotationClass)?.let {
+                    return it
+                }
+            }
+            return null
+        }
+    }
+
+    // What jackson knows about a member while collecting properties
+    private class Accessor(val element: Element, val visible: Boolean, val explicitName: String?, val ignored: Boolean,
+                           val explicitlyIncluded: Boolean, val annotated: List<Element>)
+
+    private class PropertyBuilder(val internalName: String) {
+        val getters = ArrayList<Accessor>()
+        val fields = ArrayList<Accessor>()
+        val setters = ArrayList<Accessor>()
+
+        fun all(): List<Accessor> = getters + fields + setters
+    }
+
+    // A subtype found by the same steps as StdSubtypeResolver
+    private class NamedType(val element: TypeElement, val name: String?)
+
+    private inner class Compilation {
+        // Every definition, in the order they were created - null while it is being compiled
+        private val definitions = LinkedHashMap<SchemaIr.TypeName, SchemaIr?>()
+
+        fun compile(element: TypeElement): CompiledSchema {
+            val root = toIr(element.asType(), true)
+            return CompiledSchema(getTypeName(element), root, definitions.mapValues { it.value!! })
+        }
+
+        // Returns the type the definition of element is for, compiling it using build if needed
+        private fun getOrCreateDefinition(element: TypeElement, build: () -> SchemaIr): SchemaIr.TypeName {
+            val type = getTypeName(element)
+            if (!definitions.containsKey(type)) {
+                // Created before compiling it, so that recursive references find it
+                definitions.put(type, null)
+                definitions.put(type, build())
+            }
+            return type
+        }
+
+        // The schema of type. inline is false when objects must be definitions
+        private fun toIr(type: TypeMirror, inline: Boolean): SchemaIr {
+            return when (type.kind) {
+                TypeKind.BOOLEAN -> SchemaIr.Primitive("boolean", null, null)
+                TypeKind.BYTE, TypeKind.SHORT, TypeKind.INT, TypeKind.LONG -> SchemaIr.Primitive("integer", null, null)
+                TypeKind.FLOAT, TypeKind.DOUBLE -> SchemaIr.Primitive("number", null, null)
+                TypeKind.CHAR -> SchemaIr.Primitive("string", null, null)
+                TypeKind.ARRAY -> SchemaIr.ArrayOf(toIr((type as ArrayType).componentType, false))
+                TypeKind.DECLARED -> declaredToIr(type as DeclaredType, inline)
+                TypeKind.TYPEVAR, TypeKind.WILDCARD -> {
+                    // As jackson, use the bound
+                    val erasure = types.erasure(type)
+                    if (erasure.kind == TypeKind.DECLARED) declaredToIr(erasure as DeclaredType, inline) else SchemaIr.AnyValue
+                }
+                else -> SchemaIr.AnyValue
+            }
+        }
+
+        private fun declaredToIr(type: DeclaredType, inline: Boolean): SchemaIr {
+            val element = type.asElement() as TypeElement
+            val name = element.qualifiedName.toString()
+
+            if (name in OPTIONAL_CLASS_NAMES || name == "java.util.concurrent.atomic.AtomicReference")
+                return toIr(getTypeArgument(type, name, 0), inline)
+            SCALAR_TYPES[name]?.let {
+                return SchemaIr.Primitive(it, null, null)
+            }
+            dateToIr(name)?.let {
+                return it
+            }
+            // A custom serializer tells nothing about the schema
+            if (hasCustomSerializer(listOf(element)))
+                return SchemaIr.AnyValue
+
+            val jsonValueMethod = getMemberMethods(element).values.map { it.first() }
+                    .firstOrNull { it.parameters.isEmpty() && it.getAnnotation(JsonValue::class.java)?.value ?: false }
+            if (jsonValueMethod != null) {
+                if (element.kind == ElementKind.ENUM) {
+                    // Values are only known when running
+                    warn(element, "Values of $name are written using @JsonValue - they are not part of its schema")
+                    return SchemaIr.Primitive("string", null, null)
+                }
+                return toIr(getMemberType(type, jsonValueMethod), inline)
+            }
+
+            return if (element.kind == ElementKind.ENUM) {
+                SchemaIr.Primitive("string", null, getEnumValues(element))
+            } else if (isSubtype(type, "java.util.Map")) {
+                // Values are compiled even when keys are not strings, as jackson visits them - definitions they need are created
+                SchemaIr.MapOf(toIr(getTypeArgument(type, "java.util.Map", 1), false),
+                        isSubtype(getTypeArgument(type, "java.util.Map", 0), "java.lang.String"))
+            } else if (isSubtype(type, "java.lang.Iterable")) {
+                SchemaIr.ArrayOf(toIr(getTypeArgument(type, "java.lang.Iterable", 0), false))
+            } else if (name == "java.lang.Object" || isSubtype(type, "com.fasterxml.jackson.databind.JsonNode")) {
+                // Can be anything
+                SchemaIr.AnyValue
+            } else {
+                beanToIr(type, element, inline)
+            }
+        }
+
+        // Dates as written by jackson, using JavaTimeModule and JodaModule - null if name is not a date
+        private fun dateToIr(name: String): SchemaIr? {
+            return when (name) {
+                "java.util.Date", "java.util.Calendar", "java.util.GregorianCalendar", "java.sql.Timestamp" ->
+                    if (writeDatesAsTimestamps)
+                        SchemaIr.Primitive("integer", "utc-millisec", null)
+                    else
+                        SchemaIr.Primitive("string", "date-time", null)
+
+                "java.sql.Date" -> SchemaIr.Primitive("string", "date-time", null)
+
+                "java.time.LocalDate", "org.joda.time.LocalDate" ->
+                    if (writeDatesAsTimestamps)
+                        SchemaIr.ArrayOf(SchemaIr.Primitive("integer", null, null))
+                    else
+                        SchemaIr.Primitive("string", "date", null)
+
+                "java.time.LocalDateTime", "java.time.LocalTime", "org.joda.time.LocalDateTime", "org.joda.time.LocalTime" ->
+                    if (writeDatesAsTimestamps)
+                        SchemaIr.ArrayOf(SchemaIr.Primitive("integer", null, null))
+                    else
+                        SchemaIr.Primitive("string", "date-time", null)
+
+                "java.time.Instant", "java.time.OffsetDateTime", "java.time.ZonedDateTime", "org.joda.time.DateTime" ->
+                    if (writeDatesAsTimestamps)
+                        SchemaIr.Primitive("number", null, null)
+                    else
+                        SchemaIr.Primitive("string", "date-time", null)
+
+                "java.time.Duration", "java.time.Year" ->
+                    if (writeDatesAsTimestamps)
+                        SchemaIr.Primitive("integer", null, null)
+                    else
+                        SchemaIr.Primitive("string", "date-time", null)
+
+                else -> null
+            }
+        }
+
+        private fun beanToIr(type: DeclaredType, element: TypeElement, inline: Boolean): SchemaIr {
+            val subTypes = getSubTypes(element)
+            if (subTypes.isNotEmpty()) {
+                val subTypeNames = subTypes.map {
+                    subType ->
+                    getOrCreateDefinition(subType) { beanToIr(subType.asType() as DeclaredType, subType, true) }
+                }
+                val subTypeInfos = subTypes.map { getPolymorphismInfo(it) }
+                val typePropertyName = subTypeInfos[0]?.typePropertyName
+                val typeIds = if (typePropertyName != null && subTypeInfos.all { it?.typePropertyName == typePropertyName })
+                    subTypeInfos.map { it!!.subTypeName } else null
+                return SchemaIr.OneOf(subTypeNames, if (typeIds != null) typePropertyName else null, typeIds)
+            } else if (getProperties(type, element).isEmpty() && !hasRuntimeAnnotations(element)) {
+                // Jackson has no serializer for it - can be anything
+                return SchemaIr.AnyValue
+            } else if (inline) {
+                return objectToIr(type, element)
+            } else {
+                return SchemaIr.Ref(getOrCreateDefinition(element) { objectToIr(type, element) })
+            }
+        }
+
+        private fun objectToIr(type: DeclaredType, element: TypeElement): SchemaIr.ObjectType {
+            val polymorphismInfo = getPolymorphismInfo(element)
+
+            val properties = ArrayList<SchemaIr.Property>()
+            val names = HashSet<String>()
+            for (property in getProperties(type, element)) {
+                if (property.name == polymorphismInfo?.typePropertyName || !names.add(property.name))
+                    continue
+                properties.add(propertyToIr(property))
+            }
+
+            return SchemaIr.ObjectType(
+                    type = getTypeName(element),
+                    format = getClassAnnotation(element, JsonSchemaFormat::class.java)?.value,
+                    // @JsonPropertyDescription wins over @JsonSchemaDescription
+                    description = getClassAnnotation(element, JsonPropertyDescription::class.java)?.value
+                            ?: getClassAnnotation(element, JsonSchemaDescription::class.java)?.value,
+                    title = getClassAnnotation(element, JsonSchemaTitle::class.java)?.value,
+                    polymorphismInfo = polymorphismInfo,
+                    properties = properties)
+        }
+
+        private fun propertyToIr(property: BeanProperty): SchemaIr.Property {
+            val typeName = getTypeName(property.type)
+            val optional = typeName in OPTIONAL_CLASS_NAMES
+            val notNull = property.getAnnotation(NotNull::class.java) != null
+            val size = property.getAnnotation(Size::class.java)
+            val annotations = SchemaIr.PropertyAnnotations(
+                    typeName = typeName,
+                    notNull = notNull,
+                    pattern = property.getAnnotation(Pattern::class.java)?.regexp,
+                    minLength = if (size != null && size.min > 0) size.min else null,
+                    maxLength = if (size != null && size.max != Integer.MAX_VALUE) size.max else null,
+                    minimum = property.getAnnotation(Min::class.java)?.value,
+                    maximum = property.getAnnotation(Max::class.java)?.value,
+                    defaultValue = property.getAnnotation(JsonSchemaDefault::class.java)?.value,
+                    format = property.getAnnotation(JsonSchemaFormat::class.java)?.value,
+                    description = property.getAnnotation(JsonPropertyDescription::class.java)?.value
+                            ?: property.getAnnotation(JsonSchemaDescription::class.java)?.value,
+                    title = property.getAnnotation(JsonSchemaTitle::class.java)?.value)
+
+            val schema = if (hasCustomSerializer(property.annotated)) {
+                SchemaIr.AnyValue
+            } else {
+                toIr(if (optional) getTypeArgument(property.type as DeclaredType, typeName, 0) else property.type, false)
+            }
+            val required = property.type.kind.isPrimitive || notNull || property.getAnnotation(JsonProperty::class.java)?.required ?: false
+            return SchemaIr.Property(property.name, schema, required, optional, annotations)
+        }
+    }
+
+    // Set if element is a child in a polymorphism config - as jackson, from @JsonTypeInfo of element or a supertype
+    private fun getPolymorphismInfo(element: TypeElement): JsonSchemaGenerator.PolymorphismInfo? {
+        val jsonTypeInfo = getClassAnnotation(element, JsonTypeInfo::class.java) ?: return null
+        if (jsonTypeInfo.include != JsonTypeInfo.As.PROPERTY)
+            throw ElementException(element, "We only support polymorphism using jsonTypeInfo.include() == JsonTypeInfo.As.PROPERTY")
+        if (jsonTypeInfo.use != JsonTypeInfo.Id.NAME)
+            throw ElementException(element, "We only support polymorphism using jsonTypeInfo.use == JsonTypeInfo.Id.NAME")
+        return JsonSchemaGenerator.PolymorphismInfo(jsonTypeInfo.property, getTypeId(element))
+    }
+
+    // The properties jackson serializes, in the order it does - see POJOPropertiesCollector
+    private fun getProperties(type: DeclaredType, element: TypeElement): List<BeanProperty> {
+        val builders = LinkedHashMap<String, PropertyBuilder>()
+
+        for (field in getFields(element)) {
+            val jsonProperty = field.getAnnotation(JsonProperty::class.java)
+            val visible = jsonProperty != null ||
+                    (field.modifiers.contains(Modifier.PUBLIC) && !field.modifiers.contains(Modifier.TRANSIENT))
+            builders.getOrPut(field.simpleName.toString()) { PropertyBuilder(field.simpleName.toString()) }
+                    .fields.add(createAccessor(field, listOf(field), visible, jsonProperty))
+        }
+
+        for (methods in getMemberMethods(element).values) {
+            val method = methods.first()
+            val jsonProperty = methods.map { it.getAnnotation(JsonProperty::class.java) }.firstOrNull { it != null }
+            val internalName: String?
+            val isGetter = method.parameters.isEmpty() && method.returnType.kind != TypeKind.VOID
+            if (isGetter) {
+                if (methods.any { it.getAnnotation(JsonValue::class.java) != null || it.getAnnotation(JsonAnyGetter::class.java) != null })
+                    continue
+                internalName = getGetterName(method)
+            } else if (method.parameters.size == 1) {
+                internalName = getSetterName(method)
+            } else {
+                continue
+            }
+            if (internalName == null && jsonProperty == null)
+                continue
+
+            val name = internalName ?: method.simpleName.toString()
+            val accessor = createAccessor(method, methods, jsonProperty != null || method.modifiers.contains(Modifier.PUBLIC), jsonProperty)
+            val builder = builders.getOrPut(name) { PropertyBuilder(name) }
+            if (isGetter) builder.getters.add(accessor) else builder.setters.add(accessor)
+        }
+
+        // Remove what is neither visible nor wanted
+        val iterator = builders.values.iterator()
+        while (iterator.hasNext()) {
+            val builder = iterator.next()
+            val all = builder.all()
+            if (all.none { it.visible }) {
+                iterator.remove()
+            } else if (all.any { it.ignored }) {
+                if (all.none { it.explicitlyIncluded }) {
+                    iterator.remove()
+                } else {
+                    builder.getters.removeAll { it.ignored }
+                    builder.fields.removeAll { it.ignored }
+                    builder.setters.removeAll { it.ignored }
+                }
+            }
+        }
+
+        // Renamed properties go last
+        val renamed = ArrayList<Pair<String, PropertyBuilder>>()
+        val renamedIterator = builders.values.iterator()
+        while (renamedIterator.hasNext()) {
+            val builder = renamedIterator.next()
+            val explicitName = builder.all().map { it.explicitName }.firstOrNull { it != null } ?: continue
+            renamedIterator.remove()
+            renamed.add(Pair(explicitName, builder))
+        }
+        val properties = LinkedHashMap<String, BeanProperty>()
+        for ((name, builder) in builders) {
+            createProperty(type, name, builder)?.let { properties.put(name, it) }
+        }
+        for ((name, builder) in renamed) {
+            if (!properties.containsKey(name))
+                createProperty(type, name, builder)?.let { properties.put(name, it) }
+        }
+
+        getClassAnnotation(element, JsonIgnoreProperties::class.java)?.let {
+            it.value.forEach { properties.remove(it) }
+        }
+
+        return sortProperties(element, properties)
+    }
+
+    private fun createAccessor(element: Element, annotated: List<Element>, visible: Boolean, jsonProperty: JsonProperty?): Accessor {
+        val ignored = annotated.map { it.getAnnotation(JsonIgnore::class.java) }.firstOrNull { it != null }?.value ?: false
+        val explicitName = if (jsonProperty != null && jsonProperty.value.isNotEmpty()) jsonProperty.value else null
+        return Accessor(element, visible, explicitName, ignored, jsonProperty != null, annotated)
+    }
+
+    // Returns null if jackson does not serialize it - no visible getter nor field
+    private fun createProperty(type: DeclaredType, name: String, builder: PropertyBuilder): BeanProperty? {
+        val accessor = builder.getters.firstOrNull { it.visible } ?: builder.fields.firstOrNull { it.visible } ?: return null
+        val annotated = ArrayList<Element>()
+        builder.getters.forEach { annotated.addAll(it.annotated) }
+        builder.fields.forEach { annotated.addAll(it.annotated) }
+        builder.setters.forEach { annotated.addAll(it.annotated) }
+        return BeanProperty(name, getMemberType(type, accessor.element), annotated)
+    }
+
+    private fun sortProperties(element: TypeElement, properties: LinkedHashMap<String, BeanProperty>): List<BeanProperty> {
+        val jsonPropertyOrder = getClassAnnotation(element, JsonPropertyOrder::class.java)
+        if (jsonPropertyOrder == null)
+            return properties.values.toList()
+
+        val all: MutableMap<String, BeanProperty> = if (jsonPropertyOrder.alphabetic) TreeMap(properties) else properties
+        val ordered = LinkedHashMap<String, BeanProperty>()
+        for (name in jsonPropertyOrder.value) {
+            all[name]?.let { ordered.put(name, it) }
+        }
+        ordered.putAll(all)
+        return ordered.values.toList()
+    }
+
+    // Name of the property of a getter, as jackson finds it: getX() or isX() - null if not a getter
+    private fun getGetterName(method: ExecutableElement): String? {
+        val name = method.simpleName.toString()
+        if (name.startsWith("get"))
+            return manglePropertyName(name, 3)
+        if (name.startsWith("is")) {
+            val returnType = method.returnType
+            if (returnType.kind == TypeKind.BOOLEAN || getTypeName(returnType) == "java.lang.Boolean")
+                return manglePropertyName(name, 2)
+        }
+        return null
+    }
+
+    private fun getSetterName(method: ExecutableElement): String? {
+        val name = method.simpleName.toString()
+        return if (name.startsWith("set")) manglePropertyName(name, 3) else null
+    }
+
+    // Lower cases the leading upper case chars, as BeanUtil.legacyManglePropertyName
+    private fun manglePropertyName(name: String, offset: Int): String? {
+        if (name.length == offset)
+            return null
+        val sb = StringBuilder(name.length - offset)
+        var i = offset
+        while (i < name.length) {
+            val c = name[i]
+            val lower = Character.toLowerCase(c)
+            if (c == lower) {
+                sb.append(name, i, name.length)
+                break
+            }
+            sb.append(lower)
+            i += 1
+        }
+        return sb.toString()
+    }
+
+    // Instance fields of element and its superclasses, superclasses first - as AnnotatedClass
+    private fun getFields(element: TypeElement): List<VariableElement> {
+        val fields = ArrayList<VariableElement>()
+        val superclass = element.superclass
+        if (superclass.kind == TypeKind.DECLARED) {
+            val superElement = (superclass as DeclaredType).asElement() as TypeElement
+            if (superElement.qualifiedName.toString() != "java.lang.Object")
+                fields.addAll(getFields(superElement))
+        }
+        ElementFilter.fieldsIn(element.enclosedElements).filterTo(fields) { !it.modifiers.contains(Modifier.STATIC) }
+        return fields
+    }
+
+    // Instance methods of element and its supertypes, by signature - each with the methods it overrides, most specific first
+    private fun getMemberMethods(element: TypeElement): LinkedHashMap<String, MutableList<ExecutableElement>> {
+        val methods = LinkedHashMap<String, MutableList<ExecutableElement>>()
+        for (typeElement in listOf(element) + getSuperTypes(element)) {
+            for (method in ElementFilter.methodsIn(typeElement.enclosedElements)) {
+                if (method.modifiers.contains(Modifier.STATIC))
+                    continue
+                val signature = method.simpleName.toString() + method.parameters.map { types.erasure(it.asType()).toString() }
+                methods.getOrPut(signature) { ArrayList() }.add(method)
+            }
+        }
+        return methods
+    }
+
+    // Supertypes of element, but Object, in the order jackson looks for annotations - as ClassUtil.findSuperTypes
+    private fun getSuperTypes(element: TypeElement): List<TypeElement> {
+        val result = ArrayList<TypeElement>()
+        addSuperTypes(element, result, false)
+        return result
+    }
+
+    private fun addSuperTypes(element: TypeElement?, result: MutableList<TypeElement>, addItself: Boolean) {
+        if (element == null || element.qualifiedName.toString() == "java.lang.Object")
+            return
+        if (addItself) {
+            if (result.contains(element))
+                return
+            result.add(element)
+        }
+        element.interfaces.forEach { addSuperTypes(asTypeElement(it), result, true) }
+        addSuperTypes(asTypeElement(element.superclass), result, true)
+    }
+
+    private fun asTypeElement(type: TypeMirror): TypeElement? =
+            if (type.kind == TypeKind.DECLARED) (type as DeclaredType).asElement() as TypeElement else null
+
+    // Class annotations are inherited from supertypes, as with AnnotatedClass
+    private fun <A : Annotation> getClassAnnotation(element: TypeElement, annotationClass: Class<A>): A? {
+        element.getAnnotation(annotationClass)?.let {
+            return it
+        }
+        for (superType in getSuperTypes(element)) {
+            superType.getAnnotation(annotationClass)?.let {
+                return it
+            }
+        }
+        return null
+    }
+
+    private fun getClassAnnotationMirror(element: TypeElement, annotationName: String, withSuperTypes: Boolean): AnnotationMirror? {
+        val candidates = if (withSuperTypes) listOf(element) + getSuperTypes(element) else listOf(element)
+        for (candidate in candidates) {
+            getAnnotationMirror(candidate, annotationName)?.let {
+                return it
+            }
+        }
+        return null
+    }
+
+    private fun getAnnotationMirror(element: Element, annotationName: String): AnnotationMirror? =
+            element.annotationMirrors.firstOrNull { (it.annotationType.asElement() as TypeElement).qualifiedName.toString() == annotationName }
+
+    private fun getAnnotationValue(annotation: AnnotationMirror, name: String): Any? {
+        for ((method, value) in annotation.elementValues) {
+            if (method.simpleName.toString() == name)
+                return value.value
+        }
+        return null
+    }
+
+    // Whether jackson sees annotations on element or its supertypes - it then writes an empty object, even with no properties
+    private fun hasRuntimeAnnotations(element: TypeElement): Boolean =
+            (listOf(element) + getSuperTypes(element)).any {
+                it.annotationMirrors.any {
+                    val retention = it.annotationType.asElement().getAnnotation(java.lang.annotation.Retention::class.java)
+                    retention?.value == java.lang.annotation.RetentionPolicy.RUNTIME
+                }
+            }
+
+    // @JsonSerialize(using = ...) on one of elements
+    private fun hasCustomSerializer(elements: List<Element>): Boolean =
+            elements.any {
+                val jsonSerialize = getAnnotationMirror(it, "com.fasterxml.jackson.databind.annotation.JsonSerialize")
+                jsonSerialize != null && getAnnotationValue(jsonSerialize, "using") != null
+            }
+
+    // The subtypes of element to use in oneOf, in the order jackson resolves them - empty if element is not a polymorphism parent
+    private fun getSubTypes(element: TypeElement): List<TypeElement> {
+        val elementType = types.erasure(element.asType())
+        return collectAndResolveSubtypes(element).values
+                .map { it.element }
+                .filter { it != element && types.isAssignable(types.erasure(it.asType()), elementType) }
+    }
+
+    // The type id of element: from @JsonTypeName, or @JsonSubTypes - jackson's default if not found
+    private fun getTypeId(element: TypeElement): String {
+        collectAndResolveSubtypes(element)[getBinaryName(element)]?.name?.let {
+            return it
+        }
+        val className = getBinaryName(element)
+        return className.substring(className.lastIndexOf('.') + 1)
+    }
+
+    // Same as StdSubtypeResolver.collectAndResolveSubtypesByClass - including the order of its HashMap, keyed by class name
+    private fun collectAndResolveSubtypes(element: TypeElement): HashMap<String, NamedType> {
+        val collected = HashMap<String, NamedType>()
+        collectAndResolve(element, NamedType(element, null), true, collected)
+        return collected
+    }
+
+    private fun collectAndResolve(element: TypeElement, namedType: NamedType, withSuperTypes: Boolean, collected: HashMap<String, NamedType>) {
+        var resolved = namedType
+        if (resolved.name == null) {
+            val jsonTypeName = if (withSuperTypes) getClassAnnotation(element, JsonTypeName::class.java) else element.getAnnotation(JsonTypeName::class.java)
+            if (jsonTypeName != null && jsonTypeName.value.isNotEmpty())
+                resolved = NamedType(element, jsonTypeName.value)
+        }
+
+        val className = getBinaryName(element)
+        val previous = collected[className]
+        if (previous != null) {
+            if (resolved.name != null && previous.name == null)
+                collected.put(className, resolved)
+            return
+        }
+        collected.put(className, resolved)
+
+        val jsonSubTypes = getClassAnnotationMirror(element, "com.fasterxml.jackson.annotation.JsonSubTypes", withSuperTypes) ?: return
+        val subTypes = getAnnotationValue(jsonSubTypes, "value") as? List<*> ?: return
+        for (subType in subTypes) {
+            val typeAnnotation = (subType as AnnotationValue).value as AnnotationMirror
+            val subElement = asTypeElement(getAnnotationValue(typeAnnotation, "value") as TypeMirror) ?: continue
+            val name = getAnnotationValue(typeAnnotation, "name") as String?
+            collectAndResolve(subElement, NamedType(subElement, if (name == null || name.isEmpty()) null else name), false, collected)
+        }
+    }
+
+    private fun getEnumValues(element: TypeElement): List<String> =
+            element.enclosedElements.filter { it.kind == ElementKind.ENUM_CONSTANT }.map {
+                val jsonProperty = it.getAnnotation(JsonProperty::class.java)
+                if (jsonProperty != null && jsonProperty.value.isNotEmpty()) jsonProperty.value else it.simpleName.toString()
+            }
+
+    // Type of a field, or return type of a method, as a member of type - type variables resolved
+    private fun getMemberType(type: DeclaredType, member: Element): TypeMirror {
+        val memberType = try {
+            types.asMemberOf(type, member)
+        } catch (e: IllegalArgumentException) {
+            member.asType()
+        }
+        return if (memberType is ExecutableType) memberType.returnType else memberType
+    }
+
+    // Type argument number index of the supertype named superTypeName of type - Object if not known
+    private fun getTypeArgument(type: DeclaredType, superTypeName: String, index: Int): TypeMirror {
+        val toVisit = ArrayList<TypeMirror>()
+        toVisit.add(type)
+        while (toVisit.isNotEmpty()) {
+            val current = toVisit.removeAt(0)
+            if (current is DeclaredType && (current.asElement() as TypeElement).qualifiedName.toString() == superTypeName) {
+                return if (current.typeArguments.size > index) current.typeArguments[index] else getObjectType()
+            }
+            toVisit.addAll(types.directSupertypes(current))
+        }
+        return getObjectType()
+    }
+
+    private fun getObjectType(): TypeMirror = elements.getTypeElement("java.lang.Object").asType()
+
+    private fun isSubtype(type: TypeMirror, className: String): Boolean {
+        val typeElement = elements.getTypeElement(className) ?: return false
+        return types.isAssignable(types.erasure(type), types.erasure(typeElement.asType()))
+    }
+
+    private fun getBinaryName(element: TypeElement): String = elements.getBinaryName(element).toString()
+
+    private fun getTypeName(element: TypeElement): SchemaIr.TypeName =
+            SchemaIr.TypeName(getBinaryName(element), element.simpleName.toString())
+
+    // Name of the raw class of type, as Class.getName()
+    private fun getTypeName(type: TypeMirror): String {
+        return when (type.kind) {
+            TypeKind.DECLARED -> getBinaryName((type as DeclaredType).asElement() as TypeElement)
+            TypeKind.TYPEVAR, TypeKind.WILDCARD -> getTypeName(types.erasure(type))
+            else -> types.erasure(type).toString()
+        }
+    }
+
+    private fun warn(element: Element, message: String) {
+        if (!config.disableWarnings)
+            env.messager.printMessage(javax.tools.Diagnostic.Kind.WARNING, message, element)
+    }
+}
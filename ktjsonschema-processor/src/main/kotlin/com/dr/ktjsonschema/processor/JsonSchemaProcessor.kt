@@ -0,0 +1,164 @@
+package com.dr.ktjsonschema.processor
+
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaDraft4Renderer
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.util.*
+import javax.annotation.processing.AbstractProcessor
+import javax.annotation.processing.RoundEnvironment
+import javax.annotation.processing.SupportedAnnotationTypes
+import javax.annotation.processing.SupportedOptions
+import javax.lang.model.SourceVersion
+import javax.lang.model.element.Element
+import javax.lang.model.element.ElementKind
+import javax.lang.model.element.PackageElement
+import javax.lang.model.element.TypeElement
+import javax.tools.Diagnostic
+
+/**
+ * Generates, for each class annotated with @GenerateJsonSchema, a class holding its finished schema in a constant -
+ * e.g. FooJsonSchema.JSON for Foo, in the package of Foo - so no schema has to be generated at runtime
+ * (useful on Android, where reflection and jackson introspection are slow).
+ *
+ * Options:
+ * - ktjsonschema.config: vanillaJsonSchemaDraft4 (default) or html5EnabledSchema
+ * - ktjsonschema.writeDatesAsTimestamps: true (default) or false, as configured on the ObjectMapper
+ *
+ * Each class is compiled by ElementSchemaCompiler - see it for what is taken into account - and rendered by
+ * JsonSchemaDraft4Renderer, as JsonSchemaGenerator renders the classes it compiles.
+ */
+@SupportedAnnotationTypes(JsonSchemaProcessor.ANNOTATION_NAME)
+@SupportedOptions(JsonSchemaProcessor.CONFIG_OPTION, JsonSchemaProcessor.WRITE_DATES_AS_TIMESTAMPS_OPTION)
+class JsonSchemaProcessor : AbstractProcessor() {
+
+    companion object {
+        const val ANNOTATION_NAME = "com.dr.ktjsonschema.annotations.GenerateJsonSchema"
+        const val CONFIG_OPTION = "ktjsonschema.config"
+        const val WRITE_DATES_AS_TIMESTAMPS_OPTION = "ktjsonschema.writeDatesAsTimestamps"
+        const val CLASS_NAME_SUFFIX = "JsonSchema"
+
+        // A class file can't hold a longer string constant (in modified UTF-8)
+        private val MAX_CONSTANT_LENGTH = 65535
+        private val PART_LENGTH = 16384
+    }
+
+    private val objectMapper = ObjectMapper()
+
+    override fun getSupportedSourceVersion(): SourceVersion = SourceVersion.latestSupported()
+
+    override fun process(annotations: Set<TypeElement>, roundEnv: RoundEnvironment): Boolean {
+        if (annotations.isEmpty())
+            return false
+
+        val config = getConfig() ?: return true
+        val writeDatesAsTimestamps = processingEnv.options[WRITE_DATES_AS_TIMESTAMPS_OPTION]?.toBoolean() ?: true
+        val compiler = ElementSchemaCompiler(processingEnv, config, writeDatesAsTimestamps)
+        val renderer = JsonSchemaDraft4Renderer(config)
+        val annotation = processingEnv.elementUtils.getTypeElement(ANNOTATION_NAME)
+        for (element in roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element !is TypeElement || element.kind == ElementKind.ANNOTATION_TYPE) {
+                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "@GenerateJsonSchema only applies to classes", element)
+                continue
+            }
+            try {
+                val json = objectMapper.writeValueAsString(renderer.render(compiler.compile(element), null, null))
+                writeSchemaClass(element, json)
+            } catch (e: ElementException) {
+                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, e.message, e.element)
+            } catch (e: Exception) {
+                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR, "Could not generate the JSON Schema: $e", element)
+            }
+        }
+        return true
+    }
+
+    private fun getConfig(): JsonSchemaConfig? {
+        return when (processingEnv.options[CONFIG_OPTION]) {
+            null, "vanillaJsonSchemaDraft4" -> JsonSchemaConfig.vanillaJsonSchemaDraft4
+            "html5EnabledSchema" -> JsonSchemaConfig.html5EnabledSchema
+            else -> {
+                processingEnv.messager.printMessage(Diagnostic.Kind.ERROR,
+                        "$CONFIG_OPTION must be vanillaJsonSchemaDraft4 or html5EnabledSchema")
+                null
+            }
+        }
+    }
+
+    // Name of the generated class: the names of element and the classes enclosing it, joined by '_', and the suffix
+    fun getSchemaClassSimpleName(element: TypeElement): String {
+        val names = ArrayList<String>()
+        var current: Element = element
+        while (current is TypeElement) {
+            names.add(0, current.simpleName.toString())
+            current = current.enclosingElement
+        }
+        return names.joinToString("_") + CLASS_NAME_SUFFIX
+    }
+
+    private fun writeSchemaClass(element: TypeElement, json: String) {
+        val packageName = processingEnv.elementUtils.getPackageOf(element).let {
+            if ((it as PackageElement).isUnnamed) null else it.qualifiedName.toString()
+        }
+        val simpleName = getSchemaClassSimpleName(element)
+        val qualifiedName = if (packageName == null) simpleName else "$packageName.$simpleName"
+
+        val source = StringBuilder()
+        packageName?.let {
+            source.append("package ").append(it).append(";\n\n")
+        }
+        source.append("/** JSON Schema of {@link ").append(element.qualifiedName).append("}, generated by ktjsonschema-processor. */\n")
+        source.append("public final class ").append(simpleName).append(" {\n\n")
+        if (getModifiedUtf8Length(json) <= MAX_CONSTANT_LENGTH) {
+            source.append("    public static final String JSON = ").append(toJavaLiteral(json)).append(";\n")
+        } else {
+            // Too long for a constant - built when the class is loaded
+            source.append("    public static final String JSON;\n\n")
+            source.append("    static {\n")
+            source.append("        StringBuilder sb = new StringBuilder(").append(json.length).append(");\n")
+            var start = 0
+            while (start < json.length) {
+                var end = Math.min(start + PART_LENGTH, json.length)
+                // Don't split surrogate pairs
+                if (end < json.length && Character.isHighSurrogate(json[end - 1]))
+                    end -= 1
+                source.append("        sb.append(").append(toJavaLiteral(json.substring(start, end))).append(");\n")
+                start = end
+            }
+            source.append("        JSON = sb.toString();\n")
+            source.append("    }\n")
+        }
+        source.append("\n    private ").append(simpleName).append("() {\n    }\n}\n")
+
+        processingEnv.filer.createSourceFile(qualifiedName, element).openWriter().use {
+            it.write(source.toString())
+        }
+    }
+
+    private fun getModifiedUtf8Length(s: String): Int {
+        var length = 0
+        for (c in s) {
+            length += if (c.toInt() in 1..0x7f) 1 else if (c.toInt() <= 0x7ff) 2 else 3
+        }
+        return length
+    }
+
+    private fun toJavaLiteral(s: String): String {
+        val sb = StringBuilder(s.length + 2)
+        sb.append('"')
+        for (c in s) {
+            when (c) {
+                '"' -> sb.append("\\\"")
+                '\\' -> sb.append("\\\\")
+                '\n' -> sb.append("\\n")
+                '\r' -> sb.append("\\r")
+                '\t' -> sb.append("\\t")
+                else -> if (c.toInt() < 0x20 || c.toInt() > 0x7e)
+                    sb.append(String.format("\\u%04x", c.toInt()))
+                else
+                    sb.append(c)
+            }
+        }
+        sb.append('"')
+        return sb.toString()
+    }
+}
@@ -0,0 +1,30 @@
+package com.dr.ktjsonschema.processor.testData;
+
+import com.dr.ktjsonschema.annotations.GenerateJsonSchema;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+@GenerateJsonSchema
+@JsonTypeInfo(
+        use = JsonTypeInfo.Id.NAME,
+        include = JsonTypeInfo.As.PROPERTY,
+        property = "kind")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = Pet.Dog.class, name = "dog"),
+        @JsonSubTypes.Type(Pet.Cat.class) })
+public abstract class Pet {
+
+    public String name;
+
+    public static class Dog extends Pet {
+        public int barkVolume;
+        public Pet bestFriend;
+    }
+
+    @JsonTypeName("cat")
+    @GenerateJsonSchema
+    public static class Cat extends Pet {
+        public boolean indoor;
+    }
+}
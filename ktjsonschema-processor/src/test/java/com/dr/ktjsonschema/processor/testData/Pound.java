@@ -0,0 +1,24 @@
+package com.dr.ktjsonschema.processor.testData;
+
+import com.dr.ktjsonschema.annotations.GenerateJsonSchema;
+
+// Definitions named alike
+@GenerateJsonSchema
+public class Pound {
+
+    public Dog dog;
+
+    public Pet.Dog pet;
+
+    public Kennel.Dog kennelDog;
+
+    public static class Dog {
+        public String tag;
+    }
+
+    public static class Kennel {
+        public static class Dog {
+            public int size;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.dr.ktjsonschema.processor.testData;
+
+import com.dr.ktjsonschema.annotations.GenerateJsonSchema;
+import com.dr.ktjsonschema.annotations.JsonSchemaDefault;
+import com.dr.ktjsonschema.annotations.JsonSchemaDescription;
+import com.dr.ktjsonschema.annotations.JsonSchemaFormat;
+import com.dr.ktjsonschema.annotations.JsonSchemaTitle;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@GenerateJsonSchema
+@JsonSchemaTitle("Animal shelter")
+@JsonSchemaDescription("Where pets wait for a home")
+@JsonPropertyOrder({"id", "name"})
+public class Shelter {
+
+    public String name;
+
+    @Min(1)
+    @Max(1000)
+    public long id;
+
+    @NotNull
+    @Size(max = 100)
+    @Pattern(regexp = "[A-Z].*")
+    @JsonSchemaDescription("Street and city")
+    public String address;
+
+    @JsonSchemaFormat("email")
+    @JsonSchemaDefault("info@example.com")
+    public String email;
+
+    @JsonProperty(value = "capacity", required = true)
+    public Integer maxPets;
+
+    public List<Pet> pets;
+
+    public Map<String, Pet.Cat> catsByRoom;
+
+    public Date opened;
+
+    public Status status;
+
+    @JsonIgnore
+    public String internalNotes;
+
+    private String phone;
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public enum Status {
+        OPEN, FULL, @JsonProperty("closed") CLOSED
+    }
+}
@@ -0,0 +1,135 @@
+package com.dr.ktjsonschema.processor
+
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.annotations.GenerateJsonSchema
+import com.dr.ktjsonschema.processor.testData.Pet
+import com.dr.ktjsonschema.processor.testData.Pound
+import com.dr.ktjsonschema.processor.testData.Shelter
+import com.fasterxml.jackson.annotation.JsonProperty
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+import java.net.URLClassLoader
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.ToolProvider
+import javax.validation.constraints.NotNull
+
+// The test data is compiled with JsonSchemaProcessor - found on the test compile classpath
+class JsonSchemaProcessorTest {
+    val _objectMapper = ObjectMapper()
+    val jsonSchemaGenerator = JsonSchemaGenerator(_objectMapper, config = JsonSchemaConfig.vanillaJsonSchemaDraft4)
+
+    // The java models of the generator tests (see JsonSchemaGeneratorTest) - set by the build
+    val generatorTestDataDir = File(System.getProperty("ktjsonschema.generatorTestDataDir")
+            ?: throw IllegalStateException("System property ktjsonschema.generatorTestDataDir is not set"))
+
+    val generatorTestDataPackage = "com.kjetland.jackson.jsonSchema.testData"
+
+    // The models of generatorTestDataDir to generate schemas of - annotated with @GenerateJsonSchema when compiled
+    val generatorTestDataClasses = listOf("Child1", "Child2", "ClassNotExtendingAnything", "ManyPrimitives", "MyEnum",
+            "ObjectWithPropertyWithCustomSerializer", "Parent", "PojoUsingFormat", "PojoUsingMaps", "PojoUsingOptionalJava",
+            "PojoWithArrays", "PojoWithCustomSerializer", "PojoWithParent", "RecursivePojo")
+
+    // The JSON constant of the class generated for a schema - compared as text, so the order of properties counts too
+    fun getGeneratedJson(schemaClassName: String, classLoader: ClassLoader = javaClass.classLoader) =
+            Class.forName(schemaClassName, true, classLoader).getField("JSON").get(null) as String
+
+    fun generateJson(clazz: Class<*>) = _objectMapper.writeValueAsString(jsonSchemaGenerator.generateJsonSchema(clazz))
+
+    // The source of a model, with its top-level declaration annotated with @GenerateJsonSchema - on the same line, so
+    // diagnostics point at the file as it is
+    class AnnotatedSource(val file: File, val simpleName: String) : SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
+        override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence {
+            val source = file.readText()
+            val declaration = Regex("^public (abstract )?(class|enum) $simpleName\\b", RegexOption.MULTILINE).find(source)
+                    ?: throw IllegalStateException("No top-level declaration of $simpleName in $file")
+            val start = declaration.range.start
+            return source.substring(0, start) + "@" + GenerateJsonSchema::class.java.name + " " + source.substring(start)
+        }
+    }
+
+    @Test
+    fun sameAsGeneratedAtRuntime() {
+        Assert.assertEquals(generateJson(Shelter::class.java),
+                getGeneratedJson("com.dr.ktjsonschema.processor.testData.ShelterJsonSchema"))
+    }
+
+    @Test
+    fun polymorphism() {
+        Assert.assertEquals(generateJson(Pet::class.java),
+                getGeneratedJson("com.dr.ktjsonschema.processor.testData.PetJsonSchema"))
+
+        // Nested classes are named after the classes enclosing them
+        Assert.assertEquals(generateJson(Pet.Cat::class.java),
+                getGeneratedJson("com.dr.ktjsonschema.processor.testData.Pet_CatJsonSchema"))
+    }
+
+    @Test
+    fun definitionsNamedAlike() {
+        Assert.assertEquals(generateJson(Pound::class.java),
+                getGeneratedJson("com.dr.ktjsonschema.processor.testData.PoundJsonSchema"))
+    }
+
+    // Compiles the models of the generator tests using JsonSchemaProcessor, given options.
+    // Returns the dir the models and their schema classes were written to
+    fun compileGeneratorTestData(options: List<String>): File {
+        val outputDir = createTempDir()
+        val classpath = listOf(GenerateJsonSchema::class.java, JsonProperty::class.java, JsonGenerator::class.java,
+                ObjectMapper::class.java, NotNull::class.java)
+                .map { File(it.protectionDomain.codeSource.location.toURI()).path }
+                .joinToString(File.pathSeparator)
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        val diagnostics = DiagnosticCollector<JavaFileObject>()
+        compiler.getStandardFileManager(diagnostics, null, null).use {
+            val files = generatorTestDataDir.listFiles { file -> file.name.endsWith(".java") }.toList()
+            val (annotated, others) = files.partition { generatorTestDataClasses.contains(it.nameWithoutExtension) }
+            val sources = annotated.map { file -> AnnotatedSource(file, file.nameWithoutExtension) } + it.getJavaFileObjectsFromFiles(others)
+            val task = compiler.getTask(null, it, diagnostics, listOf("-classpath", classpath, "-d", outputDir.path, "-s", outputDir.path) + options,
+                    null, sources)
+            task.setProcessors(listOf(JsonSchemaProcessor()))
+            Assert.assertTrue(diagnostics.diagnostics.toString(), task.call())
+        }
+        return outputDir
+    }
+
+    // The schemas generated at compile time are the same as the ones generated at runtime, using an ObjectMapper
+    // configured as the processor assumes
+    fun assertSameAsGeneratedAtRuntime(config: JsonSchemaConfig, writeDatesAsTimestamps: Boolean, options: List<String>) {
+        val objectMapper = ObjectMapper()
+        objectMapper.registerModule(JavaTimeModule())
+        objectMapper.registerModule(Jdk8Module())
+        objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, writeDatesAsTimestamps)
+        val generator = JsonSchemaGenerator(objectMapper, config = config)
+
+        val outputDir = compileGeneratorTestData(options)
+        try {
+            val classLoader = URLClassLoader(arrayOf(outputDir.toURI().toURL()), javaClass.classLoader)
+            for (simpleName in generatorTestDataClasses) {
+                val className = "$generatorTestDataPackage.$simpleName"
+                val expected = objectMapper.writeValueAsString(generator.generateJsonSchema(Class.forName(className, true, classLoader)))
+                Assert.assertEquals(className, expected, getGeneratedJson(className + JsonSchemaProcessor.CLASS_NAME_SUFFIX, classLoader))
+            }
+        } finally {
+            outputDir.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun generatorTestData() {
+        assertSameAsGeneratedAtRuntime(JsonSchemaConfig.vanillaJsonSchemaDraft4, true, listOf())
+    }
+
+    @Test
+    fun generatorTestDataUsingHtml5Config() {
+        assertSameAsGeneratedAtRuntime(JsonSchemaConfig.html5EnabledSchema, false,
+                listOf("-A${JsonSchemaProcessor.CONFIG_OPTION}=html5EnabledSchema", "-A${JsonSchemaProcessor.WRITE_DATES_AS_TIMESTAMPS_OPTION}=false"))
+    }
+}
@@ -0,0 +1,95 @@
+package com.dr.ktjsonschema.validator
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.databind.JsonNode
+
+/**
+ * Validates json against a draft 4 schema generated by JsonSchemaGenerator.
+ *
+ * The schema is compiled once, when created, into a tree of validators - one for each keyword that validates
+ * anything: type, properties, required, additionalProperties, items, enum, pattern, minLength, maxLength,
+ * minimum, maximum, oneOf and $ref (into the schema itself). Patterns are compiled and $refs resolved up front,
+ * so validating only walks the json. format is not validated. Schemas using other draft 4 keywords are refused.
+ *
+ * Patterns are java regular expressions, found anywhere in the string like their ECMA 262 counterparts.
+ *
+ * Json can also be validated as it is parsed, from a JsonParser, without building a tree: errors are found as soon
+ * as their token is read. Only the values of a oneOf with more than one branch of their type (e.g. a polymorphic
+ * object) are copied, to be read by each of these branches.
+ *
+ * Thread safe: create one per schema, and use it for every validation.
+ */
+class JsonSchemaValidator(val schema: JsonNode) {
+
+    private val root: Validator = JsonSchemaValidatorCompiler(schema).compile()
+
+    /**
+     * Validates node, finding every error - or only the first one when failFast
+     */
+    @JvmOverloads
+    fun validate(node: JsonNode, failFast: Boolean = false): ValidationResult {
+        val context = ValidationContext(failFast)
+        root.validate(node, context)
+        return ValidationResult(context.errors ?: emptyList<ValidationError>())
+    }
+
+    /**
+     * Whether node is valid - stops at the first error, without telling what it is
+     */
+    fun isValid(node: JsonNode): Boolean {
+        val context = ValidationContext(true)
+        context.quietDepth = 1
+        return root.validate(node, context)
+    }
+
+    /**
+     * Validates the value parser is on as it is read (reading its first token if nothing was read yet), finding
+     * every error - or only the first one when failFast.
+     *
+     * The parser is left on the last token of the value - or on the token in error when stopping at the first one.
+     * Malformed json throws the parser's JsonProcessingException.
+     */
+    @JvmOverloads
+    fun validate(parser: JsonParser, failFast: Boolean = false): ValidationResult {
+        val context = ValidationContext(failFast)
+        validate(parser, context)
+        return ValidationResult(context.errors ?: emptyList<ValidationError>())
+    }
+
+    /**
+     * Whether the value parser is on is valid - stops reading at the first error
+     */
+    fun isValid(parser: JsonParser): Boolean {
+        val context = ValidationContext(true)
+        context.quietDepth = 1
+        return validate(parser, context)
+    }
+
+    // Validates an object read by context.pojos - see PojoValidator
+    internal fun validatePojo(pojo: Any?, context: ValidationContext): Boolean = root.validateValue(context.pojos!!.read(pojo), context)
+
+    private fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        if (parser.currentToken == null && parser.nextToken() == null)
+            throw Exception("No json to validate")
+        val valid = root.validate(parser, context)
+        if (valid || !context.stopAtFirstError)
+            JsonTokens.finishValue(parser)
+        return valid
+    }
+}
+
+/**
+ * @param instancePointer json pointer to the invalid value, e.g. /children/0/name
+ * @param schemaPointer json pointer to the keyword of the schema it failed, e.g. /definitions/Child/properties/name/type
+ * @param keyword e.g. type
+ */
+data class ValidationError(val instancePointer: String, val schemaPointer: String, val keyword: String, val message: String) {
+    override fun toString(): String = "${if (instancePointer.isEmpty()) "/" else instancePointer}: $message ($keyword at $schemaPointer)"
+}
+
+class ValidationResult(val errors: List<ValidationError>) {
+    val isValid: Boolean
+        get() = errors.isEmpty()
+
+    override fun toString(): String = if (isValid) "valid" else errors.joinToString("\n")
+}
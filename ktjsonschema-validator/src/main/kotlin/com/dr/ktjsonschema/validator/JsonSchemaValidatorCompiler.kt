@@ -0,0 +1,191 @@
+package com.dr.ktjsonschema.validator
+
+import com.dr.ktjsonschema.ResolvedJsonSchema
+import com.fasterxml.jackson.databind.JsonNode
+import java.util.*
+import java.util.regex.Pattern
+
+// Compiles the draft 4 schema root into validators: one per keyword which validates anything, patterns compiled
+// and $refs resolved once. Keywords only describing (title, format, default, ...) are left out
+internal class JsonSchemaValidatorCompiler(val root: JsonNode) {
+
+    companion object {
+        // Keywords of draft 4 that JsonSchemaGenerator never produces - rather fail than ignore them
+        private val UNSUPPORTED_KEYWORDS = setOf("allOf", "anyOf", "not", "multipleOf", "exclusiveMinimum", "exclusiveMaximum",
+                "minItems", "maxItems", "uniqueItems", "additionalItems", "minProperties", "maxProperties",
+                "patternProperties", "dependencies")
+    }
+
+    // Paths of the schemas compiled are their json pointers in root
+    private val resolvedSchema = ResolvedJsonSchema(root)
+
+    // $ref -> its validator, which each occurrence of that $ref shares
+    private val refs = HashMap<String, RefValidator>()
+
+    fun compile(): Validator {
+        val validator = compile(root, "")
+
+        // Compiling a definition can meet more $refs. $refs to $refs are skipped by resolving them
+        val resolved = HashSet<String>()
+        var pending = refs.values.filter { !resolved.contains(it.ref) }
+        while (pending.isNotEmpty()) {
+            for (refValidator in pending) {
+                val target = resolvedSchema.resolve(refValidator.ref)
+                refValidator.target = compile(target.json, target.pointer)
+                resolved.add(refValidator.ref)
+            }
+            pending = refs.values.filter { !resolved.contains(it.ref) }
+        }
+        return validator
+    }
+
+    private fun compile(schema: JsonNode, path: String): Validator {
+        if (!schema.isObject)
+            throw Exception("Expected a schema at '$path', found: $schema")
+
+        // Any other keyword next to a $ref is ignored
+        schema.get("\$ref")?.let {
+            val ref = it.asText()
+            return refs.getOrPut(ref) { RefValidator(ref) }
+        }
+
+        for (keyword in UNSUPPORTED_KEYWORDS) {
+            if (schema.has(keyword))
+                throw Exception("Keyword '$keyword' at '$path' is not supported")
+        }
+
+        val validators = ArrayList<Validator>()
+
+        val typeValidator = schema.get("type")?.let { compileType(it, "$path/type") }
+        typeValidator?.let { validators.add(it) }
+
+        schema.get("enum")?.let {
+            if (!it.isArray)
+                throw Exception("Expected an array at '$path/enum', found: $it")
+            validators.add(EnumValidator("$path/enum", it.toList()))
+        }
+
+        schema.get("pattern")?.let {
+            validators.add(PatternValidator("$path/pattern", Pattern.compile(it.asText())))
+        }
+
+        val minLength = schema.get("minLength")
+        val maxLength = schema.get("maxLength")
+        if (minLength != null || maxLength != null) {
+            validators.add(LengthValidator(path, minLength?.asInt() ?: 0, maxLength?.asInt() ?: Int.MAX_VALUE))
+        }
+
+        val minimum = schema.get("minimum")
+        val maximum = schema.get("maximum")
+        if (minimum != null || maximum != null) {
+            validators.add(RangeValidator(path, minimum?.decimalValue(), maximum?.decimalValue()))
+        }
+
+        compileObject(schema, path)?.let { validators.add(it) }
+
+        schema.get("items")?.let {
+            if (!it.isObject)
+                throw Exception("Only a single schema is supported as items, at '$path/items'")
+            validators.add(ItemsValidator(compile(it, "$path/items")))
+        }
+
+        schema.get("oneOf")?.let {
+            if (!it.isArray)
+                throw Exception("Expected an array at '$path/oneOf', found: $it")
+            val branches = ArrayList<Validator>()
+            for (i in 0..it.size() - 1) {
+                branches.add(compile(it.get(i), "$path/oneOf/$i"))
+            }
+            validators.add(OneOfValidator("$path/oneOf", branches.toTypedArray(), compileDiscriminator(schema, it, path)))
+        }
+
+        // A schema with a single keyword needs no SchemaValidator around it - unless the type has to be found again
+        if (validators.size == 1 && typeValidator == null)
+            return validators[0]
+        return SchemaValidator(validators.toTypedArray(), typeValidator)
+    }
+
+    private fun compileType(node: JsonNode, path: String): TypeValidator {
+        val typeNames = if (node.isArray) node.map { it.asText() } else listOf(node.asText())
+        var types = 0
+        for (typeName in typeNames) {
+            types = types or (TypeValidator.getTypes(typeName) ?: throw Exception("Unknown type '$typeName' at '$path'"))
+        }
+        return TypeValidator(path, types, typeNames)
+    }
+
+    // properties, required and additionalProperties - null if none of them is there
+    private fun compileObject(schema: JsonNode, path: String): ObjectValidator? {
+        val propertiesNode = schema.get("properties")
+        val requiredNode = schema.get("required")
+        val additionalPropertiesNode = schema.get("additionalProperties")
+        if (propertiesNode == null && requiredNode == null && (additionalPropertiesNode == null || additionalPropertiesNode.asBoolean(false)))
+            return null
+
+        val requiredNames = LinkedHashSet<String>()
+        requiredNode?.forEach { requiredNames.add(it.asText()) }
+
+        val requiredIndices = HashMap<String, Int>()
+        requiredNames.forEachIndexed { i, name -> requiredIndices.put(name, i) }
+
+        val properties = HashMap<String, ObjectValidator.PropertyValidator>()
+        propertiesNode?.fields()?.forEach {
+            val validator = compile(it.value, "$path/properties/${it.key.replace("~", "~0").replace("/", "~1")}")
+            properties.put(it.key, ObjectValidator.PropertyValidator(validator, requiredIndices[it.key] ?: -1))
+        }
+        for ((name, i) in requiredIndices) {
+            if (!properties.containsKey(name))
+                properties.put(name, ObjectValidator.PropertyValidator(null, i))
+        }
+
+        return when {
+            additionalPropertiesNode == null -> ObjectValidator(path, properties, requiredNames.toTypedArray(), true, null)
+            additionalPropertiesNode.isBoolean ->
+                ObjectValidator(path, properties, requiredNames.toTypedArray(), additionalPropertiesNode.booleanValue(), null)
+            else -> ObjectValidator(path, properties, requiredNames.toTypedArray(), true,
+                    compile(additionalPropertiesNode, "$path/additionalProperties"))
+        }
+    }
+
+    // The property telling the branches of oneOf apart, if any: each branch pins it to a value of its own, as
+    // JsonSchemaGenerator does for the subtypes of a polymorphic type - an object requiring the property, its enum
+    // holding that single value. The discriminator keyword, when there, names the property and must agree with them
+    private fun compileDiscriminator(schema: JsonNode, oneOf: JsonNode, path: String): OneOfValidator.Discriminator? {
+        val discriminatorNode = schema.get("discriminator")
+        val definitions = (0..oneOf.size() - 1).map { resolvedSchema.getNode("$path/oneOf/$it").json }
+        val propertyNames = discriminatorNode?.get("propertyName")?.let { listOf(it.asText()) }
+                ?: definitions.firstOrNull()?.get("properties")?.fieldNames()?.asSequence()?.toList() ?: emptyList()
+
+        for (propertyName in propertyNames) {
+            val branches = HashMap<String, Int>()
+            for (i in 0..definitions.size - 1) {
+                val typeId = getPinnedValue(definitions[i], propertyName)
+                if (typeId == null || branches.put(typeId, i) != null)
+                    break
+            }
+            if (branches.size < definitions.size)
+                continue
+
+            discriminatorNode?.get("mapping")?.fields()?.forEach {
+                val i = branches[it.key]
+                if (i == null || oneOf.get(i).get("\$ref")?.asText() != it.value.asText())
+                    throw Exception("Mapping '${it.key}' of the discriminator at '$path' does not match its oneOf")
+            }
+            return OneOfValidator.Discriminator(propertyName, branches)
+        }
+
+        if (discriminatorNode != null)
+            throw Exception("The oneOf at '$path' does not pin the property of its discriminator in each branch")
+        return null
+    }
+
+    // The only value definition allows for propertyName - null if it allows more
+    private fun getPinnedValue(definition: JsonNode, propertyName: String): String? {
+        if (definition.get("type")?.asText() != "object" || definition.get("required")?.any { it.asText() == propertyName } != true)
+            return null
+        val enumNode = definition.get("properties")?.get(propertyName)?.get("enum")
+        if (enumNode == null || enumNode.size() != 1 || !enumNode.get(0).isTextual)
+            return null
+        return enumNode.get(0).textValue()
+    }
+}
@@ -0,0 +1,193 @@
+package com.dr.ktjsonschema.validator
+
+import com.dr.ktjsonschema.CompiledSchema
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.SchemaIr
+import com.fasterxml.jackson.annotation.JsonFormat
+import com.fasterxml.jackson.annotation.JsonRawValue
+import com.fasterxml.jackson.databind.BeanDescription
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.JsonSerializer
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.annotation.JsonSerialize
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter
+import com.fasterxml.jackson.databind.ser.BeanSerializer
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider
+import com.fasterxml.jackson.databind.ser.impl.UnwrappingBeanPropertyWriter
+import com.fasterxml.jackson.databind.ser.std.BooleanSerializer
+import com.fasterxml.jackson.databind.ser.std.MapSerializer
+import com.fasterxml.jackson.databind.ser.std.NumberSerializer
+import com.fasterxml.jackson.databind.ser.std.NumberSerializers
+import com.fasterxml.jackson.databind.ser.std.StringSerializer
+import com.fasterxml.jackson.databind.util.Converter
+import com.fasterxml.jackson.databind.util.TokenBuffer
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+// Reads java and kotlin objects the way objectMapper serializes them, without serializing them: the properties of
+// beans through the BeanPropertyWriters of their serializers, enums as the strings they are written as, Optionals
+// as what they hold. The plan of each class is found once. Values jackson writes in ways of their own (dates,
+// custom serializers, @JsonFormat, ...) are read as trees.
+//
+// The type property of polymorphic classes comes from the schema they are validated against
+internal class PojoReader(val objectMapper: ObjectMapper, schema: CompiledSchema) {
+
+    companion object {
+        // Returned for a property jackson leaves out
+        val ABSENT = Any()
+
+        // Set when a property is only written when not empty, not default, ... - jackson has no getter for it
+        private val suppressableValueField: Field? = try {
+            BeanPropertyWriter::class.java.getDeclaredField("_suppressableValue").apply { isAccessible = true }
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    open class ClassPlan
+
+    // Read as a tree
+    object TreePlan : ClassPlan()
+
+    // String, Boolean, Number, Map, Collection or array - read as it is
+    object ValuePlan : ClassPlan()
+
+    class EnumPlan(val names: Array<String>) : ClassPlan()
+
+    class OptionalPlan(val isPresent: Method, val get: Method) : ClassPlan()
+
+    class BeanPlan(val properties: Array<PropertyPlan>, val typePropertyName: String?, val typeId: String?) : ClassPlan() {
+        val propertiesByName: Map<String, PropertyPlan> = properties.associateBy { it.name }
+    }
+
+    // When serializedAlone, the property is read by serializing it - jackson writes it in a way of its own
+    class PropertyPlan(val writer: BeanPropertyWriter, val serializedAlone: Boolean) {
+        val name: String = writer.name
+    }
+
+    private val polymorphismInfos = HashMap<String, JsonSchemaGenerator.PolymorphismInfo>()
+    private val plans = ConcurrentHashMap<Class<*>, ClassPlan>()
+
+    init {
+        for (ir in schema.definitions.values + listOfNotNull(schema.root)) {
+            if (ir is SchemaIr.ObjectType)
+                ir.polymorphismInfo?.let { polymorphismInfos.put(ir.type.name, it) }
+        }
+    }
+
+    // value as the validators read it: null, a String, Boolean or Number, a Map, a Collection or array, a bean -
+    // or a JsonNode
+    fun read(value: Any?): Any? {
+        if (value == null || value is JsonNode)
+            return value
+        val plan = getPlan(value)
+        return when (plan) {
+            is ValuePlan, is BeanPlan -> value
+            is EnumPlan -> plan.names[(value as Enum<*>).ordinal]
+            is OptionalPlan -> if (plan.isPresent.invoke(value) as Boolean) read(plan.get.invoke(value)) else null
+            else -> toTree(value)
+        }
+    }
+
+    fun toTree(value: Any?): JsonNode = objectMapper.valueToTree(value)
+
+    // The value of property, as read() - or ABSENT
+    fun readProperty(bean: Any, property: PropertyPlan): Any? {
+        if (property.serializedAlone)
+            return serializeProperty(bean, property.writer)
+        val value = property.writer.get(bean)
+        if (value == null && property.writer.willSuppressNulls())
+            return ABSENT
+        return read(value)
+    }
+
+    fun hasProperty(bean: Any, plan: BeanPlan, name: String): Boolean {
+        val property = plan.propertiesByName[name] ?: return false
+        return readProperty(bean, property) !== ABSENT
+    }
+
+    fun getPlan(value: Any): ClassPlan {
+        // Constants with a body are of a subclass of their enum
+        val clazz = if (value is Enum<*> && !value.javaClass.isEnum) value.javaClass.superclass else value.javaClass
+        return plans[clazz] ?: plans.getOrPut(clazz) { createPlan(clazz) }
+    }
+
+    private fun createProvider(): DefaultSerializerProvider =
+            (objectMapper.serializerProvider as DefaultSerializerProvider).createInstance(objectMapper.serializationConfig,
+                    objectMapper.serializerFactory)
+
+    private fun createPlan(clazz: Class<*>): ClassPlan {
+        val serializer = createProvider().findValueSerializer(clazz, null)
+        // Optionals, as registered by the jdk8 and guava modules
+        if (objectMapper.constructType(clazz).isReferenceType && serializer.javaClass.name.startsWith("com.fasterxml.jackson.")) {
+            try {
+                return OptionalPlan(clazz.getMethod("isPresent"), clazz.getMethod("get"))
+            } catch (e: NoSuchMethodException) {
+                return TreePlan
+            }
+        }
+        // Serializers of modules and custom ones write what they like
+        if (!serializer.javaClass.name.startsWith("com.fasterxml.jackson.databind."))
+            return TreePlan
+
+        return when {
+            serializer.javaClass == BeanSerializer::class.java -> createBeanPlan(clazz, serializer as BeanSerializer)
+            clazz.isEnum -> createEnumPlan(clazz)
+            clazz == String::class.java -> if (serializer is StringSerializer) ValuePlan else TreePlan
+            clazz == Boolean::class.javaObjectType -> if (serializer.javaClass == BooleanSerializer::class.java) ValuePlan else TreePlan
+            Number::class.java.isAssignableFrom(clazz) ->
+                if (serializer is NumberSerializer || serializer.javaClass.enclosingClass == NumberSerializers::class.java) ValuePlan else TreePlan
+            Map::class.java.isAssignableFrom(clazz) -> if (serializer is MapSerializer) ValuePlan else TreePlan
+            // byte[] and char[] are written as strings
+            Collection::class.java.isAssignableFrom(clazz) || (clazz.isArray && clazz != ByteArray::class.java && clazz != CharArray::class.java) ->
+                ValuePlan
+            else -> TreePlan
+        }
+    }
+
+    // As a tree if anything is unwrapped or comes from an any-getter
+    private fun createBeanPlan(clazz: Class<*>, serializer: BeanSerializer): ClassPlan {
+        if (serializer.isUnwrappingSerializer || serializer.properties().asSequence().any { it !is BeanPropertyWriter || it is UnwrappingBeanPropertyWriter })
+            return TreePlan
+        if (objectMapper.serializationConfig.introspect<BeanDescription>(objectMapper.constructType(clazz)).findAnyGetter() != null)
+            return TreePlan
+
+        val properties = serializer.properties().asSequence().map {
+            val writer = it as BeanPropertyWriter
+            PropertyPlan(writer, isSerializedAlone(writer))
+        }.toList()
+        val polymorphismInfo = polymorphismInfos[clazz.name]
+        return BeanPlan(properties.toTypedArray(), polymorphismInfo?.typePropertyName, polymorphismInfo?.subTypeName)
+    }
+
+    private fun isSerializedAlone(writer: BeanPropertyWriter): Boolean {
+        val jsonSerialize = writer.getAnnotation(JsonSerialize::class.java)
+        if (jsonSerialize != null && (jsonSerialize.using.java != JsonSerializer.None::class.java
+                || jsonSerialize.contentUsing.java != JsonSerializer.None::class.java
+                || jsonSerialize.converter.java != Converter.None::class.java
+                || jsonSerialize.contentConverter.java != Converter.None::class.java))
+            return true
+        if (writer.getAnnotation(JsonFormat::class.java) != null || writer.getAnnotation(JsonRawValue::class.java) != null)
+            return true
+        return suppressableValueField?.get(writer) != null
+    }
+
+    // As a tree unless every constant is written as a string
+    private fun createEnumPlan(clazz: Class<*>): ClassPlan {
+        val names = clazz.enumConstants.map { toTree(it) }
+        if (!names.all { it.isTextual })
+            return TreePlan
+        return EnumPlan(names.map { it.textValue() }.toTypedArray())
+    }
+
+    private fun serializeProperty(bean: Any, writer: BeanPropertyWriter): Any? {
+        val buffer = TokenBuffer(objectMapper, false)
+        buffer.writeStartObject()
+        writer.serializeAsField(bean, buffer, createProvider())
+        buffer.writeEndObject()
+        val node = objectMapper.readTree<JsonNode>(buffer.asParser())
+        return node.get(writer.name) ?: ABSENT
+    }
+}
@@ -0,0 +1,48 @@
+package com.dr.ktjsonschema.validator
+
+import com.dr.ktjsonschema.JsonSchemaDraft4Renderer
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.databind.JsonNode
+
+/**
+ * Validates java and kotlin objects against the schema generator generates for clazz, without serializing them:
+ * finds the same errors as validating generator.rootObjectMapper.valueToTree(pojo) with a JsonSchemaValidator.
+ *
+ * Properties are read through the BeanPropertyWriters jackson serializes each class with - the properties the
+ * generator visits - and the type property of polymorphic classes is the one the generator found. What each class
+ * is read as is found the first time it is met. Values jackson writes in ways of their own (dates, custom
+ * serializers, @JsonFormat, ...) are converted to trees, the rest is read as it is.
+ *
+ * Thread safe: create one per class, and use it for every validation.
+ */
+class PojoValidator(val generator: JsonSchemaGenerator, val clazz: Class<*>) {
+
+    private val compiledSchema = generator.compileJsonSchema(clazz)
+
+    /**
+     * The schema validated against - the same as generator.generateJsonSchema(clazz)
+     */
+    val schema: JsonNode = JsonSchemaDraft4Renderer(generator.config).render(compiledSchema, null, null)
+
+    private val validator = JsonSchemaValidator(schema)
+    private val reader = PojoReader(generator.rootObjectMapper, compiledSchema)
+
+    /**
+     * Validates pojo, finding every error - or only the first one when failFast
+     */
+    @JvmOverloads
+    fun validate(pojo: Any?, failFast: Boolean = false): ValidationResult {
+        val context = ValidationContext(failFast, reader)
+        validator.validatePojo(pojo, context)
+        return ValidationResult(context.errors ?: emptyList<ValidationError>())
+    }
+
+    /**
+     * Whether pojo is valid - stops at the first error, without telling what it is
+     */
+    fun isValid(pojo: Any?): Boolean {
+        val context = ValidationContext(true, reader)
+        context.quietDepth = 1
+        return validator.validatePojo(pojo, context)
+    }
+}
@@ -0,0 +1,1004 @@
+package com.dr.ktjsonschema.validator
+
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.core.util.JsonParserSequence
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.util.TokenBuffer
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.util.*
+import java.util.regex.Pattern
+
+// The validators a schema is compiled into - see JsonSchemaValidatorCompiler.
+// Each returns false when the value is not valid, after reporting why to the context (unless it is not recording).
+// Nothing is allocated while validating a valid node, but the iterators jackson gives us
+internal abstract class Validator {
+    abstract fun validate(node: JsonNode, context: ValidationContext): Boolean
+
+    // Validates the value starting at the current token of parser. Validators reading objects or arrays leave the
+    // parser on the last token of the value, the others on its first one - see JsonTokens.finishValue()
+    abstract fun validate(parser: JsonParser, context: ValidationContext): Boolean
+
+    // Validates a java or kotlin object as read by PojoReader - values it could only read as trees are validated as such
+    fun validateValue(value: Any?, context: ValidationContext): Boolean =
+            if (value is JsonNode) validate(value, context) else validatePojo(value, context)
+
+    // value is null, a String, Boolean or Number, a Map, a Collection or array, or a bean - see PojoReader.read()
+    abstract fun validatePojo(value: Any?, context: ValidationContext): Boolean
+
+    // Whether validate(parser) may read past the first token of the value
+    open val readsValues: Boolean
+        get() = false
+
+    // false if the type keyword alone rejects the value - used to pick the oneOf branches worth trying
+    open fun acceptsType(node: JsonNode): Boolean = true
+
+    open fun acceptsType(token: JsonToken): Boolean = true
+
+    open fun acceptsValueType(value: Any?): Boolean = true
+}
+
+internal object JsonTokens {
+    // Only to read the few values which cannot be validated token by token
+    private val objectMapper = ObjectMapper()
+
+    fun isStart(token: JsonToken?): Boolean = token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY
+
+    // Moves parser to the last token of the value it is on, if a validator did not read it
+    fun finishValue(parser: JsonParser) {
+        if (isStart(parser.currentToken))
+            parser.skipChildren()
+    }
+
+    fun readTree(parser: JsonParser): JsonNode = objectMapper.readTree<JsonNode>(parser)
+
+    // Copies the value parser is on, leaving parser on its last token
+    fun buffer(parser: JsonParser): TokenBuffer {
+        val buffer = TokenBuffer(parser)
+        buffer.copyCurrentStructure(parser)
+        return buffer
+    }
+
+    // A parser on the first token of the value in buffer
+    fun read(buffer: TokenBuffer): JsonParser {
+        val parser = buffer.asParser()
+        parser.nextToken()
+        return parser
+    }
+}
+
+// Where we are in the instance, and what went wrong so far. pojos reads the objects validated by PojoValidator
+internal class ValidationContext(val failFast: Boolean, val pojos: PojoReader? = null) {
+    // > 0 while trying oneOf branches: errors are not wanted, only whether the branch matches
+    var quietDepth = 0
+
+    var errors: ArrayList<ValidationError>? = null
+
+    // Path of the current value: a property name, or the index of an item when the name is null
+    private var names = arrayOfNulls<String>(16)
+    private var indices = IntArray(16)
+    private var depth = 0
+
+    val isRecording: Boolean
+        get() = quietDepth == 0
+
+    // When a validator returns false with this set, nothing more is read - its caller gives up too
+    val stopAtFirstError: Boolean
+        get() = failFast || quietDepth > 0
+
+    fun pushName(name: String) {
+        ensureCapacity()
+        names[depth] = name
+        depth++
+    }
+
+    fun pushIndex(index: Int) {
+        ensureCapacity()
+        names[depth] = null
+        indices[depth] = index
+        depth++
+    }
+
+    fun pop() {
+        depth--
+    }
+
+    val errorCount: Int
+        get() = errors?.size ?: 0
+
+    fun report(schemaPath: String, keyword: String, message: String) {
+        report(errorCount, schemaPath, keyword, message)
+    }
+
+    // Reports the error before the ones found since there were index errors
+    fun report(index: Int, schemaPath: String, keyword: String, message: String) {
+        if (!isRecording)
+            return
+        val list = errors ?: ArrayList<ValidationError>()
+        errors = list
+        list.add(index, ValidationError(getInstancePointer(), schemaPath, keyword, message))
+    }
+
+    // Json pointer to the current value
+    fun getInstancePointer(): String {
+        val sb = StringBuilder()
+        for (i in 0..depth - 1) {
+            sb.append('/')
+            val name = names[i]
+            if (name != null)
+                sb.append(name.replace("~", "~0").replace("/", "~1"))
+            else
+                sb.append(indices[i])
+        }
+        return sb.toString()
+    }
+
+    private fun ensureCapacity() {
+        if (depth == names.size) {
+            names = Arrays.copyOf(names, depth * 2)
+            indices = Arrays.copyOf(indices, depth * 2)
+        }
+    }
+}
+
+// All the keywords of one schema object
+internal class SchemaValidator(val validators: Array<Validator>, val typeValidator: TypeValidator?) : Validator() {
+    // When streaming, the keywords checking the first token go first
+    private val tokenValidators = validators.filter { !it.readsValues }.toTypedArray()
+    private val valueValidators = validators.filter { it.readsValues }.toTypedArray()
+
+    override val readsValues: Boolean
+        get() = valueValidators.isNotEmpty()
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean {
+        var valid = true
+        for (validator in validators) {
+            if (!validator.validate(node, context)) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        var valid = true
+        for (validator in tokenValidators) {
+            if (!validator.validate(parser, context)) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+
+        if (valueValidators.size < 2 || !JsonTokens.isStart(parser.currentToken)) {
+            for (validator in valueValidators) {
+                if (!validator.validate(parser, context)) {
+                    if (context.stopAtFirstError)
+                        return false
+                    valid = false
+                }
+            }
+            return valid
+        }
+
+        // Only one of them can read the parser - each reads a copy of the value. Not produced by JsonSchemaGenerator
+        val buffer = JsonTokens.buffer(parser)
+        for (validator in valueValidators) {
+            if (!validator.validate(JsonTokens.read(buffer), context)) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean {
+        var valid = true
+        for (validator in validators) {
+            if (!validator.validateValue(value, context)) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    override fun acceptsType(node: JsonNode): Boolean = typeValidator?.acceptsType(node) ?: true
+
+    override fun acceptsType(token: JsonToken): Boolean = typeValidator?.acceptsType(token) ?: true
+
+    override fun acceptsValueType(value: Any?): Boolean = typeValidator?.acceptsValueType(value) ?: true
+}
+
+internal class TypeValidator(val schemaPath: String, val types: Int, val typeNames: List<String>) : Validator() {
+    companion object {
+        const val NULL = 1
+        const val BOOLEAN = 2
+        const val INTEGER = 4
+        // A number which is not an integer - "number" allows both
+        const val DECIMAL = 8
+        const val STRING = 16
+        const val ARRAY = 32
+        const val OBJECT = 64
+        const val ANY = 127
+
+        fun getTypes(typeName: String): Int? {
+            return when (typeName) {
+                "null" -> NULL
+                "boolean" -> BOOLEAN
+                "integer" -> INTEGER
+                "number" -> INTEGER or DECIMAL
+                "string" -> STRING
+                "array" -> ARRAY
+                "object" -> OBJECT
+                "any" -> ANY
+                else -> null
+            }
+        }
+
+        fun getType(node: JsonNode): Int {
+            return when {
+                node.isObject -> OBJECT
+                node.isTextual -> STRING
+                node.isIntegralNumber -> INTEGER
+                node.isNumber -> DECIMAL
+                node.isBoolean -> BOOLEAN
+                node.isArray -> ARRAY
+                node.isNull -> NULL
+                // Binary and POJO nodes - never parsed from json
+                else -> 0
+            }
+        }
+
+        fun getType(token: JsonToken?): Int {
+            return when (token) {
+                JsonToken.START_OBJECT -> OBJECT
+                JsonToken.VALUE_STRING -> STRING
+                JsonToken.VALUE_NUMBER_INT -> INTEGER
+                JsonToken.VALUE_NUMBER_FLOAT -> DECIMAL
+                JsonToken.VALUE_TRUE, JsonToken.VALUE_FALSE -> BOOLEAN
+                JsonToken.START_ARRAY -> ARRAY
+                JsonToken.VALUE_NULL -> NULL
+                else -> 0
+            }
+        }
+
+        // The type value is serialized as - see PojoReader.read()
+        fun getValueType(value: Any?): Int {
+            return when (value) {
+                null -> NULL
+                is JsonNode -> getType(value)
+                is String -> STRING
+                is Boolean -> BOOLEAN
+                is Int, is Long, is Short, is Byte, is BigInteger -> INTEGER
+                is Number -> DECIMAL
+                is Map<*, *> -> OBJECT
+                is Collection<*> -> ARRAY
+                else -> if (value.javaClass.isArray) ARRAY else OBJECT
+            }
+        }
+
+        fun getTypeName(types: Int): String {
+            return when (types) {
+                NULL -> "null"
+                BOOLEAN -> "boolean"
+                INTEGER -> "integer"
+                DECIMAL -> "number"
+                STRING -> "string"
+                ARRAY -> "array"
+                OBJECT -> "object"
+                else -> "unknown"
+            }
+        }
+    }
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean = validate(getType(node), context)
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean = validate(getType(parser.currentToken), context)
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean = validate(getValueType(value), context)
+
+    private fun validate(type: Int, context: ValidationContext): Boolean {
+        if ((type and types) != 0)
+            return true
+        if (context.isRecording)
+            context.report(schemaPath, "type", "is ${getTypeName(type)}, expected ${typeNames.joinToString(" or ")}")
+        return false
+    }
+
+    override fun acceptsType(node: JsonNode): Boolean = (getType(node) and types) != 0
+
+    override fun acceptsType(token: JsonToken): Boolean = (getType(token) and types) != 0
+
+    override fun acceptsValueType(value: Any?): Boolean = (getValueType(value) and types) != 0
+}
+
+// Properties are validated as they are met, required and additionalProperties checked on the way
+internal class ObjectValidator(
+        val schemaPath: String,
+        // Declared and required properties - validator is null for a property only listed as required,
+        // which is then an additional property too
+        val properties: HashMap<String, PropertyValidator>,
+        val requiredNames: Array<String>,
+        val additionalPropertiesAllowed: Boolean,
+        // Validates the properties not declared, when additionalProperties is a schema
+        val additionalProperties: Validator?
+) : Validator() {
+
+    // requiredIndex: index in requiredNames, -1 if not required
+    class PropertyValidator(val validator: Validator?, val requiredIndex: Int)
+
+    override val readsValues: Boolean
+        get() = true
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean {
+        if (!node.isObject)
+            return true
+        var valid = true
+        var requiredCount = 0
+        val fields = node.fields()
+        while (fields.hasNext()) {
+            val field = fields.next()
+            val property = properties[field.key]
+            if (property != null && property.requiredIndex >= 0)
+                requiredCount++
+            val validator = getValidator(field.key, property, context)
+            if (validator == null) {
+                if (!isAllowed(property)) {
+                    if (context.stopAtFirstError)
+                        return false
+                    valid = false
+                }
+                continue
+            }
+
+            context.pushName(field.key)
+            val propertyValid = validator.validate(field.value, context)
+            context.pop()
+            if (!propertyValid) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+
+        if (requiredCount < requiredNames.size) {
+            for (name in requiredNames) {
+                if (!node.has(name)) {
+                    context.report(schemaPath, "required", "misses required property '$name'")
+                    if (context.stopAtFirstError)
+                        return false
+                }
+            }
+            valid = false
+        }
+        return valid
+    }
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        if (parser.currentToken != JsonToken.START_OBJECT)
+            return true
+        var valid = true
+        // Bit i set once requiredNames[i] is met - an array of flags when there are too many of them
+        var requiredMet = 0L
+        val manyRequiredMet = if (requiredNames.size > 64) BooleanArray(requiredNames.size) else null
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName
+            parser.nextToken()
+            val property = properties[name]
+            if (property != null && property.requiredIndex >= 0) {
+                if (manyRequiredMet != null)
+                    manyRequiredMet[property.requiredIndex] = true
+                else
+                    requiredMet = requiredMet or (1L shl property.requiredIndex)
+            }
+            val validator = getValidator(name, property, context)
+            if (validator == null) {
+                if (!isAllowed(property)) {
+                    if (context.stopAtFirstError)
+                        return false
+                    valid = false
+                }
+                parser.skipChildren()
+                continue
+            }
+
+            context.pushName(name)
+            val propertyValid = validator.validate(parser, context)
+            context.pop()
+            if (!propertyValid) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+            JsonTokens.finishValue(parser)
+        }
+
+        for (i in 0..requiredNames.size - 1) {
+            val met = if (manyRequiredMet != null) manyRequiredMet[i] else (requiredMet and (1L shl i)) != 0L
+            if (!met) {
+                context.report(schemaPath, "required", "misses required property '${requiredNames[i]}'")
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean {
+        if (value is Map<*, *>)
+            return validateMap(value, context)
+        val pojos = context.pojos!!
+        val bean = value ?: return true
+        val plan = pojos.getPlan(bean) as? PojoReader.BeanPlan ?: return true
+        var valid = true
+        var requiredCount = 0
+        // -1: the type property of a polymorphic class
+        for (i in -1..plan.properties.size - 1) {
+            val name = if (i < 0) plan.typePropertyName ?: continue else plan.properties[i].name
+            val propertyValue = if (i < 0) plan.typeId else pojos.readProperty(bean, plan.properties[i])
+            if (propertyValue === PojoReader.ABSENT)
+                continue
+            val property = properties[name]
+            if (property != null && property.requiredIndex >= 0)
+                requiredCount++
+            val validator = getValidator(name, property, context)
+            if (validator == null) {
+                if (!isAllowed(property)) {
+                    if (context.stopAtFirstError)
+                        return false
+                    valid = false
+                }
+                continue
+            }
+
+            context.pushName(name)
+            val propertyValid = validator.validateValue(propertyValue, context)
+            context.pop()
+            if (!propertyValid) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+
+        if (requiredCount < requiredNames.size) {
+            for (name in requiredNames) {
+                if (name != plan.typePropertyName && !pojos.hasProperty(bean, plan, name)) {
+                    context.report(schemaPath, "required", "misses required property '$name'")
+                    if (context.stopAtFirstError)
+                        return false
+                }
+            }
+            valid = false
+        }
+        return valid
+    }
+
+    // Map keys are compared as strings
+    private fun validateMap(map: Map<*, *>, context: ValidationContext): Boolean {
+        var valid = true
+        val requiredMet = HashSet<String>()
+        for ((key, mapValue) in map) {
+            val name = key.toString()
+            val property = properties[name]
+            if (property != null && property.requiredIndex >= 0)
+                requiredMet.add(name)
+            val validator = getValidator(name, property, context)
+            if (validator == null) {
+                if (!isAllowed(property)) {
+                    if (context.stopAtFirstError)
+                        return false
+                    valid = false
+                }
+                continue
+            }
+
+            context.pushName(name)
+            val propertyValid = validator.validateValue(context.pojos!!.read(mapValue), context)
+            context.pop()
+            if (!propertyValid) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+
+        for (name in requiredNames) {
+            if (!requiredMet.contains(name)) {
+                context.report(schemaPath, "required", "misses required property '$name'")
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    private fun isAllowed(property: PropertyValidator?) = property?.validator != null || additionalPropertiesAllowed
+
+    // The validator of property name - null if there is none, after reporting it when it is not allowed
+    private fun getValidator(name: String, property: PropertyValidator?, context: ValidationContext): Validator? {
+        property?.validator?.let { return it }
+        if (additionalPropertiesAllowed)
+            return additionalProperties
+        if (context.isRecording)
+            context.report(schemaPath, "additionalProperties", "has property '$name', which is not allowed")
+        return null
+    }
+}
+
+internal class ItemsValidator(val items: Validator) : Validator() {
+    override val readsValues: Boolean
+        get() = true
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean {
+        if (!node.isArray)
+            return true
+        var valid = true
+        for (i in 0..node.size() - 1) {
+            context.pushIndex(i)
+            val itemValid = items.validate(node.get(i), context)
+            context.pop()
+            if (!itemValid) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        if (parser.currentToken != JsonToken.START_ARRAY)
+            return true
+        var valid = true
+        var i = 0
+        while (true) {
+            val token = parser.nextToken()
+            if (token == JsonToken.END_ARRAY || token == null)
+                break
+            context.pushIndex(i)
+            val itemValid = items.validate(parser, context)
+            context.pop()
+            if (!itemValid) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+            JsonTokens.finishValue(parser)
+            i++
+        }
+        return valid
+    }
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean {
+        if (value is Collection<*>) {
+            var valid = true
+            var i = 0
+            for (item in value) {
+                if (!validateItem(i++, item, context)) {
+                    if (context.stopAtFirstError)
+                        return false
+                    valid = false
+                }
+            }
+            return valid
+        }
+        if (value == null || !value.javaClass.isArray)
+            return true
+        var valid = true
+        for (i in 0..java.lang.reflect.Array.getLength(value) - 1) {
+            if (!validateItem(i, java.lang.reflect.Array.get(value, i), context)) {
+                if (context.stopAtFirstError)
+                    return false
+                valid = false
+            }
+        }
+        return valid
+    }
+
+    private fun validateItem(i: Int, item: Any?, context: ValidationContext): Boolean {
+        context.pushIndex(i)
+        val valid = items.validateValue(context.pojos!!.read(item), context)
+        context.pop()
+        return valid
+    }
+}
+
+internal class EnumValidator(val schemaPath: String, val values: List<JsonNode>) : Validator() {
+    // The values generated for java enums are all strings
+    private val strings: Set<String>? = if (values.all { it.isTextual }) values.map { it.textValue() }.toHashSet() else null
+
+    // Objects and arrays among the values are compared as trees
+    override val readsValues = values.any { it.isContainerNode }
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean {
+        val valid = if (strings != null) node.isTextual && strings.contains(node.textValue()) else values.any { isEqual(it, node) }
+        if (!valid)
+            report(node.toString(), context)
+        return valid
+    }
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        val token = parser.currentToken
+        if (strings != null) {
+            if (token == JsonToken.VALUE_STRING && strings.contains(parser.text))
+                return true
+            report(if (token == JsonToken.VALUE_STRING) "\"${parser.text}\"" else TypeValidator.getTypeName(TypeValidator.getType(token)), context)
+            return false
+        }
+        if (JsonTokens.isStart(token) && !readsValues) {
+            report(TypeValidator.getTypeName(TypeValidator.getType(token)), context)
+            return false
+        }
+        return validate(JsonTokens.readTree(parser), context)
+    }
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean {
+        if (strings != null) {
+            if (value is String && strings.contains(value))
+                return true
+            report(if (value is String) "\"$value\"" else TypeValidator.getTypeName(TypeValidator.getValueType(value)), context)
+            return false
+        }
+        return validate(context.pojos!!.toTree(value), context)
+    }
+
+    private fun report(value: String, context: ValidationContext) {
+        if (context.isRecording)
+            context.report(schemaPath, "enum", "is $value, expected one of $values")
+    }
+
+    // As json, 1 and 1.0 are the same number - jackson's nodes tell them apart
+    private fun isEqual(value: JsonNode, node: JsonNode): Boolean {
+        if (value.isNumber && node.isNumber)
+            return value.decimalValue().compareTo(node.decimalValue()) == 0
+        return value == node
+    }
+}
+
+internal class PatternValidator(val schemaPath: String, val pattern: Pattern) : Validator() {
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean = !node.isTextual || validate(node.textValue(), context)
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean =
+            parser.currentToken != JsonToken.VALUE_STRING || validate(parser.text, context)
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean = value !is String || validate(value, context)
+
+    private fun validate(text: String, context: ValidationContext): Boolean {
+        if (pattern.matcher(text).find())
+            return true
+        if (context.isRecording)
+            context.report(schemaPath, "pattern", "'$text' does not match ${pattern.pattern()}")
+        return false
+    }
+}
+
+// minLength and maxLength, counted in code points. schemaPath is the one of the schema holding them
+internal class LengthValidator(val schemaPath: String, val minLength: Int, val maxLength: Int) : Validator() {
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean = !node.isTextual || validate(node.textValue(), context)
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean =
+            parser.currentToken != JsonToken.VALUE_STRING || validate(parser.text, context)
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean = value !is String || validate(value, context)
+
+    private fun validate(text: String, context: ValidationContext): Boolean {
+        val length = text.codePointCount(0, text.length)
+        if (length < minLength) {
+            if (context.isRecording)
+                context.report("$schemaPath/minLength", "minLength", "has $length characters, expected at least $minLength")
+            return false
+        }
+        if (length > maxLength) {
+            if (context.isRecording)
+                context.report("$schemaPath/maxLength", "maxLength", "has $length characters, expected at most $maxLength")
+            return false
+        }
+        return true
+    }
+}
+
+// minimum and maximum, both inclusive - schemaPath is the one of the schema holding them. Integers fitting a long
+// are compared without BigDecimals
+internal class RangeValidator(val schemaPath: String, val minimum: BigDecimal?, val maximum: BigDecimal?) : Validator() {
+    private val longMinimum = getLong(minimum)
+    private val longMaximum = getLong(maximum)
+
+    private fun getLong(value: BigDecimal?): Long? {
+        if (value == null)
+            return null
+        return try {
+            value.longValueExact()
+        } catch (e: ArithmeticException) {
+            null
+        }
+    }
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean {
+        if (!node.isNumber)
+            return true
+        val isLong = node.isIntegralNumber && node.canConvertToLong()
+        return validate(isLong, if (isLong) node.longValue() else 0, node, context)
+    }
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        if (!parser.currentToken.isNumeric)
+            return true
+        val numberType = parser.numberType
+        val isLong = numberType == JsonParser.NumberType.INT || numberType == JsonParser.NumberType.LONG
+        return validate(isLong, if (isLong) parser.longValue else 0, parser, context)
+    }
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean {
+        if (value !is Number)
+            return true
+        val isLong = value is Long || value is Int || value is Short || value is Byte
+        return validate(isLong, if (isLong) value.toLong() else 0, value, context)
+    }
+
+    // The number is value when isLong, else the one of source: a JsonNode, a JsonParser or a Number
+    private fun validate(isLong: Boolean, value: Long, source: Any, context: ValidationContext): Boolean {
+        if (minimum != null && compare(isLong, value, source, minimum, longMinimum) < 0) {
+            if (context.isRecording)
+                context.report("$schemaPath/minimum", "minimum", "is ${getText(source)}, expected at least $minimum")
+            return false
+        }
+        if (maximum != null && compare(isLong, value, source, maximum, longMaximum) > 0) {
+            if (context.isRecording)
+                context.report("$schemaPath/maximum", "maximum", "is ${getText(source)}, expected at most $maximum")
+            return false
+        }
+        return true
+    }
+
+    private fun compare(isLong: Boolean, value: Long, source: Any, limit: BigDecimal, longLimit: Long?): Int {
+        if (isLong && longLimit != null)
+            return value.compareTo(longLimit)
+        return getDecimal(source).compareTo(limit)
+    }
+
+    // As jackson's nodes would hold the number
+    private fun getDecimal(source: Any): BigDecimal {
+        return when (source) {
+            is JsonNode -> source.decimalValue()
+            is JsonParser -> source.decimalValue
+            is BigDecimal -> source
+            is BigInteger -> BigDecimal(source)
+            is Long, is Int, is Short, is Byte -> BigDecimal.valueOf((source as Number).toLong())
+            else -> BigDecimal.valueOf((source as Number).toDouble())
+        }
+    }
+
+    private fun getText(source: Any): String = when (source) {
+        is JsonNode -> source.asText()
+        is JsonParser -> source.text
+        else -> source.toString()
+    }
+}
+
+// Exactly one of the branches must match. They are tried without recording errors, each stopping at its first one.
+// With a discriminator, the branch an object can match is found from its type id instead - the others can't
+internal class OneOfValidator(val schemaPath: String, val branches: Array<Validator>, val discriminator: Discriminator?) : Validator() {
+
+    // The index of the branch pinning propertyName to each type id - see JsonSchemaValidatorCompiler.compileDiscriminator()
+    class Discriminator(val propertyName: String, val branches: Map<String, Int>)
+
+    override val readsValues: Boolean
+        get() = true
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean {
+        if (discriminator != null && node.isObject) {
+            val typeId = node.get(discriminator.propertyName)
+            return validateBranch(if (typeId != null && typeId.isTextual) typeId.textValue() else null, context) {
+                it.validate(node, context)
+            }
+        }
+
+        var matches = 0
+        context.quietDepth++
+        for (branch in branches) {
+            if (branch.validate(node, context)) {
+                matches++
+                if (matches > 1)
+                    break
+            }
+        }
+        context.quietDepth--
+
+        if (matches == 1)
+            return true
+        if (!context.isRecording)
+            return false
+
+        if (matches == 0) {
+            context.report(schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+            // When only one branch is of the right type (e.g. Optional: null or a value), tell what is wrong with it
+            val candidates = branches.filter { it.acceptsType(node) }
+            if (candidates.size == 1)
+                candidates[0].validate(node, context)
+        } else {
+            context.report(schemaPath, "oneOf", "matches more than one of the ${branches.size} schemas")
+        }
+        return false
+    }
+
+    // When a single branch accepts the type of the value, the value is streamed through it. Else it is copied,
+    // and each branch of the right type reads the copy - e.g. the subtypes of a polymorphic type, unless found by
+    // their discriminator
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean {
+        val token = parser.currentToken
+        if (discriminator != null && token == JsonToken.START_OBJECT)
+            return validateByDiscriminator(parser, discriminator, context)
+
+        var candidate: Validator? = null
+        var candidateCount = 0
+        for (branch in branches) {
+            if (branch.acceptsType(token)) {
+                candidate = branch
+                candidateCount++
+            }
+        }
+
+        if (candidateCount == 1) {
+            if (candidate!!.validate(parser, context))
+                return true
+            if (context.isRecording)
+                context.report(schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+            return false
+        }
+
+        var matches = 0
+        if (candidateCount > 1) {
+            val buffer = JsonTokens.buffer(parser)
+            context.quietDepth++
+            for (branch in branches) {
+                if (branch.acceptsType(token) && branch.validate(JsonTokens.read(buffer), context)) {
+                    matches++
+                    if (matches > 1)
+                        break
+                }
+            }
+            context.quietDepth--
+        }
+
+        if (matches == 1)
+            return true
+        if (context.isRecording)
+            context.report(schemaPath, "oneOf", "matches ${if (matches == 0) "none" else "more than one"} of the ${branches.size} schemas")
+        return false
+    }
+
+    // As validate(node)
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean {
+        if (discriminator != null && value != null && TypeValidator.getValueType(value) == TypeValidator.OBJECT) {
+            val typeId = if (value is Map<*, *>) value[discriminator.propertyName] as? String else {
+                val plan = context.pojos!!.getPlan(value) as? PojoReader.BeanPlan
+                if (plan != null && plan.typePropertyName == discriminator.propertyName) plan.typeId else null
+            }
+            return validateBranch(typeId, context) { it.validateValue(value, context) }
+        }
+
+        var matches = 0
+        context.quietDepth++
+        for (branch in branches) {
+            if (branch.validateValue(value, context)) {
+                matches++
+                if (matches > 1)
+                    break
+            }
+        }
+        context.quietDepth--
+
+        if (matches == 1)
+            return true
+        if (!context.isRecording)
+            return false
+
+        if (matches == 0) {
+            context.report(schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+            val candidates = branches.filter { it.acceptsValueType(value) }
+            if (candidates.size == 1)
+                candidates[0].validateValue(value, context)
+        } else {
+            context.report(schemaPath, "oneOf", "matches more than one of the ${branches.size} schemas")
+        }
+        return false
+    }
+
+    // Validates the object with the branch of typeId - when it does not match, tells what is wrong with it
+    private inline fun validateBranch(typeId: String?, context: ValidationContext, validate: (Validator) -> Boolean): Boolean {
+        val branch = typeId?.let { discriminator!!.branches[it] }?.let { branches[it] }
+        if (branch == null) {
+            context.report(schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+            return false
+        }
+        context.quietDepth++
+        val valid = validate(branch)
+        context.quietDepth--
+        if (valid)
+            return true
+        if (context.isRecording) {
+            context.report(schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+            validate(branch)
+        }
+        return false
+    }
+
+    // Reads the object until its type id, streaming the rest through the branch of that id when it comes first -
+    // as jackson writes it. Else the object is copied while looking for it. The object cannot be read twice, so the
+    // errors of the branch are recorded while validating it, and oneOf is reported before them - as validateBranch
+    // reports them
+    private fun validateByDiscriminator(parser: JsonParser, discriminator: Discriminator, context: ValidationContext): Boolean {
+        val head = TokenBuffer(parser)
+        head.writeStartObject()
+        var typeId: String? = null
+        var streaming = false
+        var token = parser.nextToken()
+        if (token == JsonToken.FIELD_NAME && parser.currentName == discriminator.propertyName) {
+            head.copyCurrentStructure(parser)
+            typeId = if (parser.currentToken == JsonToken.VALUE_STRING) parser.text else null
+            streaming = true
+        } else {
+            while (token == JsonToken.FIELD_NAME) {
+                val isTypeId = parser.currentName == discriminator.propertyName
+                head.copyCurrentStructure(parser)
+                if (isTypeId && parser.currentToken == JsonToken.VALUE_STRING)
+                    typeId = parser.text
+                token = parser.nextToken()
+            }
+            head.writeEndObject()
+        }
+
+        val branch = typeId?.let { discriminator.branches[it] }?.let { branches[it] }
+        if (branch == null) {
+            if (streaming) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken()
+                    parser.skipChildren()
+                }
+            }
+            context.report(schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+            return false
+        }
+
+        val input = if (streaming) JsonParserSequence.createFlattened(false, head.asParser(), parser) else head.asParser()
+        input.nextToken()
+        val errorCount = context.errorCount
+        if (branch.validate(input, context)) {
+            JsonTokens.finishValue(input)
+            return true
+        }
+        context.report(errorCount, schemaPath, "oneOf", "matches none of the ${branches.size} schemas")
+        return false
+    }
+}
+
+// A $ref - target is set once the schema it refers to is compiled, which may be the one holding this $ref
+internal class RefValidator(val ref: String) : Validator() {
+    lateinit var target: Validator
+
+    // Not known until target is set
+    override val readsValues: Boolean
+        get() = true
+
+    override fun validate(node: JsonNode, context: ValidationContext): Boolean = target.validate(node, context)
+
+    override fun validate(parser: JsonParser, context: ValidationContext): Boolean = target.validate(parser, context)
+
+    override fun acceptsType(node: JsonNode): Boolean = target.acceptsType(node)
+
+    override fun validatePojo(value: Any?, context: ValidationContext): Boolean = target.validateValue(value, context)
+
+    override fun acceptsType(token: JsonToken): Boolean = target.acceptsType(token)
+
+    override fun acceptsValueType(value: Any?): Boolean = target.acceptsValueType(value)
+}
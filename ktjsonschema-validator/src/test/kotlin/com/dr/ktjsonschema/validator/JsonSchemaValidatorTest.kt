@@ -0,0 +1,289 @@
+package com.dr.ktjsonschema.validator
+
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.databind.module.SimpleModule
+import com.fasterxml.jackson.databind.node.ObjectNode
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+import com.fasterxml.jackson.datatype.joda.JodaModule
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.github.fge.jsonschema.main.JsonSchemaFactory
+import com.kjetland.jackson.jsonSchema.TestData
+import com.kjetland.jackson.jsonSchema.testData.*
+import com.kjetland.jackson.jsonSchema.testData.mixin.MixinModule
+import com.kjetland.jackson.jsonSchema.testDataKotlin.ClassUsingValidation
+import org.junit.Assert
+import org.junit.Test
+import java.io.Reader
+import java.lang.management.ManagementFactory
+
+class JsonSchemaValidatorTest {
+
+    val objectMapper = ObjectMapper()
+
+    init {
+        objectMapper.registerModule(KotlinModule())
+        val simpleModule = SimpleModule()
+        simpleModule.addSerializer(PojoWithCustomSerializer::class.java, PojoWithCustomSerializerSerializer())
+        objectMapper.registerModule(simpleModule)
+        objectMapper.registerModule(JavaTimeModule())
+        objectMapper.registerModule(Jdk8Module())
+        objectMapper.registerModule(JodaModule())
+        objectMapper.registerModule(MixinModule())
+        objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+    }
+
+    val generators = listOf(
+            JsonSchemaGenerator(objectMapper),
+            JsonSchemaGenerator(objectMapper, config = JsonSchemaConfig.html5EnabledSchema))
+
+    val testData = TestData()
+
+    // Validates json with both validators, checking that they agree - and that validating the tree and streaming
+    // the json find the same errors. Returns our result
+    fun validate(clazz: Class<*>, json: JsonNode, generator: JsonSchemaGenerator = generators[0]): ValidationResult {
+        val schema = generator.generateJsonSchema(clazz)
+        val validator = JsonSchemaValidator(schema)
+        val result = validator.validate(json)
+        val fgeReport = JsonSchemaFactory.byDefault().getJsonSchema(schema).validate(json)
+        Assert.assertEquals("$json against the schema of ${clazz.simpleName} - ours: $result, fge: $fgeReport",
+                fgeReport.isSuccess, result.isValid)
+
+        val parser = objectMapper.factory.createParser(objectMapper.writeValueAsString(json))
+        val streamingResult = validator.validate(parser)
+        Assert.assertEquals(result.errors.toSet(), streamingResult.errors.toSet())
+        Assert.assertEquals(JsonToken.END_OBJECT, parser.currentToken)
+        Assert.assertNull(parser.nextToken())
+        return result
+    }
+
+    fun assertError(result: ValidationResult, instancePointer: String, keyword: String) {
+        Assert.assertTrue("Expected $keyword at $instancePointer, found: $result",
+                result.errors.any { it.instancePointer == instancePointer && it.keyword == keyword })
+    }
+
+    fun toJson(o: Any): ObjectNode = objectMapper.valueToTree(o)
+
+    // Not ManyDates: fge checks format (date-time), which is not validated here
+    @Test
+    fun validatesTheTestModels() {
+        val models = listOf(testData.classNotExtendingAnything, testData.pojoWithParent, testData.child1, testData.manyPrimitives,
+                testData.pojoUsingOptionalJava, testData.pojoWithArrays, testData.pojoUsingMaps, testData.recursivePojo,
+                testData.pojoUsingFormat, testData.classUsingValidation, testData.mixinChild1,
+                testData.objectWithPropertyWithCustomSerializer, testData.pojoWithParentKotlin, testData.pojoUsingOptionKotlin,
+                testData.pojoWithArraysKotlin)
+        for (generator in generators) {
+            for (model in models) {
+                val result = validate(model.javaClass, toJson(model), generator)
+                Assert.assertTrue("${model.javaClass.simpleName}: $result", result.isValid)
+            }
+            // Polymorphism - a child is valid as its parent
+            Assert.assertTrue(validate(Parent::class.java, toJson(testData.child2), generator).isValid)
+        }
+    }
+
+    @Test
+    fun types() {
+        val json = toJson(testData.classNotExtendingAnything)
+        json.put("someString", 1)
+        json.put("myEnum", "X")
+        val result = validate(ClassNotExtendingAnything::class.java, json)
+        Assert.assertEquals(2, result.errors.size)
+        assertError(result, "/someString", "type")
+        assertError(result, "/myEnum", "enum")
+        Assert.assertEquals("/properties/someString/type", result.errors.first { it.keyword == "type" }.schemaPointer)
+    }
+
+    @Test
+    fun requiredAndAdditionalProperties() {
+        val json = toJson(testData.classUsingValidation)
+        json.remove("stringUsingNotNull")
+        json.put("notAProperty", true)
+        val result = validate(ClassUsingValidation::class.java, json)
+        assertError(result, "", "required")
+        assertError(result, "", "additionalProperties")
+    }
+
+    @Test
+    fun constraints() {
+        val json = toJson(testData.classUsingValidation)
+        json.put("stringUsingSize", "")
+        json.put("stringUsingSizeOnlyMax", "x".repeat(31))
+        json.put("stringUsingPattern", "_stringUsingPatternC")
+        json.put("intMin", 0)
+        json.put("doubleMax", 10.5)
+        val result = validate(ClassUsingValidation::class.java, json)
+        Assert.assertEquals(5, result.errors.size)
+        assertError(result, "/stringUsingSize", "minLength")
+        assertError(result, "/stringUsingSizeOnlyMax", "maxLength")
+        assertError(result, "/stringUsingPattern", "pattern")
+        assertError(result, "/intMin", "minimum")
+        assertError(result, "/doubleMax", "maximum")
+    }
+
+    @Test
+    fun polymorphism() {
+        val json = toJson(testData.pojoWithParent)
+        (json.get("child") as ObjectNode).put("type", "child3")
+        assertError(validate(PojoWithParent::class.java, json), "/child", "oneOf")
+    }
+
+    // The branch of the type id is the only one tried - its errors are reported, wherever the type id comes
+    @Test
+    fun discriminator() {
+        val generator = JsonSchemaGenerator(objectMapper, config = JsonSchemaConfig.vanillaJsonSchemaDraft4.copy(useDiscriminatorMapping = true))
+        Assert.assertTrue(validate(PojoWithParent::class.java, toJson(testData.pojoWithParent), generator).isValid)
+
+        val json = toJson(testData.pojoWithParent)
+        val child = json.get("child") as ObjectNode
+        child.put("child1String", 5)
+        val typeId = child.remove("type")
+        for (typeIdFirst in listOf(true, false)) {
+            val reordered = json.objectNode()
+            if (typeIdFirst)
+                reordered.set("type", typeId)
+            reordered.setAll(child)
+            if (!typeIdFirst)
+                reordered.set("type", typeId)
+            json.set("child", reordered)
+            for (g in listOf(generator, generators[0])) {
+                val result = validate(PojoWithParent::class.java, json, g)
+                Assert.assertEquals(result.toString(), 2, result.errors.size)
+                assertError(result, "/child", "oneOf")
+                assertError(result, "/child/child1String", "type")
+                // oneOf first, whether the branch is streamed or not
+                val streamingResult = JsonSchemaValidator(g.generateJsonSchema(PojoWithParent::class.java))
+                        .validate(objectMapper.factory.createParser(objectMapper.writeValueAsString(json)))
+                Assert.assertEquals(result.errors, streamingResult.errors)
+                Assert.assertEquals("oneOf", result.errors[0].keyword)
+            }
+        }
+
+        val schema = """{"oneOf": [{"${'$'}ref": "#/definitions/A"}], "discriminator": {"propertyName": "t", "mapping": {"b": "#/definitions/A"}},
+            "definitions": {"A": {"type": "object", "required": ["t"], "properties": {"t": {"enum": ["a"]}}}}}"""
+        try {
+            JsonSchemaValidator(objectMapper.readTree(schema))
+            Assert.fail("Compiled a discriminator not matching its oneOf")
+        } catch (e: Exception) {
+            // Expected
+        }
+        Assert.assertTrue(JsonSchemaValidator(objectMapper.readTree(schema.replace("\"b\"", "\"a\""))).isValid(objectMapper.readTree("{\"t\": \"a\"}")))
+    }
+
+    @Test
+    fun recursiveRefs() {
+        val json = toJson(RecursivePojo("t1", listOf(RecursivePojo("c1", listOf(RecursivePojo("c2", null))))))
+        ((json.at("/children/0/children/0")) as ObjectNode).put("myText", 2)
+        val result = validate(RecursivePojo::class.java, json)
+        Assert.assertEquals(1, result.errors.size)
+        assertError(result, "/children/0/children/0/myText", "type")
+    }
+
+    // With oneOf between null and the value, the errors of the value are reported
+    @Test
+    fun optional() {
+        val json = toJson(testData.pojoUsingOptionalJava)
+        (json.get("child1") as ObjectNode).put("child1String", 5)
+        val result = validate(PojoUsingOptionalJava::class.java, json, generators[1])
+        assertError(result, "/child1", "oneOf")
+        assertError(result, "/child1/child1String", "type")
+    }
+
+    @Test
+    fun failFast() {
+        val json = toJson(testData.classUsingValidation)
+        json.put("stringUsingSize", "")
+        json.put("intMin", 0)
+        val validator = JsonSchemaValidator(generators[0].generateJsonSchema(ClassUsingValidation::class.java))
+        Assert.assertEquals(2, validator.validate(json).errors.size)
+        Assert.assertEquals(1, validator.validate(json, failFast = true).errors.size)
+        Assert.assertFalse(validator.isValid(json))
+        Assert.assertTrue(validator.isValid(toJson(testData.classUsingValidation)))
+    }
+
+    @Test
+    fun unsupportedSchemas() {
+        listOf("""{"anyOf": [{"type": "string"}]}""", """{"type": "date"}""", """{"${'$'}ref": "#/definitions/Missing"}""",
+                """{"${'$'}ref": "http://example.com/schema"}""", """{"items": [{"type": "string"}]}""").forEach {
+            try {
+                JsonSchemaValidator(objectMapper.readTree(it))
+                Assert.fail("Compiled $it")
+            } catch (e: Exception) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    fun streamingStopsAtTheFirstError() {
+        val json = "{\"myText\": \"t1\", \"children\": [{\"myText\": \"c1\"}, {\"myText\": 2}, " +
+                "{\"myText\": \"c3\"}, {\"myText\": 4}]}"
+        val validator = JsonSchemaValidator(generators[0].generateJsonSchema(RecursivePojo::class.java))
+
+        val parser = objectMapper.factory.createParser(json)
+        val result = validator.validate(parser, failFast = true)
+        Assert.assertEquals(1, result.errors.size)
+        assertError(result, "/children/1/myText", "type")
+        // Nothing was read past the 2
+        Assert.assertEquals(JsonToken.VALUE_NUMBER_INT, parser.currentToken)
+        Assert.assertEquals(JsonToken.END_OBJECT, parser.nextToken())
+        Assert.assertEquals(JsonToken.START_OBJECT, parser.nextToken())
+
+        val allErrors = validator.validate(objectMapper.factory.createParser(json))
+        Assert.assertEquals(2, allErrors.errors.size)
+        assertError(allErrors, "/children/3/myText", "type")
+    }
+
+    // A payload far larger than what validating it allocates
+    @Test
+    fun streamingLargePayloads() {
+        val validator = JsonSchemaValidator(generators[0].generateJsonSchema(RecursivePojo::class.java))
+        val createReader = { RepeatingReader("{\"myText\": \"root\", \"children\": [", "{\"myText\": \"child\", \"children\": []}", 200000, "]}") }
+        // Warm up
+        Assert.assertTrue(validator.isValid(objectMapper.factory.createParser(createReader())))
+
+        val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val reader = createReader()
+        val threadId = Thread.currentThread().id
+        val before = threadMXBean.getThreadAllocatedBytes(threadId)
+        Assert.assertTrue(validator.validate(objectMapper.factory.createParser(reader)).isValid)
+        val allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - before
+        println("Validated ${reader.length} chars, allocating $allocatedBytes bytes")
+        Assert.assertTrue(allocatedBytes < reader.length / 10)
+    }
+
+    // prefix, then item count times (separated by commas), then suffix - without holding them all
+    class RepeatingReader(val prefix: String, val item: String, val count: Int, val suffix: String) : Reader() {
+        val length = prefix.length.toLong() + count.toLong() * (item.length + 1) - 1 + suffix.length
+        private var position = 0L
+
+        override fun read(buffer: CharArray, offset: Int, length: Int): Int {
+            if (position == this.length)
+                return -1
+            val count = Math.min(length.toLong(), this.length - position).toInt()
+            for (i in 0..count - 1) {
+                buffer[offset + i] = getChar(position + i)
+            }
+            position += count
+            return count
+        }
+
+        private fun getChar(i: Long): Char {
+            if (i < prefix.length)
+                return prefix[i.toInt()]
+            val itemsEnd = prefix.length.toLong() + count.toLong() * (item.length + 1) - 1
+            if (i >= itemsEnd)
+                return suffix[(i - itemsEnd).toInt()]
+            val j = ((i - prefix.length) % (item.length + 1)).toInt()
+            return if (j == item.length) ',' else item[j]
+        }
+
+        override fun close() {
+        }
+    }
+}
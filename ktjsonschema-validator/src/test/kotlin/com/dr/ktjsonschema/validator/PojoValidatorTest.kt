@@ -0,0 +1,111 @@
+package com.dr.ktjsonschema.validator
+
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.fasterxml.jackson.databind.module.SimpleModule
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+import com.fasterxml.jackson.datatype.joda.JodaModule
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.kjetland.jackson.jsonSchema.TestData
+import com.kjetland.jackson.jsonSchema.testData.*
+import com.kjetland.jackson.jsonSchema.testData.mixin.MixinModule
+import com.kjetland.jackson.jsonSchema.testDataKotlin.ClassUsingValidation
+import org.junit.Assert
+import org.junit.Test
+import java.util.*
+
+class PojoValidatorTest {
+
+    val objectMapper = ObjectMapper()
+
+    init {
+        objectMapper.registerModule(KotlinModule())
+        val simpleModule = SimpleModule()
+        simpleModule.addSerializer(PojoWithCustomSerializer::class.java, PojoWithCustomSerializerSerializer())
+        objectMapper.registerModule(simpleModule)
+        objectMapper.registerModule(JavaTimeModule())
+        objectMapper.registerModule(Jdk8Module())
+        objectMapper.registerModule(JodaModule())
+        objectMapper.registerModule(MixinModule())
+        objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+    }
+
+    val generators = listOf(
+            JsonSchemaGenerator(objectMapper),
+            JsonSchemaGenerator(objectMapper, config = JsonSchemaConfig.html5EnabledSchema))
+
+    val testData = TestData()
+
+    // Validates pojo, checking that validating its tree finds the same errors
+    fun validate(pojo: Any, generator: JsonSchemaGenerator = generators[0], clazz: Class<*> = pojo.javaClass): ValidationResult {
+        val result = PojoValidator(generator, clazz).validate(pojo)
+        val treeResult = JsonSchemaValidator(generator.generateJsonSchema(clazz)).validate(objectMapper.valueToTree<JsonNode>(pojo))
+        Assert.assertEquals("${clazz.simpleName} - pojo: $result, tree: $treeResult", treeResult.errors.toSet(), result.errors.toSet())
+        return result
+    }
+
+    fun assertError(result: ValidationResult, instancePointer: String, keyword: String) {
+        Assert.assertTrue("Expected $keyword at $instancePointer, found: $result",
+                result.errors.any { it.instancePointer == instancePointer && it.keyword == keyword })
+    }
+
+    @Test
+    fun validatesTheTestModels() {
+        val models = listOf(testData.classNotExtendingAnything, testData.pojoWithParent, testData.child1, testData.manyPrimitives,
+                testData.pojoUsingOptionalJava, testData.pojoWithArrays, testData.pojoUsingMaps, testData.recursivePojo,
+                testData.pojoUsingFormat, testData.manyDates, testData.classUsingValidation, testData.mixinChild1,
+                testData.objectWithPropertyWithCustomSerializer, testData.pojoWithParentKotlin, testData.pojoUsingOptionKotlin,
+                testData.pojoWithArraysKotlin, testData.classNotExtendingAnythingKotlin, testData.manyPrimitivesKotlin)
+        for (generator in generators) {
+            for (model in models) {
+                val result = validate(model, generator)
+                Assert.assertTrue("${model.javaClass.simpleName}: $result", result.isValid)
+            }
+            // Polymorphism - a child is valid as its parent, with the type id the generator found
+            Assert.assertTrue(validate(testData.child2, generator, Parent::class.java).isValid)
+        }
+    }
+
+    @Test
+    fun constraints() {
+        val pojo = ClassUsingValidation("_", "", "_", "x".repeat(31), "_stringUsingPatternC", 0, 1, 1.0, 10.5)
+        val result = validate(pojo)
+        Assert.assertEquals(5, result.errors.size)
+        assertError(result, "/stringUsingSize", "minLength")
+        assertError(result, "/stringUsingSizeOnlyMax", "maxLength")
+        assertError(result, "/stringUsingPattern", "pattern")
+        assertError(result, "/intMin", "minimum")
+        assertError(result, "/doubleMax", "maximum")
+    }
+
+    // Nulls, empty Optionals and nested errors are found where the tree has them
+    @Test
+    fun findsTheSameErrorsAsTheTree() {
+        val invalidModels = listOf(
+                ClassNotExtendingAnything(),
+                PojoWithParent(),
+                RecursivePojo("t1", listOf(RecursivePojo("c1", listOf(RecursivePojo(null, null))))),
+                PojoUsingOptionalJava(Optional.empty(), null, Optional.of(Child1()), Optional.of(listOf(ClassNotExtendingAnything()))))
+        for (generator in generators) {
+            for (model in invalidModels) {
+                Assert.assertFalse(model.javaClass.simpleName, validate(model, generator).isValid)
+            }
+        }
+        assertError(validate(invalidModels[2]), "/children/0/children/0/myText", "type")
+    }
+
+    @Test
+    fun failFast() {
+        val pojo = ClassUsingValidation("_", "", "_", "_", "_stringUsingPatternA", 0, 1, 1.0, 1.0)
+        val validator = PojoValidator(generators[0], ClassUsingValidation::class.java)
+        Assert.assertEquals(validator.schema, generators[0].generateJsonSchema(ClassUsingValidation::class.java))
+        Assert.assertEquals(2, validator.validate(pojo).errors.size)
+        Assert.assertEquals(1, validator.validate(pojo, failFast = true).errors.size)
+        Assert.assertFalse(validator.isValid(pojo))
+        Assert.assertTrue(validator.isValid(testData.classUsingValidation))
+    }
+}
@@ -0,0 +1,168 @@
+package com.dr.ktjsonschema.jmh;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// The shapes benchmarked by JsonSchemaGeneratorBenchmark
+public class BenchmarkModels {
+
+    // 220 properties - primitives, strings, collections and objects
+    public static class WidePojo {
+        public String s0, s1, s2, s3, s4, s5, s6, s7, s8, s9;
+        public String s10, s11, s12, s13, s14, s15, s16, s17, s18, s19;
+        public String s20, s21, s22, s23, s24, s25, s26, s27, s28, s29;
+        public String s30, s31, s32, s33, s34, s35, s36, s37, s38, s39;
+        public String s40, s41, s42, s43, s44, s45, s46, s47, s48, s49;
+        public String s50, s51, s52, s53, s54, s55, s56, s57, s58, s59;
+        public int i0, i1, i2, i3, i4, i5, i6, i7, i8, i9;
+        public int i10, i11, i12, i13, i14, i15, i16, i17, i18, i19;
+        public int i20, i21, i22, i23, i24, i25, i26, i27, i28, i29;
+        public int i30, i31, i32, i33, i34, i35, i36, i37, i38, i39;
+        public Integer boxed0, boxed1, boxed2, boxed3, boxed4, boxed5, boxed6, boxed7, boxed8, boxed9;
+        public Integer boxed10, boxed11, boxed12, boxed13, boxed14, boxed15, boxed16, boxed17, boxed18, boxed19;
+        public Integer boxed20, boxed21, boxed22, boxed23, boxed24, boxed25, boxed26, boxed27, boxed28, boxed29;
+        public long l0, l1, l2, l3, l4, l5, l6, l7, l8, l9;
+        public long l10, l11, l12, l13, l14, l15, l16, l17, l18, l19;
+        public double d0, d1, d2, d3, d4, d5, d6, d7, d8, d9;
+        public double d10, d11, d12, d13, d14, d15, d16, d17, d18, d19;
+        public boolean b0, b1, b2, b3, b4, b5, b6, b7, b8, b9;
+        public boolean b10, b11, b12, b13, b14, b15, b16, b17, b18, b19;
+        public List<String> list0, list1, list2, list3, list4, list5, list6, list7, list8, list9;
+        public Map<String, Integer> map0, map1, map2, map3, map4, map5, map6, map7, map8, map9;
+        public Level24 object0, object1, object2, object3, object4, object5, object6, object7, object8, object9;
+    }
+
+    // 24 levels, each a new definition
+    public static class Level1 { public String name1; public int value1; public Level2 child; }
+    public static class Level2 { public String name2; public int value2; public Level3 child; }
+    public static class Level3 { public String name3; public int value3; public Level4 child; }
+    public static class Level4 { public String name4; public int value4; public Level5 child; }
+    public static class Level5 { public String name5; public int value5; public Level6 child; }
+    public static class Level6 { public String name6; public int value6; public Level7 child; }
+    public static class Level7 { public String name7; public int value7; public Level8 child; }
+    public static class Level8 { public String name8; public int value8; public Level9 child; }
+    public static class Level9 { public String name9; public int value9; public Level10 child; }
+    public static class Level10 { public String name10; public int value10; public Level11 child; }
+    public static class Level11 { public String name11; public int value11; public Level12 child; }
+    public static class Level12 { public String name12; public int value12; public Level13 child; }
+    public static class Level13 { public String name13; public int value13; public Level14 child; }
+    public static class Level14 { public String name14; public int value14; public Level15 child; }
+    public static class Level15 { public String name15; public int value15; public Level16 child; }
+    public static class Level16 { public String name16; public int value16; public Level17 child; }
+    public static class Level17 { public String name17; public int value17; public Level18 child; }
+    public static class Level18 { public String name18; public int value18; public Level19 child; }
+    public static class Level19 { public String name19; public int value19; public Level20 child; }
+    public static class Level20 { public String name20; public int value20; public Level21 child; }
+    public static class Level21 { public String name21; public int value21; public Level22 child; }
+    public static class Level22 { public String name22; public int value22; public Level23 child; }
+    public static class Level23 { public String name23; public int value23; public Level24 child; }
+    public static class Level24 { public String name24; public int value24; }
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = Shape1.class, name = "shape1"),
+            @JsonSubTypes.Type(value = Shape2.class, name = "shape2"),
+            @JsonSubTypes.Type(value = Shape3.class, name = "shape3"),
+            @JsonSubTypes.Type(value = Shape4.class, name = "shape4"),
+            @JsonSubTypes.Type(value = Shape5.class, name = "shape5"),
+            @JsonSubTypes.Type(value = Shape6.class, name = "shape6"),
+            @JsonSubTypes.Type(value = Shape7.class, name = "shape7"),
+            @JsonSubTypes.Type(value = Shape8.class, name = "shape8"),
+            @JsonSubTypes.Type(value = Shape9.class, name = "shape9"),
+            @JsonSubTypes.Type(value = Shape10.class, name = "shape10"),
+            @JsonSubTypes.Type(value = Shape11.class, name = "shape11"),
+            @JsonSubTypes.Type(value = Shape12.class, name = "shape12"),
+            @JsonSubTypes.Type(value = Shape13.class, name = "shape13"),
+            @JsonSubTypes.Type(value = Shape14.class, name = "shape14"),
+            @JsonSubTypes.Type(value = Shape15.class, name = "shape15"),
+            @JsonSubTypes.Type(value = Shape16.class, name = "shape16"),
+            @JsonSubTypes.Type(value = Shape17.class, name = "shape17"),
+            @JsonSubTypes.Type(value = Shape18.class, name = "shape18"),
+            @JsonSubTypes.Type(value = Shape19.class, name = "shape19"),
+            @JsonSubTypes.Type(value = Shape20.class, name = "shape20"),
+            @JsonSubTypes.Type(value = Shape21.class, name = "shape21"),
+            @JsonSubTypes.Type(value = Shape22.class, name = "shape22"),
+            @JsonSubTypes.Type(value = Shape23.class, name = "shape23"),
+            @JsonSubTypes.Type(value = Shape24.class, name = "shape24"),
+            @JsonSubTypes.Type(value = Shape25.class, name = "shape25"),
+            @JsonSubTypes.Type(value = Shape26.class, name = "shape26"),
+            @JsonSubTypes.Type(value = Shape27.class, name = "shape27"),
+            @JsonSubTypes.Type(value = Shape28.class, name = "shape28"),
+            @JsonSubTypes.Type(value = Shape29.class, name = "shape29"),
+            @JsonSubTypes.Type(value = Shape30.class, name = "shape30"),
+            @JsonSubTypes.Type(value = Shape31.class, name = "shape31"),
+            @JsonSubTypes.Type(value = Shape32.class, name = "shape32"),
+            @JsonSubTypes.Type(value = Shape33.class, name = "shape33"),
+            @JsonSubTypes.Type(value = Shape34.class, name = "shape34"),
+            @JsonSubTypes.Type(value = Shape35.class, name = "shape35"),
+            @JsonSubTypes.Type(value = Shape36.class, name = "shape36"),
+            @JsonSubTypes.Type(value = Shape37.class, name = "shape37"),
+            @JsonSubTypes.Type(value = Shape38.class, name = "shape38"),
+            @JsonSubTypes.Type(value = Shape39.class, name = "shape39"),
+            @JsonSubTypes.Type(value = Shape40.class, name = "shape40")
+    })
+    public static abstract class Shape {
+        public String id;
+    }
+
+    public static class Shape1 extends Shape { public double size1; public String label1; }
+    public static class Shape2 extends Shape { public double size2; public String label2; }
+    public static class Shape3 extends Shape { public double size3; public String label3; }
+    public static class Shape4 extends Shape { public double size4; public String label4; }
+    public static class Shape5 extends Shape { public double size5; public String label5; }
+    public static class Shape6 extends Shape { public double size6; public String label6; }
+    public static class Shape7 extends Shape { public double size7; public String label7; }
+    public static class Shape8 extends Shape { public double size8; public String label8; }
+    public static class Shape9 extends Shape { public double size9; public String label9; }
+    public static class Shape10 extends Shape { public double size10; public String label10; }
+    public static class Shape11 extends Shape { public double size11; public String label11; }
+    public static class Shape12 extends Shape { public double size12; public String label12; }
+    public static class Shape13 extends Shape { public double size13; public String label13; }
+    public static class Shape14 extends Shape { public double size14; public String label14; }
+    public static class Shape15 extends Shape { public double size15; public String label15; }
+    public static class Shape16 extends Shape { public double size16; public String label16; }
+    public static class Shape17 extends Shape { public double size17; public String label17; }
+    public static class Shape18 extends Shape { public double size18; public String label18; }
+    public static class Shape19 extends Shape { public double size19; public String label19; }
+    public static class Shape20 extends Shape { public double size20; public String label20; }
+    public static class Shape21 extends Shape { public double size21; public String label21; }
+    public static class Shape22 extends Shape { public double size22; public String label22; }
+    public static class Shape23 extends Shape { public double size23; public String label23; }
+    public static class Shape24 extends Shape { public double size24; public String label24; }
+    public static class Shape25 extends Shape { public double size25; public String label25; }
+    public static class Shape26 extends Shape { public double size26; public String label26; }
+    public static class Shape27 extends Shape { public double size27; public String label27; }
+    public static class Shape28 extends Shape { public double size28; public String label28; }
+    public static class Shape29 extends Shape { public double size29; public String label29; }
+    public static class Shape30 extends Shape { public double size30; public String label30; }
+    public static class Shape31 extends Shape { public double size31; public String label31; }
+    public static class Shape32 extends Shape { public double size32; public String label32; }
+    public static class Shape33 extends Shape { public double size33; public String label33; }
+    public static class Shape34 extends Shape { public double size34; public String label34; }
+    public static class Shape35 extends Shape { public double size35; public String label35; }
+    public static class Shape36 extends Shape { public double size36; public String label36; }
+    public static class Shape37 extends Shape { public double size37; public String label37; }
+    public static class Shape38 extends Shape { public double size38; public String label38; }
+    public static class Shape39 extends Shape { public double size39; public String label39; }
+    public static class Shape40 extends Shape { public double size40; public String label40; }
+
+    public static class Drawing {
+        public String title;
+        public Shape main;
+        public List<Shape> shapes;
+    }
+
+    // Needs Jdk8Module
+    public static class OptionalPojo {
+        public Optional<String> text0, text1, text2, text3, text4, text5, text6, text7, text8, text9;
+        public Optional<String> text10, text11, text12, text13, text14, text15, text16, text17, text18, text19;
+        public Optional<String> text20, text21, text22, text23, text24, text25, text26, text27, text28, text29;
+        public Optional<Integer> number0, number1, number2, number3, number4, number5, number6, number7, number8, number9;
+        public Optional<Integer> number10, number11, number12, number13, number14, number15, number16, number17, number18, number19;
+        public Optional<Level24> object0, object1, object2, object3, object4, object5, object6, object7, object8, object9;
+    }
+}
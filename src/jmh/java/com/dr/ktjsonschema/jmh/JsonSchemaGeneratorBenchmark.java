@@ -0,0 +1,74 @@
+package com.dr.ktjsonschema.jmh;
+
+import com.dr.ktjsonschema.JsonSchemaConfig;
+import com.dr.ktjsonschema.JsonSchemaGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.kjetland.jackson.jsonSchema.testData.RecursivePojo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of generateJsonSchema (no cache) for each shape of BenchmarkModels, and RecursivePojo.
+ * Run with: gradle jmh - the gc profiler is on, so each result also reports bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSchemaGeneratorBenchmark {
+
+    @Param({"vanilla", "html5"})
+    public String config;
+
+    private JsonSchemaGenerator generator;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new Jdk8Module());
+        JsonSchemaConfig jsonSchemaConfig = config.equals("html5")
+                ? JsonSchemaConfig.getHtml5EnabledSchema()
+                : JsonSchemaConfig.getVanillaJsonSchemaDraft4();
+        generator = new JsonSchemaGenerator(objectMapper, jsonSchemaConfig);
+    }
+
+    @Benchmark
+    public JsonNode widePojo() {
+        return generator.generateJsonSchema(BenchmarkModels.WidePojo.class);
+    }
+
+    @Benchmark
+    public JsonNode deepNesting() {
+        return generator.generateJsonSchema(BenchmarkModels.Level1.class);
+    }
+
+    @Benchmark
+    public JsonNode recursive() {
+        return generator.generateJsonSchema(RecursivePojo.class);
+    }
+
+    @Benchmark
+    public JsonNode manySubtypes() {
+        return generator.generateJsonSchema(BenchmarkModels.Drawing.class);
+    }
+
+    @Benchmark
+    public JsonNode optionalHeavy() {
+        return generator.generateJsonSchema(BenchmarkModels.OptionalPojo.class);
+    }
+}
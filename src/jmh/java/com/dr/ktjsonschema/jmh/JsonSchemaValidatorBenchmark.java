@@ -0,0 +1,115 @@
+package com.dr.ktjsonschema.jmh;
+
+import com.dr.ktjsonschema.JsonSchemaGenerator;
+import com.dr.ktjsonschema.validator.JsonSchemaValidator;
+import com.dr.ktjsonschema.validator.PojoValidator;
+import com.dr.ktjsonschema.validator.ValidationResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.kotlin.KotlinModule;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import com.kjetland.jackson.jsonSchema.TestData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of validating a test model serialized as json, with the compiled JsonSchemaValidator and with the
+ * fge json-schema-validator, both given the schema generated for the model. Run with: gradle jmh -PjmhInclude=Validator
+ *
+ * parseAndValidate and streaming compare reading the json into a tree to validate it with validating its tokens,
+ * toTreeAndValidate and pojo converting the model into a tree to validate it with validating the model itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSchemaValidatorBenchmark {
+
+    @Param({"pojoWithParent", "pojoWithArrays", "pojoUsingMaps", "recursivePojo", "classUsingValidation", "pojoUsingOptionalJava"})
+    public String model;
+
+    private ObjectMapper objectMapper;
+    private Object pojo;
+    private byte[] bytes;
+    private JsonNode json;
+    private JsonSchemaValidator compiledValidator;
+    private JsonSchema fgeValidator;
+    private PojoValidator pojoValidator;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new KotlinModule());
+        objectMapper.registerModule(new Jdk8Module());
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+        pojo = TestData.class.getMethod("get" + Character.toUpperCase(model.charAt(0)) + model.substring(1)).invoke(new TestData());
+        json = objectMapper.valueToTree(pojo);
+        bytes = objectMapper.writeValueAsBytes(json);
+        JsonSchemaGenerator generator = new JsonSchemaGenerator(objectMapper);
+        JsonNode schema = generator.generateJsonSchema(pojo.getClass());
+
+        compiledValidator = new JsonSchemaValidator(schema);
+        fgeValidator = JsonSchemaFactory.byDefault().getJsonSchema(schema);
+        pojoValidator = new PojoValidator(generator, pojo.getClass());
+        if (!compiledValidator.validate(json).isValid() || !fgeValidator.validate(json).isSuccess() || !pojoValidator.validate(pojo).isValid())
+            throw new IllegalStateException(model + " does not validate");
+    }
+
+    @Benchmark
+    public ValidationResult compiled() {
+        return compiledValidator.validate(json);
+    }
+
+    @Benchmark
+    public ValidationResult parseAndValidate() throws IOException {
+        return compiledValidator.validate(objectMapper.readTree(bytes));
+    }
+
+    @Benchmark
+    public ValidationResult streaming() throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(bytes);
+        try {
+            return compiledValidator.validate(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Benchmark
+    public ValidationResult toTreeAndValidate() {
+        return compiledValidator.validate(objectMapper.<JsonNode>valueToTree(pojo));
+    }
+
+    @Benchmark
+    public ValidationResult pojo() {
+        return pojoValidator.validate(pojo);
+    }
+
+    @Benchmark
+    public ProcessingReport fge() throws ProcessingException {
+        return fgeValidator.validate(json);
+    }
+}
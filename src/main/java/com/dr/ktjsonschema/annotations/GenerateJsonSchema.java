@@ -0,0 +1,16 @@
+package com.dr.ktjsonschema.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * Makes the ktjsonschema-processor annotation processor generate, at compile time, a class holding the schema of
+ * the annotated class as a constant: for class Foo, FooJsonSchema.JSON in the same package.
+ */
+@Target({ TYPE })
+@Retention(CLASS)
+public @interface GenerateJsonSchema {
+}
@@ -0,0 +1,178 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass
+import java.io.File
+import java.lang.reflect.GenericArrayType
+import java.lang.reflect.ParameterizedType
+import java.lang.reflect.Type
+import java.lang.reflect.WildcardType
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Fingerprints what the schema of a class is generated from: the bytecode of the class and of the classes it depends
+ * on (supertypes, types of fields, methods and constructors, classes named by annotations, mixins and subtypes known
+ * to objectMapper, with their type ids), recursively.
+ *
+ * Classes loaded from a jar are fingerprinted by the jar (path, length and last modification) - unless the jar is one
+ * of hashedCodeSources - and only their supertypes, mixins and subtypes are followed: the jar can't name those set on
+ * objectMapper. Classes loaded from a dir are fingerprinted by their bytecode. JDK classes are skipped.
+ * What each class seen is fingerprinted by, and the classes it depends on, are found once - classes share most of
+ * their dependencies. The fingerprint of each class asked for is remembered too, until clear().
+ */
+internal class ClassFingerprinter(val objectMapper: ObjectMapper, val hashedCodeSources: Set<File> = emptySet()) {
+
+    // What a single class is fingerprinted by, without its dependencies
+    private class ClassInfo(
+            // Digest of its bytecode or the jar it comes from - null for primitives and JDK classes, "" when its
+            // bytecode or a class it refers to can't be found
+            val digest: String?,
+            // Subtypes it is known to have, with their type ids - null when not polymorphic
+            val subTypes: String?,
+            val dependencies: List<Class<*>>)
+
+    private val classInfos = ConcurrentHashMap<Class<*>, ClassInfo>()
+
+    // Fingerprint of each class asked for - "" when it has none
+    private val fingerprints = ConcurrentHashMap<Class<*>, String>()
+
+    // Returns null if the bytecode of clazz, or of a class it depends on, can't be found
+    fun getFingerprint(clazz: Class<*>): String? {
+        val fingerprint = fingerprints[clazz] ?: fingerprints.getOrPut(clazz) { computeFingerprint(clazz) ?: "" }
+        return if (fingerprint.isEmpty()) null else fingerprint
+    }
+
+    fun clear() {
+        classInfos.clear()
+        fingerprints.clear()
+    }
+
+    private fun computeFingerprint(clazz: Class<*>): String? {
+        // class name -> digest of its bytecode or the jar it comes from, and subtypes it is known to have
+        val fingerprints = TreeMap<String, String>()
+        val visited = HashSet<Class<*>>()
+        val toVisit = ArrayList<Class<*>>()
+        toVisit.add(clazz)
+        while (toVisit.isNotEmpty()) {
+            val current = toVisit.removeAt(toVisit.size - 1)
+            if (!visited.add(current))
+                continue
+            val info = classInfos[current] ?: classInfos.getOrPut(current) { getClassInfo(current) }
+            if (info.digest == "")
+                return null
+            info.digest?.let { fingerprints.put(current.name, it) }
+            info.subTypes?.let { fingerprints.put("subtypes:" + current.name, it) }
+            toVisit.addAll(info.dependencies)
+        }
+        return sha256Hex(fingerprints.entries.joinToString("\n").toByteArray(Charsets.UTF_8))
+    }
+
+    private fun getClassInfo(clazz: Class<*>): ClassInfo {
+        if (clazz.isArray)
+            return ClassInfo(null, null, listOf(clazz.componentType))
+        // Skip primitives and JDK classes
+        val codeSource = getCodeSource(clazz) ?: return ClassInfo(null, null, emptyList())
+
+        // The jar stands for its classes, and what they depend on in it
+        val inJar = codeSource.isFile && !hashedCodeSources.contains(codeSource)
+        val digest = if (inJar) "${codeSource.path}:${codeSource.length()}:${codeSource.lastModified()}" else getDigest(clazz)
+        if (digest.isEmpty())
+            return ClassInfo("", null, emptyList())
+        val dependencies = ArrayList<Class<*>>()
+        try {
+            val subTypes = collectHierarchy(clazz, dependencies)
+            if (!inJar)
+                collectDependencies(clazz, dependencies)
+            return ClassInfo(digest, subTypes, dependencies)
+        } catch (e: LinkageError) {
+            // A dependency is missing - jackson would fail on it anyway
+            return ClassInfo("", null, emptyList())
+        }
+    }
+
+    private fun getCodeSource(clazz: Class<*>): File? {
+        val location = clazz.protectionDomain?.codeSource?.location ?: return null
+        if (location.protocol != "file")
+            return null
+        return File(location.toURI())
+    }
+
+    private fun getDigest(clazz: Class<*>): String {
+        val input = clazz.classLoader.getResourceAsStream(clazz.name.replace('.', '/') + ".class") ?: return ""
+        return input.use { sha256Hex(it.readBytes()) }
+    }
+
+    // Collects the supertypes of clazz, and its mixin and subtypes known to objectMapper. Returns its subtypes, with
+    // their type ids - null when not polymorphic
+    private fun collectHierarchy(clazz: Class<*>, to: MutableList<Class<*>>): String? {
+        clazz.superclass?.let { to.add(it) }
+        to.addAll(clazz.interfaces)
+        objectMapper.findMixInClassFor(clazz)?.let { to.add(it) }
+
+        // Subtypes registered on the mapper are not named by the class itself
+        val annotatedClass = AnnotatedClass.construct(objectMapper.constructType(clazz), objectMapper.deserializationConfig)
+        val subTypes = objectMapper.subtypeResolver.collectAndResolveSubtypesByClass(objectMapper.deserializationConfig, annotatedClass)
+        val polymorphic = subTypes.size > 1 || subTypes.any { it.hasName() }
+        if (!polymorphic)
+            return null
+        subTypes.forEach { to.add(it.type) }
+        return subTypes.map { "${it.type.name}=${it.name}" }.sorted().joinToString(",")
+    }
+
+    private fun collectDependencies(clazz: Class<*>, to: MutableList<Class<*>>) {
+        clazz.declaredAnnotations.forEach { collectFromAnnotation(it, to) }
+        for (field in clazz.declaredFields) {
+            collectFromType(field.genericType, to)
+            field.declaredAnnotations.forEach { collectFromAnnotation(it, to) }
+        }
+        for (method in clazz.declaredMethods) {
+            collectFromType(method.genericReturnType, to)
+            method.genericParameterTypes.forEach { collectFromType(it, to) }
+            method.declaredAnnotations.forEach { collectFromAnnotation(it, to) }
+            method.parameterAnnotations.forEach { it.forEach { collectFromAnnotation(it, to) } }
+        }
+        for (constructor in clazz.declaredConstructors) {
+            constructor.genericParameterTypes.forEach { collectFromType(it, to) }
+            constructor.parameterAnnotations.forEach { it.forEach { collectFromAnnotation(it, to) } }
+        }
+    }
+
+    private fun collectFromType(type: Type, to: MutableList<Class<*>>) {
+        when (type) {
+            is Class<*> -> to.add(type)
+            is ParameterizedType -> {
+                collectFromType(type.rawType, to)
+                type.actualTypeArguments.forEach { collectFromType(it, to) }
+            }
+            is GenericArrayType -> collectFromType(type.genericComponentType, to)
+            is WildcardType -> {
+                type.upperBounds.forEach { collectFromType(it, to) }
+                type.lowerBounds.forEach { collectFromType(it, to) }
+            }
+            // Type variables: their bounds are part of the class declaring them
+        }
+    }
+
+    // The annotation type, and classes given as values - e.g. @JsonSubTypes or @JsonSerialize(using = ...)
+    private fun collectFromAnnotation(annotation: Annotation, to: MutableList<Class<*>>) {
+        val annotationType = annotation.annotationClass.java
+        to.add(annotationType)
+        for (method in annotationType.declaredMethods) {
+            val value = try {
+                method.invoke(annotation)
+            } catch (e: Exception) {
+                continue
+            }
+            collectFromAnnotationValue(value, to)
+        }
+    }
+
+    private fun collectFromAnnotationValue(value: Any?, to: MutableList<Class<*>>) {
+        when (value) {
+            is Class<*> -> to.add(value)
+            is Annotation -> collectFromAnnotation(value, to)
+            is Array<*> -> value.forEach { collectFromAnnotationValue(it, to) }
+        }
+    }
+}
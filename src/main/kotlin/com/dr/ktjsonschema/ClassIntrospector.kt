@@ -0,0 +1,109 @@
+package com.dr.ktjsonschema
+
+import com.dr.ktjsonschema.annotations.JsonSchemaDescription
+import com.dr.ktjsonschema.annotations.JsonSchemaFormat
+import com.dr.ktjsonschema.annotations.JsonSchemaTitle
+import com.fasterxml.jackson.annotation.JsonPropertyDescription
+import com.fasterxml.jackson.annotation.JsonTypeInfo
+import com.fasterxml.jackson.databind.BeanProperty
+import com.fasterxml.jackson.databind.DeserializationConfig
+import com.fasterxml.jackson.databind.JavaType
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Resolves (once) what JsonSchemaGenerator needs to know about a class: its schema annotations and its
+ * polymorphism setup (using a SubtypeIndex). Also holds the PropertyInfo of each property, keyed by the
+ * BeanProperty instances jackson reuses for as long as it caches their serializer.
+ *
+ * Everything is forgotten when the ObjectMapper's DeserializationConfig is replaced or a mix-in is added.
+ * Other changes to the mapper, e.g. registerSubtypes(), are not detected - call clear() after making them.
+ */
+internal class ClassIntrospector(val objectMapper: ObjectMapper) {
+
+    class ClassInfo(
+            // Subtypes to use in oneOf - empty if this class is not a polymorphism parent
+            val subTypes: List<Class<*>>,
+            // From class annotations
+            val format: String?,
+            val description: String?,
+            val title: String?,
+            // Set if this class is a child in a polymorphism config
+            val polymorphismInfo: JsonSchemaGenerator.PolymorphismInfo?
+    )
+
+    // The mapper configuration the cached ClassInfos were resolved with
+    private class Snapshot(val deserializationConfig: DeserializationConfig, val mixInCount: Int, objectMapper: ObjectMapper) {
+        val classInfos = ConcurrentHashMap<JavaType, ClassInfo>()
+        val propertyInfos = ConcurrentHashMap<BeanProperty, JsonSchemaGenerator.PropertyInfo>()
+        val subtypeIndex = SubtypeIndex(objectMapper)
+    }
+
+    @Volatile private var snapshot: Snapshot? = null
+
+    fun getClassInfo(type: JavaType): ClassInfo {
+        val snapshot = getSnapshot()
+        val classInfos = snapshot.classInfos
+        classInfos[type]?.let {
+            return it
+        }
+        val classInfo = introspect(type, snapshot.subtypeIndex)
+        classInfos.putIfAbsent(type, classInfo)
+        return classInfo
+    }
+
+    fun getPropertyInfo(prop: BeanProperty, create: (BeanProperty) -> JsonSchemaGenerator.PropertyInfo): JsonSchemaGenerator.PropertyInfo {
+        val propertyInfos = getSnapshot().propertyInfos
+        propertyInfos[prop]?.let {
+            return it
+        }
+        val propertyInfo = create(prop)
+        propertyInfos.putIfAbsent(prop, propertyInfo)
+        return propertyInfo
+    }
+
+    fun clear() {
+        snapshot = null
+    }
+
+    private fun getSnapshot(): Snapshot {
+        val deserializationConfig = objectMapper.deserializationConfig
+        val mixInCount = objectMapper.mixInCount()
+        val current = snapshot
+        if (current != null && current.deserializationConfig === deserializationConfig && current.mixInCount == mixInCount)
+            return current
+
+        val fresh = Snapshot(deserializationConfig, mixInCount, objectMapper)
+        snapshot = fresh
+        return fresh
+    }
+
+    private fun introspect(type: JavaType, subtypeIndex: SubtypeIndex): ClassInfo {
+        val ac = AnnotatedClass.construct(type, objectMapper.deserializationConfig)
+        val subtypeEntry = subtypeIndex.getEntry(ac)
+        val subTypes = subtypeEntry.subTypes
+
+        val format = ac.getAnnotation(JsonSchemaFormat::class.java)?.value
+
+        // @JsonPropertyDescription wins over @JsonSchemaDescription
+        val description = ac.annotations.get(JsonPropertyDescription::class.java)?.value
+                ?: ac.annotations.get(JsonSchemaDescription::class.java)?.value
+
+        val title = ac.annotations.get(JsonSchemaTitle::class.java)?.value
+
+        var polymorphismInfo: JsonSchemaGenerator.PolymorphismInfo? = null
+        val jsonTypeInfo: JsonTypeInfo? = ac.annotations?.get(JsonTypeInfo::class.java)
+        if (subTypes.isEmpty() && jsonTypeInfo != null) {
+            if (jsonTypeInfo.include != JsonTypeInfo.As.PROPERTY)
+                throw Exception("We only support polymorphism using jsonTypeInfo.include() == JsonTypeInfo.As.PROPERTY")
+            if (jsonTypeInfo.use != JsonTypeInfo.Id.NAME)
+                throw Exception("We only support polymorphism using jsonTypeInfo.use == JsonTypeInfo.Id.NAME")
+
+            val subTypeName: String = subtypeEntry.typeId!!
+            polymorphismInfo = JsonSchemaGenerator.PolymorphismInfo(jsonTypeInfo.property, subTypeName)
+        }
+
+        return ClassInfo(subTypes, format, description, title, polymorphismInfo)
+    }
+}
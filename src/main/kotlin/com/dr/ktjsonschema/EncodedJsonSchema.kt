@@ -0,0 +1,68 @@
+package com.dr.ktjsonschema
+
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.zip.GZIPOutputStream
+
+/**
+ * A schema encoded once, ready to be served as is: the json as UTF-8, the same gzipped, and a strong ETag.
+ *
+ * Immutable - the encoded bytes are only handed out as read-only buffers or copies.
+ * See JsonSchemaGenerator.generateEncodedJsonSchema
+ */
+class EncodedJsonSchema internal constructor(private val utf8: ByteArray) {
+
+    private val gzipped: ByteArray = gzip(utf8)
+
+    // Strong ETag: the quoted hex SHA-256 of the UTF-8 json
+    val etag: String = "\"" + sha256Hex(utf8) + "\""
+
+    val size: Int
+        get() = utf8.size
+
+    val gzippedSize: Int
+        get() = gzipped.size
+
+    fun getUtf8(): ByteBuffer = ByteBuffer.wrap(utf8).asReadOnlyBuffer()
+
+    fun getGzipped(): ByteBuffer = ByteBuffer.wrap(gzipped).asReadOnlyBuffer()
+
+    fun writeUtf8To(out: OutputStream) {
+        out.write(utf8)
+    }
+
+    fun writeGzippedTo(out: OutputStream) {
+        out.write(gzipped)
+    }
+
+    fun toUtf8ByteArray(): ByteArray = utf8.copyOf()
+
+    fun toGzippedByteArray(): ByteArray = gzipped.copyOf()
+
+    override fun toString(): String = String(utf8, Charsets.UTF_8)
+
+    private fun gzip(bytes: ByteArray): ByteArray {
+        val out = ByteArrayOutputStream(bytes.size / 4 + 64)
+        val gzip = GZIPOutputStream(out)
+        gzip.write(bytes)
+        gzip.close()
+        return out.toByteArray()
+    }
+}
+
+/**
+ * Hex SHA-256 of bytes - as used for ETags, persistent cache keys and export manifests
+ */
+fun sha256Hex(bytes: ByteArray): String {
+    val hexDigits = "0123456789abcdef"
+    val digest = MessageDigest.getInstance("SHA-256").digest(bytes)
+    val sb = StringBuilder(digest.size * 2)
+    for (b in digest) {
+        val v = b.toInt() and 0xff
+        sb.append(hexDigits[v shr 4])
+        sb.append(hexDigits[v and 0x0f])
+    }
+    return sb.toString()
+}
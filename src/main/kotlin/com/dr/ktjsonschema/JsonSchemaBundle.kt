@@ -0,0 +1,23 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.node.ObjectNode
+
+/**
+ * Result of JsonSchemaGenerator.generateJsonSchemas
+ *
+ * @param schema the schema document, holding all definitions
+ * @param refs the $ref (e.g. "#/definitions/MyPojo") of each of the generated classes, in the order they were given
+ */
+data class JsonSchemaBundle(val schema: JsonNode, val refs: Map<Class<*>, String>) {
+
+    /**
+     * Returns a standalone schema for clazz: the whole bundle, with a root $ref to the definition of clazz.
+     */
+    fun getJsonSchema(clazz: Class<*>): JsonNode {
+        val ref = refs[clazz] ?: throw IllegalArgumentException("$clazz is not part of this bundle")
+        val node = (schema as ObjectNode).deepCopy()
+        node.put("\$ref", ref)
+        return node
+    }
+}
@@ -0,0 +1,104 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.JsonNode
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Bounded, thread-safe cache of generated schemas, keyed by (class, title, description).
+ *
+ * Reads are lock-free; put, eviction and clear() share one lock, so the insertion order always holds exactly the
+ * stored keys. When more than maxEntries schemas are stored, the oldest ones are evicted first.
+ * Cached trees are never handed out - every hit returns a deep copy, so callers may modify the schema they get.
+ * A schema may also hold its EncodedJsonSchema, which is immutable and shared.
+ *
+ * A cache belongs to a single JsonSchemaGenerator - do not share it between generators using different
+ * ObjectMappers or configs.
+ *
+ * @param maxEntries max number of schemas to keep
+ */
+class JsonSchemaCache @JvmOverloads constructor(val maxEntries: Int = 1000) {
+
+    data class Key(val clazz: Class<*>, val title: String?, val description: String?)
+
+    private class Entry(val schema: JsonNode) {
+        @Volatile var encoded: EncodedJsonSchema? = null
+    }
+
+    private val entries = ConcurrentHashMap<Key, Entry>()
+    // Guarded by lock
+    private val insertionOrder = ArrayDeque<Key>()
+    private val lock = Any()
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    init {
+        if (maxEntries <= 0)
+            throw IllegalArgumentException("maxEntries must be positive - got $maxEntries")
+    }
+
+    val hitCount: Long
+        get() = hits.get()
+
+    val missCount: Long
+        get() = misses.get()
+
+    val evictionCount: Long
+        get() = evictions.get()
+
+    val size: Int
+        get() = entries.size
+
+    // Returns a private copy of the cached schema, or null if not cached
+    fun get(key: Key): JsonNode? {
+        val entry = entries[key]
+        if (entry == null) {
+            misses.incrementAndGet()
+            return null
+        }
+        hits.incrementAndGet()
+        return entry.schema.deepCopy()
+    }
+
+    fun put(key: Key, schema: JsonNode) {
+        // Store our own copy since the caller owns (and might modify) the one passed in
+        val entry = Entry(schema.deepCopy())
+        synchronized(lock) {
+            if (entries.putIfAbsent(key, entry) == null) {
+                insertionOrder.add(key)
+                evictIfNeeded()
+            }
+        }
+    }
+
+    // Returns the encoded schema, or null if not encoded yet. Only hits are counted - a miss is counted by the get() that follows
+    fun getEncoded(key: Key): EncodedJsonSchema? {
+        val encoded = entries[key]?.encoded ?: return null
+        hits.incrementAndGet()
+        return encoded
+    }
+
+    // Stores the encoded form of a schema already in the cache - ignored if that schema is not (or no longer) in it
+    fun putEncoded(key: Key, encoded: EncodedJsonSchema) {
+        entries[key]?.encoded = encoded
+    }
+
+    fun clear() {
+        synchronized(lock) {
+            entries.clear()
+            insertionOrder.clear()
+        }
+    }
+
+    // Called holding lock
+    private fun evictIfNeeded() {
+        while (entries.size > maxEntries) {
+            val oldest = insertionOrder.poll() ?: return
+            entries.remove(oldest)
+            evictions.incrementAndGet()
+        }
+    }
+}
@@ -5,7 +5,7 @@ package com.dr.ktjsonschema
  *
  * Forked from Scala code by mbknor @ https://github.com/mbknor/mbknor-jackson-jsonSchema
  */
-data class JsonSchemaConfig
+data class JsonSchemaConfig @JvmOverloads constructor
 (
         val autoGenerateTitleForProperties:Boolean,
         val defaultArrayFormat:String?,
@@ -15,7 +15,10 @@ data class JsonSchemaConfig
         val disableWarnings:Boolean,
         val useMinLengthForNotNull:Boolean,
         val useTypeIdForDefinitionName:Boolean,
-        val customType2FormatMapping:Map<String, String>
+        val customType2FormatMapping:Map<String, String>,
+        // Adds {"discriminator": {"propertyName": ..., "mapping": {typeId: $ref}}} next to the oneOf of polymorphic types,
+        // so tools can pick the subtype without trying each one. Draft 4 validators ignore it
+        val useDiscriminatorMapping:Boolean = false
 ) {
         companion object {
                 @JvmStatic
@@ -0,0 +1,407 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.JsonSerializable
+import com.fasterxml.jackson.databind.node.ArrayNode
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+import com.fasterxml.jackson.databind.node.ObjectNode
+import java.util.*
+
+/**
+ * Renders a CompiledSchema as a draft 4 json schema, as configured by config.
+ *
+ * The result of rendering a schema compiled by JsonSchemaGenerator.compileJsonSchema is the same as the one of
+ * JsonSchemaGenerator.generateJsonSchema, using a generator with the same config.
+ */
+class JsonSchemaDraft4Renderer(val config: JsonSchemaConfig) : JsonSchemaRenderer<ObjectNode> {
+
+    companion object {
+        private val DEFINITIONS_PREFIX = "#/definitions/"
+
+        // Code found here: http://stackoverflow.com/questions/2559759/how-do-i-convert-camelcase-into-human-readable-names-in-java
+        private val TITLE_WORD_BOUNDARY = Regex(String.format("%s|%s|%s",
+                "(?<=[A-Z])(?=[A-Z][a-z])",
+                "(?<=[^A-Z])(?=[A-Z])",
+                "(?<=[A-Za-z])(?=[^A-Za-z])"
+        ))
+    }
+
+    override fun render(schema: CompiledSchema, title: String?, description: String?): ObjectNode {
+        val definitionNames = getDefinitionNames(schema)
+        val rootNode = renderRoot(schema, title, description, definitionNames)
+
+        if (schema.definitions.isNotEmpty()) {
+            val definitionsNode = JsonNodeFactory.instance.objectNode()
+            for ((type, definition) in schema.definitions) {
+                definitionsNode.set(definitionNames[type], renderDefinition(definition, definitionNames))
+            }
+            rootNode.set("definitions", definitionsNode)
+        }
+
+        return rootNode
+    }
+
+    /**
+     * Writes the same schema as render() to generator, without building the whole document first:
+     * each definition is written (and forgotten) as soon as it is rendered.
+     *
+     * The generator is neither flushed nor closed.
+     */
+    fun write(schema: CompiledSchema, title: String?, description: String?, generator: JsonGenerator) {
+        val definitionNames = getDefinitionNames(schema)
+
+        generator.writeStartObject()
+        val rootNode = renderRoot(schema, title, description, definitionNames)
+        val rootFields = rootNode.fields()
+        while (rootFields.hasNext()) {
+            val field = rootFields.next()
+            generator.writeFieldName(field.key)
+            writeNode(field.value, generator)
+        }
+
+        if (schema.definitions.isNotEmpty()) {
+            generator.writeObjectFieldStart("definitions")
+            for ((type, definition) in schema.definitions) {
+                generator.writeFieldName(definitionNames[type])
+                writeNode(renderDefinition(definition, definitionNames), generator)
+            }
+            generator.writeEndObject()
+        }
+        generator.writeEndObject()
+    }
+
+    // Our nodes never hold POJOs, so no SerializerProvider is needed
+    private fun writeNode(node: JsonNode, generator: JsonGenerator) {
+        (node as JsonSerializable).serialize(generator, null)
+    }
+
+    // The root of the document - everything but the definitions
+    private fun renderRoot(schema: CompiledSchema, title: String?, description: String?,
+                           definitionNames: Map<SchemaIr.TypeName, String>): ObjectNode {
+        val rootNode = JsonNodeFactory.instance.objectNode()
+
+        // Specify that this is a v4 json schema
+        rootNode.put("\$schema", JsonSchemaGenerator.JSON_SCHEMA_DRAFT_4_URL)
+        //rootNode.put("id", "http://my.site/myschema#")
+
+        val rootType = schema.rootType
+        val root = schema.root
+        if (rootType != null && root != null) {
+            // Add schema title
+            rootNode.put("title", title ?: generateTitleFromPropertyName(rootType.simpleName))
+
+            // Maybe set schema description
+            description?.let {
+                rootNode.put("description", it)
+                // If root class is annotated with @com.dr.ktjsonschema.JsonSchemaDescription, it will later override this description
+            }
+
+            renderSchema(root, rootNode, definitionNames, null)
+        }
+        return rootNode
+    }
+
+    private fun renderDefinition(definition: SchemaIr, definitionNames: Map<SchemaIr.TypeName, String>): ObjectNode {
+        val node = JsonNodeFactory.instance.objectNode()
+        renderSchema(definition, node, definitionNames, null)
+        return node
+    }
+
+    /**
+     * Returns the $ref (e.g. "#/definitions/MyPojo") of each definition in schema
+     */
+    fun getDefinitionRefs(schema: CompiledSchema): Map<SchemaIr.TypeName, String> {
+        val refs = LinkedHashMap<SchemaIr.TypeName, String>()
+        for ((type, name) in getDefinitionNames(schema)) {
+            refs.put(type, DEFINITIONS_PREFIX + name)
+        }
+        return refs
+    }
+
+    fun generateTitleFromPropertyName(propertyName: String): String {
+        val s = propertyName.replace(TITLE_WORD_BOUNDARY, " ")
+
+        // Make the first letter uppercase
+        return s.substring(0, 1).toUpperCase() + s.substring(1)
+    }
+
+    fun getDefinitionName(type: SchemaIr.TypeName): String {
+        return if (config.useTypeIdForDefinitionName) type.name else type.simpleName
+    }
+
+    // Picks a unique name for each definition, in the order they were created
+    private fun getDefinitionNames(schema: CompiledSchema): Map<SchemaIr.TypeName, String> {
+        val names = LinkedHashMap<SchemaIr.TypeName, String>()
+        val usedNames = HashSet<String>()
+        // simpleName -> last retry count used. Names only get taken, so lower counts need not be tried again
+        val retryCounts = HashMap<String, Int>()
+        for (type in schema.definitions.keys) {
+            var name = getDefinitionName(type)
+            if (!usedNames.add(name)) {
+                var retryCount = retryCounts[type.simpleName] ?: 0
+                do {
+                    retryCount += 1
+                    name = type.simpleName + "_" + retryCount
+                } while (!usedNames.add(name))
+                retryCounts.put(type.simpleName, retryCount)
+            }
+            names.put(type, name)
+        }
+        return names
+    }
+
+    // Writes ir into node. annotations are the ones of the property ir is the schema of, if any
+    private fun renderSchema(ir: SchemaIr, node: ObjectNode, definitionNames: Map<SchemaIr.TypeName, String>,
+                             annotations: SchemaIr.PropertyAnnotations?) {
+        when (ir) {
+            is SchemaIr.Primitive -> {
+                node.put("type", ir.type)
+                if (annotations != null) {
+                    renderConstraints(ir.type, annotations, node)
+                }
+                ir.enumValues?.let {
+                    val enumValuesNode = JsonNodeFactory.instance.arrayNode()
+                    node.set("enum", enumValuesNode)
+                    it.forEach {
+                        enumValuesNode.add(it)
+                    }
+                }
+                ir.format?.let {
+                    node.put("format", it)
+                }
+            }
+
+            is SchemaIr.ArrayOf -> {
+                node.put("type", "array")
+
+                config.defaultArrayFormat?.let {
+                    node.put("format", it)
+                }
+
+                val itemsNode = JsonNodeFactory.instance.objectNode()
+                node.set("items", itemsNode)
+                renderSchema(ir.items, itemsNode, definitionNames, null)
+            }
+
+            is SchemaIr.MapOf -> {
+                // There is no way to specify map in jsonSchema,
+                // So we're going to treat it as type=object with additionalProperties = true,
+                // so that it can hold whatever the map can hold
+                node.put("type", "object")
+                if (ir.keysAreStrings) {
+                    val additionalPropsObject = JsonNodeFactory.instance.objectNode()
+                    node.set("additionalProperties", additionalPropsObject)
+                    renderSchema(ir.values, additionalPropsObject, definitionNames, null)
+                } else {
+                    node.put("additionalProperties", true)
+                }
+            }
+
+            is SchemaIr.Ref -> node.put("\$ref", DEFINITIONS_PREFIX + definitionNames[ir.type])
+
+            is SchemaIr.OneOf -> {
+                val anyOfArrayNode = JsonNodeFactory.instance.arrayNode()
+                node.set("oneOf", anyOfArrayNode)
+                ir.subTypes.forEach {
+                    val thisOneOfNode = JsonNodeFactory.instance.objectNode()
+                    thisOneOfNode.put("\$ref", DEFINITIONS_PREFIX + definitionNames[it])
+                    anyOfArrayNode.add(thisOneOfNode)
+                }
+
+                if (config.useDiscriminatorMapping && ir.typeIds != null) {
+                    val discriminatorNode = JsonNodeFactory.instance.objectNode()
+                    node.set("discriminator", discriminatorNode)
+                    discriminatorNode.put("propertyName", ir.typePropertyName)
+                    val mappingNode = JsonNodeFactory.instance.objectNode()
+                    discriminatorNode.set("mapping", mappingNode)
+                    ir.subTypes.forEachIndexed { i, subType ->
+                        mappingNode.put(ir.typeIds[i], DEFINITIONS_PREFIX + definitionNames[subType])
+                    }
+                }
+            }
+
+            is SchemaIr.ObjectType -> renderObject(ir, node, definitionNames)
+
+            else -> {
+                // Nothing to tell
+            }
+        }
+    }
+
+    private fun renderConstraints(type: String, annotations: SchemaIr.PropertyAnnotations, node: ObjectNode) {
+        when (type) {
+            "string" -> {
+                // @Pattern
+                annotations.pattern?.let {
+                    node.put("pattern", it)
+                }
+
+                // @com.dr.ktjsonschema.JsonSchemaDefault
+                annotations.defaultValue?.let {
+                    node.put("default", it)
+                }
+
+                // @Size
+                annotations.minLength?.let {
+                    node.put("minLength", it)
+                }
+                annotations.maxLength?.let {
+                    node.put("maxLength", it)
+                }
+
+                // If we did not find @Size - check if we should include it anyway
+                if (config.useMinLengthForNotNull && annotations.notNull &&
+                        !node.has("minLength") && !node.has("maxLength")) {
+                    node.put("minLength", 1)
+                }
+            }
+
+            "number", "integer" -> {
+                // @Min, @Max => minumum, maximum
+                annotations.minimum?.let {
+                    node.put("minimum", it)
+                }
+                annotations.maximum?.let {
+                    node.put("maximum", it)
+                }
+                annotations.defaultValue?.let {
+                    if (type == "number")
+                        node.put("default", it.toLong())
+                    else
+                        node.put("default", it.toInt())
+                }
+            }
+
+            "boolean" -> annotations.defaultValue?.let {
+                node.put("default", it.toBoolean())
+            }
+        }
+    }
+
+    private fun renderObject(ir: SchemaIr.ObjectType, node: ObjectNode, definitionNames: Map<SchemaIr.TypeName, String>) {
+        node.put("type", "object")
+        node.put("additionalProperties", false)
+
+        // If class is annotated with com.dr.ktjsonschema.JsonSchemaFormat, we should add it
+        (ir.format ?: config.customType2FormatMapping[ir.type.name])?.let {
+            node.put("format", it)
+        }
+
+        // If class is annotated with com.dr.ktjsonschema.JsonSchemaDescription, we should add it
+        ir.description?.let {
+            node.put("description", it)
+        }
+
+        // If class is annotated with com.dr.ktjsonschema.JsonSchemaTitle, we should add it
+        ir.title?.let {
+            node.put("title", it)
+        }
+
+        val propertiesNode = JsonNodeFactory.instance.objectNode()
+        node.set("properties", propertiesNode)
+
+        ir.polymorphismInfo?.let {
+            val pi = it
+
+            // This class is a child in a polymorphism config..
+            // Set the title = subTypeName
+            node.put("title", pi.subTypeName)
+
+            // must inject the 'type'-param and value as enum with only one possible value
+            val enumValuesNode = JsonNodeFactory.instance.arrayNode()
+            enumValuesNode.add(pi.subTypeName)
+
+            val enumObjectNode = JsonNodeFactory.instance.objectNode()
+            enumObjectNode.put("type", "string")
+            enumObjectNode.set("enum", enumValuesNode)
+            enumObjectNode.put("default", pi.subTypeName)
+
+            if (config.hidePolymorphismTypeProperty) {
+                // Make sure the editor hides this polymorphism-specific property
+                val optionsNode = JsonNodeFactory.instance.objectNode()
+                enumObjectNode.set("options", optionsNode)
+                optionsNode.put("hidden", true)
+            }
+
+            propertiesNode.set(pi.typePropertyName, enumObjectNode)
+
+            getRequiredArrayNode(node).add(pi.typePropertyName)
+        }
+
+        // Used when rendering schema using propertyOrdering as specified here:
+        // https://github.com/jdorn/json-editor#property-ordering
+        var nextPropertyOrderIndex = 1
+
+        ir.properties.forEach {
+            renderProperty(it, node, propertiesNode, nextPropertyOrderIndex, definitionNames)
+            nextPropertyOrderIndex += 1
+        }
+    }
+
+    private fun renderProperty(property: SchemaIr.Property, objectNode: ObjectNode, propertiesNode: ObjectNode,
+                               propertyOrderIndex: Int, definitionNames: Map<SchemaIr.TypeName, String>) {
+        val thisPropertyNode = JsonNodeFactory.instance.objectNode()
+        propertiesNode.set(property.name, thisPropertyNode)
+
+        if (config.usePropertyOrdering) {
+            thisPropertyNode.put("propertyOrder", propertyOrderIndex)
+        }
+
+        // The node describing the value - differs from thisPropertyNode when using oneOf for Option/Optional
+        val mainNode = if (config.useOneOfForOption && property.optional) {
+            // Need to special-case for property using Option/Optional
+            // Should insert oneOf between 'real one' and 'null'
+            val oneOfArray = JsonNodeFactory.instance.arrayNode()
+            thisPropertyNode.set("oneOf", oneOfArray)
+
+            // Create the one used when Option is empty
+            val oneOfNull = JsonNodeFactory.instance.objectNode()
+            oneOfNull.put("type", "null")
+            oneOfNull.put("title", "Not included")
+            oneOfArray.add(oneOfNull)
+
+            // Create the one used when Option is defined with the real value
+            val oneOfReal = JsonNodeFactory.instance.objectNode()
+            oneOfArray.add(oneOfReal)
+            oneOfReal
+        } else {
+            thisPropertyNode
+        }
+
+        renderSchema(property.schema, mainNode, definitionNames, property.annotations)
+
+        if (property.required) {
+            getRequiredArrayNode(objectNode).add(property.name)
+        }
+
+        property.annotations?.let {
+            // Prefer format specified in annotation
+            (it.format ?: config.customType2FormatMapping[it.typeName])?.let {
+                mainNode.put("format", it)
+            }
+
+            // Optionally add description
+            it.description?.let {
+                thisPropertyNode.put("description", it)
+            }
+
+            // Optionally add title - or generate 'pretty-name' based on the property name
+            val title = it.title ?: if (config.autoGenerateTitleForProperties) generateTitleFromPropertyName(property.name) else null
+            title?.let {
+                thisPropertyNode.put("title", it)
+            }
+        }
+    }
+
+    private fun getRequiredArrayNode(objectNode: ObjectNode): ArrayNode {
+        if (objectNode.has("required")) {
+            val node = objectNode.get("required")
+            if (node is ArrayNode)
+                return node
+        }
+        val rn = JsonNodeFactory.instance.arrayNode()
+        objectNode.set("required", rn)
+        return rn
+    }
+}
@@ -0,0 +1,196 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Modifier
+import java.util.*
+import java.util.concurrent.Callable
+
+/**
+ * Writes the schema of each of many classes to its own file in outputDir, where PrebuiltJsonSchemas finds them
+ * once outputDir is on the classpath.
+ *
+ * Exporting is incremental: manifestFile remembers a fingerprint of the bytecode each schema was generated from -
+ * the class and the classes it depends on (supertypes, types of fields, methods and constructors, classes named by
+ * annotations, and mixins), recursively. Classes loaded from a jar are fingerprinted by the jar instead.
+ * Classes whose fingerprint did not change are skipped, the others are generated in parallel, and a schema file is
+ * only rewritten when its content changes. Files of classes no longer exported are deleted.
+ *
+ * The companion holds what the tools exporting schemas (the gradle plugin and the command line tool) share: which
+ * classes are worth exporting, creating the ObjectMapper and config named on their command line, and the settingsId
+ * they stand for.
+ *
+ * @param generator generates the schemas - should use the ObjectMapper and config the schemas will be served with
+ * @param outputDir root of the exported resources
+ * @param manifestFile where fingerprints are kept between exports - should not be in outputDir
+ * @param settingsId identifies the ObjectMapper and config of generator - when it changes, every schema is generated again
+ */
+class JsonSchemaExporter(
+        val generator: JsonSchemaGenerator,
+        val outputDir: File,
+        val manifestFile: File,
+        val settingsId: String
+) {
+
+    companion object {
+        private val SETTINGS_KEY = "settings"
+        private val CLASS_KEY_PREFIX = "class."
+
+        /**
+         * Whether clazz can be a DTO - skips anonymous, synthetic and companion classes, annotations, ...
+         */
+        @JvmStatic
+        fun isExportable(clazz: Class<*>): Boolean {
+            return Modifier.isPublic(clazz.modifiers) && !clazz.isAnonymousClass && !clazz.isLocalClass &&
+                    !clazz.isSynthetic && !clazz.isAnnotation && !clazz.name.endsWith("\$Companion") &&
+                    !clazz.name.endsWith("\$DefaultImpls")
+        }
+
+        /**
+         * A plain ObjectMapper when factoryClassName is null - else the one returned by that class, implementing
+         * Callable<ObjectMapper> with a no-arg constructor
+         */
+        @JvmStatic
+        fun createObjectMapper(factoryClassName: String?, classLoader: ClassLoader): ObjectMapper =
+                if (factoryClassName == null) ObjectMapper() else callFactory<ObjectMapper>(factoryClassName, classLoader)
+
+        /**
+         * @param configName vanillaJsonSchemaDraft4, html5EnabledSchema, or the name of a class implementing
+         *      Callable<JsonSchemaConfig>, with a no-arg constructor
+         */
+        @JvmStatic
+        fun createConfig(configName: String, classLoader: ClassLoader): JsonSchemaConfig {
+            return when (configName) {
+                "vanillaJsonSchemaDraft4" -> JsonSchemaConfig.vanillaJsonSchemaDraft4
+                "html5EnabledSchema" -> JsonSchemaConfig.html5EnabledSchema
+                else -> callFactory<JsonSchemaConfig>(configName, classLoader)
+            }
+        }
+
+        /**
+         * The settingsId of an export using config and objectMapper, created by createConfig(configName) and
+         * createObjectMapper(objectMapperFactory). The classes exported are fingerprinted by the exporter - the
+         * factories are not, so their bytecode is part of it
+         */
+        @JvmStatic
+        fun getSettingsId(config: JsonSchemaConfig, objectMapper: ObjectMapper, objectMapperFactory: String?, configName: String,
+                          classLoader: ClassLoader): String {
+            return listOf(config, objectMapper.version(), objectMapperFactory?.let { getBytecodeHash(it, classLoader) },
+                    getBytecodeHash(configName, classLoader)).joinToString("|")
+        }
+
+        /**
+         * The fingerprint of each class, as kept in manifests: the bytecode of the class and of the classes it depends
+         * on, even when in a jar - see ClassFingerprinter. null when it can't be computed
+         */
+        @JvmStatic
+        fun getFingerprints(objectMapper: ObjectMapper, classes: Collection<Class<*>>): Map<Class<*>, String?> {
+            val fingerprinter = ClassFingerprinter(objectMapper, classes.map { getCodeSource(it) }.filterNotNull().toSet())
+            return classes.associate { it to fingerprinter.getFingerprint(it) }
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        private fun <T> callFactory(className: String, classLoader: ClassLoader): T {
+            val factoryClass = Class.forName(className, true, classLoader)
+            if (!Callable::class.java.isAssignableFrom(factoryClass))
+                throw IllegalArgumentException("Factory $className must implement java.util.concurrent.Callable")
+            val constructor = try {
+                factoryClass.getDeclaredConstructor()
+            } catch (e: NoSuchMethodException) {
+                throw IllegalArgumentException("Factory $className must have a no-arg constructor")
+            }
+            try {
+                return (constructor.newInstance() as Callable<*>).call() as T
+            } catch (e: InvocationTargetException) {
+                // What the constructor threw
+                throw e.targetException
+            }
+        }
+
+        // Hex SHA-256 of the bytecode of the class - null when not found
+        private fun getBytecodeHash(className: String, classLoader: ClassLoader): String? {
+            val input = classLoader.getResourceAsStream(className.replace('.', '/') + ".class") ?: return null
+            return input.use { sha256Hex(it.readBytes()) }
+        }
+
+        private fun getCodeSource(clazz: Class<*>): File? {
+            val location = clazz.protectionDomain?.codeSource?.location ?: return null
+            if (location.protocol != "file")
+                return null
+            return File(location.toURI())
+        }
+    }
+
+    /**
+     * @param written classes whose schema file was created or changed
+     * @param unchanged classes generated again, to the same schema
+     * @param skipped classes not generated again since their fingerprint did not change
+     * @param deleted names of the classes whose schema file was deleted
+     */
+    data class Result(val written: List<Class<*>>, val unchanged: List<Class<*>>, val skipped: List<Class<*>>, val deleted: List<String>)
+
+    fun getFile(className: String): File = File(outputDir, PrebuiltJsonSchemas.getResourceName(className))
+
+    fun export(classes: Collection<Class<*>>): Result {
+        val previousManifest = readManifest()
+        val settingsChanged = previousManifest.getProperty(SETTINGS_KEY) != settingsId
+        val manifest = Properties()
+        manifest.setProperty(SETTINGS_KEY, settingsId)
+
+        val fingerprints = getFingerprints(generator.rootObjectMapper, LinkedHashSet(classes))
+        val toGenerate = ArrayList<Class<*>>()
+        val skipped = ArrayList<Class<*>>()
+        for ((clazz, fingerprint) in fingerprints) {
+            // A class whose fingerprint can't be computed is always generated
+            val key = CLASS_KEY_PREFIX + clazz.name
+            manifest.setProperty(key, fingerprint ?: "")
+
+            if (!settingsChanged && fingerprint != null && fingerprint == previousManifest.getProperty(key) && getFile(clazz.name).isFile)
+                skipped.add(clazz)
+            else
+                toGenerate.add(clazz)
+        }
+
+        val written = ArrayList<Class<*>>()
+        val unchanged = ArrayList<Class<*>>()
+        for ((clazz, schema) in generator.generateJsonSchemasInParallel(toGenerate)) {
+            val bytes = generator.rootObjectMapper.writeValueAsBytes(schema)
+            val file = getFile(clazz.name)
+            if (file.isFile && Arrays.equals(file.readBytes(), bytes)) {
+                unchanged.add(clazz)
+            } else {
+                file.parentFile.mkdirs()
+                file.writeBytes(bytes)
+                written.add(clazz)
+            }
+        }
+
+        val classNames = classes.map { it.name }.toSet()
+        val deleted = ArrayList<String>()
+        for (key in previousManifest.stringPropertyNames()) {
+            if (key.startsWith(CLASS_KEY_PREFIX)) {
+                val className = key.substring(CLASS_KEY_PREFIX.length)
+                if (!classNames.contains(className) && getFile(className).delete())
+                    deleted.add(className)
+            }
+        }
+
+        writeManifest(manifest)
+        return Result(written, unchanged, skipped, deleted)
+    }
+
+    private fun readManifest(): Properties {
+        val manifest = Properties()
+        if (manifestFile.isFile)
+            FileInputStream(manifestFile).use { manifest.load(it) }
+        return manifest
+    }
+
+    private fun writeManifest(manifest: Properties) {
+        manifestFile.absoluteFile.parentFile.mkdirs()
+        FileOutputStream(manifestFile).use { manifest.store(it, null) }
+    }
+}
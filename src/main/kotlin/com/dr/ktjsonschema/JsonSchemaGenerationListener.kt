@@ -0,0 +1,160 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.BeanProperty
+import com.fasterxml.jackson.databind.JavaType
+import com.fasterxml.jackson.databind.jsonFormatVisitors.JsonFormatTypes
+import java.io.PrintStream
+
+/**
+ * Told what JsonSchemaGenerator does while visiting classes - see its listener parameter.
+ * Override the events of interest, the others do nothing.
+ *
+ * Events are delivered on the thread generating the schema, while generating it - a listener used by a generator
+ * running on many threads (e.g. generateJsonSchemasInParallel) must be thread-safe, and should be quick.
+ * depth is how deep in the visited tree the event happened - 0 for the root class.
+ * When no listener is set, nothing is built for any event.
+ */
+open class JsonSchemaGenerationListener {
+
+    // Compiling a class starts - once per schema, or once per class of a bundle
+    open fun onCompileStart(rootClass: Class<*>) {}
+
+    open fun onCompileEnd(rootClass: Class<*>) {}
+
+    // jackson is asked to visit type
+    open fun onVisitStart(type: JavaType, depth: Int) {}
+
+    open fun onVisitEnd(type: JavaType, depth: Int) {}
+
+    // jackson tells the format of the type being visited
+    open fun onFormat(type: JavaType?, format: JsonFormatTypes, depth: Int) {}
+
+    // A property of the object being visited. property is null when jackson only tells us its name and type
+    open fun onProperty(name: String, type: JavaType, property: BeanProperty?, required: Boolean, depth: Int) {}
+
+    // A definition is created for clazz - it is visited next
+    open fun onDefinitionCreated(clazz: Class<*>, depth: Int) {}
+
+    // The definition created for clazz is fully visited
+    open fun onDefinitionEnd(clazz: Class<*>, depth: Int) {}
+
+    // clazz already has a definition in this schema - a $ref to it is used
+    open fun onRefReused(clazz: Class<*>, depth: Int) {}
+
+    // The definition of clazz is copied from a previous schema instead of visiting it - see reuseDefinitions
+    open fun onDefinitionReused(clazz: Class<*>, depth: Int) {}
+
+    // subType is one of the oneOf branches of the polymorphic baseType
+    open fun onPolymorphismBranch(baseType: JavaType, subType: Class<*>, depth: Int) {}
+
+    open fun onPolymorphismBranchEnd(baseType: JavaType, subType: Class<*>, depth: Int) {}
+}
+
+/**
+ * Prints every event, indented by depth - what JsonSchemaGenerator(debug = true) uses.
+ *
+ * @param out Default = System.out - where to print
+ */
+open class PrintingJsonSchemaGenerationListener @JvmOverloads constructor(val out: PrintStream = System.out) : JsonSchemaGenerationListener() {
+
+    override fun onCompileStart(rootClass: Class<*>) = printEvent(0, "compile start - class: ${rootClass.name}")
+
+    override fun onCompileEnd(rootClass: Class<*>) = printEvent(0, "compile end - class: ${rootClass.name}")
+
+    override fun onVisitStart(type: JavaType, depth: Int) = printEvent(depth, "visit start - type: $type")
+
+    override fun onVisitEnd(type: JavaType, depth: Int) = printEvent(depth, "visit end - type: $type")
+
+    override fun onFormat(type: JavaType?, format: JsonFormatTypes, depth: Int) = printEvent(depth, "format: ${format.value()} - type: $type")
+
+    override fun onProperty(name: String, type: JavaType, property: BeanProperty?, required: Boolean, depth: Int) =
+            printEvent(depth, "property: $name - type: $type - required: $required")
+
+    override fun onDefinitionCreated(clazz: Class<*>, depth: Int) = printEvent(depth, "definition created - class: ${clazz.name}")
+
+    override fun onDefinitionEnd(clazz: Class<*>, depth: Int) = printEvent(depth, "definition end - class: ${clazz.name}")
+
+    override fun onRefReused(clazz: Class<*>, depth: Int) = printEvent(depth, "ref reused - class: ${clazz.name}")
+
+    override fun onDefinitionReused(clazz: Class<*>, depth: Int) = printEvent(depth, "definition reused - class: ${clazz.name}")
+
+    override fun onPolymorphismBranch(baseType: JavaType, subType: Class<*>, depth: Int) =
+            printEvent(depth, "polymorphism - base: $baseType - subType: ${subType.name}")
+
+    override fun onPolymorphismBranchEnd(baseType: JavaType, subType: Class<*>, depth: Int) =
+            printEvent(depth, "polymorphism end - base: $baseType - subType: ${subType.name}")
+
+    protected fun printEvent(depth: Int, message: String) {
+        val sb = StringBuilder((depth + 1) * 2 + message.length)
+        for (i in 0..depth) {
+            sb.append("  ")
+        }
+        sb.append(message)
+        out.println(sb)
+    }
+}
+
+// Tells both listeners every event - first, then second
+internal class JsonSchemaGenerationListenerPair(val first: JsonSchemaGenerationListener,
+                                                val second: JsonSchemaGenerationListener) : JsonSchemaGenerationListener() {
+
+    override fun onCompileStart(rootClass: Class<*>) {
+        first.onCompileStart(rootClass)
+        second.onCompileStart(rootClass)
+    }
+
+    override fun onCompileEnd(rootClass: Class<*>) {
+        first.onCompileEnd(rootClass)
+        second.onCompileEnd(rootClass)
+    }
+
+    override fun onVisitStart(type: JavaType, depth: Int) {
+        first.onVisitStart(type, depth)
+        second.onVisitStart(type, depth)
+    }
+
+    override fun onVisitEnd(type: JavaType, depth: Int) {
+        first.onVisitEnd(type, depth)
+        second.onVisitEnd(type, depth)
+    }
+
+    override fun onFormat(type: JavaType?, format: JsonFormatTypes, depth: Int) {
+        first.onFormat(type, format, depth)
+        second.onFormat(type, format, depth)
+    }
+
+    override fun onProperty(name: String, type: JavaType, property: BeanProperty?, required: Boolean, depth: Int) {
+        first.onProperty(name, type, property, required, depth)
+        second.onProperty(name, type, property, required, depth)
+    }
+
+    override fun onDefinitionCreated(clazz: Class<*>, depth: Int) {
+        first.onDefinitionCreated(clazz, depth)
+        second.onDefinitionCreated(clazz, depth)
+    }
+
+    override fun onDefinitionEnd(clazz: Class<*>, depth: Int) {
+        first.onDefinitionEnd(clazz, depth)
+        second.onDefinitionEnd(clazz, depth)
+    }
+
+    override fun onRefReused(clazz: Class<*>, depth: Int) {
+        first.onRefReused(clazz, depth)
+        second.onRefReused(clazz, depth)
+    }
+
+    override fun onDefinitionReused(clazz: Class<*>, depth: Int) {
+        first.onDefinitionReused(clazz, depth)
+        second.onDefinitionReused(clazz, depth)
+    }
+
+    override fun onPolymorphismBranch(baseType: JavaType, subType: Class<*>, depth: Int) {
+        first.onPolymorphismBranch(baseType, subType, depth)
+        second.onPolymorphismBranch(baseType, subType, depth)
+    }
+
+    override fun onPolymorphismBranchEnd(baseType: JavaType, subType: Class<*>, depth: Int) {
+        first.onPolymorphismBranchEnd(baseType, subType, depth)
+        second.onPolymorphismBranchEnd(baseType, subType, depth)
+    }
+}
@@ -5,16 +5,18 @@ import com.dr.ktjsonschema.annotations.JsonSchemaDescription
 import com.dr.ktjsonschema.annotations.JsonSchemaFormat
 import com.dr.ktjsonschema.annotations.JsonSchemaTitle
 import com.fasterxml.jackson.annotation.JsonPropertyDescription
-import com.fasterxml.jackson.annotation.JsonTypeInfo
+import com.fasterxml.jackson.core.JsonGenerator
 import com.fasterxml.jackson.core.JsonParser
 import com.fasterxml.jackson.databind.*
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize
 import com.fasterxml.jackson.databind.introspect.AnnotatedClass
 import com.fasterxml.jackson.databind.jsonFormatVisitors.*
-import com.fasterxml.jackson.databind.node.ArrayNode
-import com.fasterxml.jackson.databind.node.JsonNodeFactory
-import com.fasterxml.jackson.databind.node.ObjectNode
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream
+import java.io.Serializable
+import java.nio.ByteBuffer
 import java.util.*
+import java.util.concurrent.*
 import javax.validation.constraints.*
 
 /**
@@ -25,18 +27,46 @@ import javax.validation.constraints.*
 
 /**
  * Json Schema Generator
+ *
+ * Generating a schema has two phases: the class is visited using jackson, which compiles it into a CompiledSchema
+ * (see SchemaIr), which is then rendered by a JsonSchemaDraft4Renderer using config.
+ * Use compileJsonSchema() to render the same compiled schema in other ways.
+ *
+ * A generator may be used by many threads at once, as long as rootObjectMapper is not reconfigured meanwhile.
+ * Everything used while generating a schema (DefinitionsHandler and the visitors) is created per call and confined
+ * to the calling thread. The only state shared between calls is config (immutable), rootObjectMapper (thread-safe once
+ * configured), cache and the definitions remembered when reuseDefinitions = true (both concurrent, and holding
+ * copies or immutable SchemaIr only).
+ *
  * @param rootObjectMapper pre-configured ObjectMapper
- * @param debug Default = false - set to true if generator should log some debug info while generating the schema
+ * @param debug Default = false - set to true to print what the generator does while generating the schema.
+ *      Same as listener = PrintingJsonSchemaGenerationListener()
  * @param config default = vanillaJsonSchemaDraft4. Please use html5EnabledSchema if generating HTML5 GUI, e.g. using https://github.com/jdorn/json-editor
+ * @param cache Default = null - optional cache of generated schemas. Call clearCaches() if rootObjectMapper is reconfigured after creating the generator
+ * @param reuseDefinitions Default = false - set to true to remember each definition compiled, and use it in later schemas
+ *      instead of visiting that class again. Call clearCaches() if rootObjectMapper is reconfigured after creating the generator
+ * @param persistentCache Default = null - optional on-disk store of generated schemas, kept between restarts. Checked after
+ *      cache, keyed by a fingerprint of the class, config and mapper setup - see PersistentJsonSchemaCache
+ * @param listener Default = null - told what the generator does while generating the schema: types visited, properties,
+ *      definitions created or reused, polymorphism. Wins over debug - see JsonSchemaGenerationListener
+ * @param metrics Default = null - counts what the generator does, and times each schema generated - see JsonSchemaGeneratorMetrics
  */
 class JsonSchemaGenerator @JvmOverloads constructor (
         val rootObjectMapper: ObjectMapper,
         val config:JsonSchemaConfig = JsonSchemaConfig.vanillaJsonSchemaDraft4,
-        val debug:Boolean = false
+        val debug:Boolean = false,
+        val cache:JsonSchemaCache? = null,
+        val reuseDefinitions:Boolean = false,
+        val persistentCache:PersistentJsonSchemaCache? = null,
+        val listener:JsonSchemaGenerationListener? = null,
+        val metrics:JsonSchemaGeneratorMetrics? = null
 ) {
 
     companion object {
         @JvmStatic val JSON_SCHEMA_DRAFT_4_URL = "http://json-schema.org/draft-04/schema#"
+
+        // TODO: Optional::class.java.isAssignableFrom() removed for Java6 compatibility
+        private val OPTIONAL_CLASS_NAMES = setOf("java.util.Optional", "java8.util.Optional")
     }
 
     open class MySerializerProvider {
@@ -51,30 +81,69 @@ class JsonSchemaGenerator @JvmOverloads constructor (
         }
     }
 
-    abstract class EnumSupport {
-        abstract val _node: ObjectNode
+    // Records the enum values and format jackson reports for a string, number, integer or boolean
+    open class EnumSupport {
+        var enumValues: List<String>? = null
+        var valueFormat: String? = null
 
         fun enumTypes(enums: MutableSet<String>?) {
-                val enumValuesNode = JsonNodeFactory.instance.arrayNode()
-                _node.set("enum", enumValuesNode)
-                enums?.forEach {
-                    enumValuesNode.add(it)
-                }
+            enumValues = enums?.toList() ?: emptyList()
+        }
+
+        fun format(format: JsonValueFormat?) {
+            valueFormat = format.toString()
         }
+
+        fun toIr(type: String): SchemaIr = SchemaIr.Primitive(type, valueFormat, enumValues)
     }
 
-    private fun setFormat(node: ObjectNode, format: String): Unit {
-        node.put("format", format)
+    // Collects what the visitors find out about a single location in the schema.
+    // builder is set by the visitors, and invoked once visiting is done
+    class SchemaRecorder(var builder: (() -> SchemaIr)? = null) {
+        fun toIr(): SchemaIr = builder?.invoke() ?: SchemaIr.AnyValue
     }
 
-    data class DefinitionInfo(val ref: String?, val jsonObjectFormatVisitor: JsonObjectFormatVisitor?)
+    data class DefinitionInfo(val ref: Class<*>?, val jsonObjectFormatVisitor: JsonObjectFormatVisitor?)
+
+    data class WorkInProgress(val classInProgress: Class<*>, val recorderInProgress: SchemaRecorder)
+
+    // Definitions compiled by previous calls - only used when reuseDefinitions = true
+    private val definitionStore: ConcurrentHashMap<SchemaIr.TypeName, SchemaIr>? =
+            if (reuseDefinitions) ConcurrentHashMap() else null
+
+    private val introspector = ClassIntrospector(rootObjectMapper)
+
+    private val renderer = JsonSchemaDraft4Renderer(config)
 
-    data class WorkInProgress(val classInProgress: Class<*>, val nodeInProgress: ObjectNode)
+    // null unless listener, debug or metrics are set - events are only built when there is someone to tell
+    private val eventListener: JsonSchemaGenerationListener? = getEventListener()
+
+    // Only used with persistentCache
+    private val fingerprinter: ClassFingerprinter? = if (persistentCache != null) ClassFingerprinter(rootObjectMapper) else null
+
+    private fun getEventListener(): JsonSchemaGenerationListener? {
+        val userListener = listener ?: if (debug) PrintingJsonSchemaGenerationListener() else null
+        val metricsListener = metrics?.listener
+        if (userListener == null || metricsListener == null)
+            return userListener ?: metricsListener
+        return JsonSchemaGenerationListenerPair(userListener, metricsListener)
+    }
+
+    /**
+     * Forgets everything cached by this generator: generated schemas, reused definitions and class info.
+     * Must be called after reconfiguring rootObjectMapper, e.g. after registerSubtypes()
+     */
+    fun clearCaches() {
+        cache?.clear()
+        definitionStore?.clear()
+        introspector.clear()
+        fingerprinter?.clear()
+    }
 
     // Class that manages creating new defenitions or getting $refs to existing definitions
     inner class DefinitionsHandler() {
-        private var class2Ref = HashMap<Class<*>, String>()
-        private val definitionsNode = JsonNodeFactory.instance.objectNode()
+        // Every definition of this schema, in the order they were created
+        private val definitions = LinkedHashMap<SchemaIr.TypeName, SchemaRecorder>()
 
         // Used when 'combining' multiple invocations to getOrCreateDefinition when processing polymorphism.
         private var workInProgress: WorkInProgress? = null
@@ -90,292 +159,253 @@ class JsonSchemaGenerator @JvmOverloads constructor (
             workInProgress = workInProgressStack.removeAt(item)
         }
 
-        fun getDefinitionName(clazz: Class<*>): String {
-            return if (config.useTypeIdForDefinitionName) clazz.name else clazz.simpleName
-        }
-
         // Either creates new definitions or return $ref to existing one
         fun getOrCreateDefinition(clazz: Class<*>,
-                                  objectDefinitionBuilder: (ObjectNode) -> JsonObjectFormatVisitor?)
+                                  depth: Int,
+                                  objectDefinitionBuilder: (SchemaRecorder) -> JsonObjectFormatVisitor?)
                 : DefinitionInfo {
-            val ref = class2Ref[clazz]
-            if (ref != null) {
+            val type = SchemaIr.TypeName.of(clazz)
+            if (definitions.containsKey(type)) {
                 if (workInProgress != null) {
                     // this is a recursive polymorphism call
                     if (clazz != workInProgress!!.classInProgress)
                         throw Exception("Wrong class - working on ${workInProgress!!.classInProgress} - got $clazz")
-                    return DefinitionInfo(null, objectDefinitionBuilder(workInProgress!!.nodeInProgress))
+                    return DefinitionInfo(null, objectDefinitionBuilder(workInProgress!!.recorderInProgress))
                 }
-                return DefinitionInfo(ref, null)
+                eventListener?.onRefReused(clazz, depth)
+                return DefinitionInfo(clazz, null)
             }
-            // new one - must build it
-            var retryCount = 0
-            var shortRef = getDefinitionName(clazz)
-            var longRef = "#/definitions/" + shortRef
-            while (class2Ref.values.contains(longRef)) {
-                retryCount += 1
-                shortRef = clazz.simpleName + "_" + retryCount
-                longRef = "#/definitions/" + clazz.simpleName + "_" + retryCount
+            // Maybe it was compiled by a previous schema
+            if (reuseDefinition(type)) {
+                eventListener?.onDefinitionReused(clazz, depth)
+                return DefinitionInfo(clazz, null)
             }
-            class2Ref.put(clazz, longRef)
 
-            // create definition
-            val node = JsonNodeFactory.instance.objectNode()
+            // new one - must build it
+            val recorder = SchemaRecorder()
+            definitions.put(type, recorder)
+            eventListener?.onDefinitionCreated(clazz, depth)
 
             // When processing polymorphism, we might get multiple recursive calls to getOrCreateDefinition - this is a wau to combine them
-            workInProgress = WorkInProgress(clazz, node)
+            workInProgress = WorkInProgress(clazz, recorder)
 
-            definitionsNode.set(shortRef, node)
-
-            val jsonObjectFormatVisitor = objectDefinitionBuilder.invoke(node)
+            val jsonObjectFormatVisitor = objectDefinitionBuilder.invoke(recorder)
 
             workInProgress = null
 
-            return DefinitionInfo(longRef, jsonObjectFormatVisitor)
+            return DefinitionInfo(clazz, jsonObjectFormatVisitor)
         }
 
-        fun getFinalDefinitionsNode(): ObjectNode? {
-            if (class2Ref.isEmpty())
-                return null
-            return definitionsNode
+        // Creates a new definition for a root class of a bundle, unless it already exists
+        fun getOrCreateRootDefinition(clazz: Class<*>, rootDefinitionBuilder: (SchemaRecorder) -> Unit) {
+            val type = SchemaIr.TypeName.of(clazz)
+            if (definitions.containsKey(type)) {
+                eventListener?.onRefReused(clazz, 0)
+                return
+            }
+            if (reuseDefinition(type)) {
+                eventListener?.onDefinitionReused(clazz, 0)
+                return
+            }
+
+            val recorder = SchemaRecorder()
+            definitions.put(type, recorder)
+            eventListener?.onDefinitionCreated(clazz, 0)
+
+            pushWorkInProgress()
+            rootDefinitionBuilder(recorder)
+            popworkInProgress()
+            eventListener?.onDefinitionEnd(clazz, 0)
+        }
+
+        // Adds a previously compiled definition of type, and the definitions it depends on, to this schema.
+        // Returns false if not possible (not all of them compiled yet)
+        private fun reuseDefinition(type: SchemaIr.TypeName): Boolean {
+            val store = definitionStore ?: return false
+
+            val toReuse = LinkedHashMap<SchemaIr.TypeName, SchemaIr>()
+            if (!collectDefinitions(type, store, toReuse))
+                return false
+
+            // Add in the same order as they would have been created if visited
+            for ((t, definition) in toReuse) {
+                definitions.put(t, SchemaRecorder({ definition }))
+            }
+            return true
+        }
+
+        private fun collectDefinitions(type: SchemaIr.TypeName,
+                                       store: Map<SchemaIr.TypeName, SchemaIr>,
+                                       result: LinkedHashMap<SchemaIr.TypeName, SchemaIr>): Boolean {
+            if (definitions.containsKey(type) || result.containsKey(type))
+                return true
+
+            val definition = store[type] ?: return false
+            result.put(type, definition)
+            return definition.getReferencedTypes().all { collectDefinitions(it, store, result) }
+        }
+
+        // Called once visiting is done
+        fun compile(rootClass: Class<*>?, root: SchemaRecorder?): CompiledSchema {
+            val compiledDefinitions = LinkedHashMap<SchemaIr.TypeName, SchemaIr>()
+            for ((type, recorder) in definitions) {
+                val definition = recorder.toIr()
+                compiledDefinitions.put(type, definition)
+                // Remember it, so that later schemas can reuse it
+                definitionStore?.putIfAbsent(type, definition)
+            }
+            return CompiledSchema(rootClass?.let { SchemaIr.TypeName.of(it) }, root?.toIr(), compiledDefinitions)
         }
     }
 
-    data class PolymorphismInfo(val typePropertyName: String, val subTypeName: String)
+    data class PolymorphismInfo(val typePropertyName: String, val subTypeName: String) : Serializable
+
+    // What we need to know about a property - resolved once per property, see getPropertyInfo()
+    data class PropertyInfo(
+            // Required no matter if jackson reports it as optional: primitive or @NotNull
+            val required: Boolean,
+            // Set if the property is java.util.Optional or java8.util.Optional
+            val isOptional: Boolean,
+            // The type to visit instead of the Optional itself - null if we don't know it
+            val optionalContentType: JavaType?,
+            // null when jackson only tells us the name and type of the property
+            val annotations: SchemaIr.PropertyAnnotations?
+    )
+
+    private fun getPropertyInfo(propertyType: JavaType, prop: BeanProperty?): PropertyInfo {
+        if (prop == null)
+            return createPropertyInfo(propertyType, null)
+        return introspector.getPropertyInfo(prop) { createPropertyInfo(it.type, it) }
+    }
 
-    data class PropertyNode(val main:ObjectNode, val meta:ObjectNode)
+    private fun createPropertyInfo(propertyType: JavaType, prop: BeanProperty?): PropertyInfo {
+        val notNull = prop?.getAnnotation(NotNull::class.java) != null
+
+        val isOptional = propertyType.rawClass.name in OPTIONAL_CLASS_NAMES
+        // Due to Java's Type Erasure, the type behind Option is lost.
+        // To workaround this, we use the same workaround as jackson-scala-module described here:
+        // https://github.com/FasterXML/jackson-module-scala/wiki/FAQ#deserializing-optionint-and-other-primitive-challenges
+        val optionalContentType = if (isOptional && propertyType.containedTypeCount() >= 1)
+            resolveType(propertyType, prop, rootObjectMapper) else null
+
+        return PropertyInfo(
+                required = propertyType.rawClass.isPrimitive || notNull,
+                isOptional = isOptional,
+                optionalContentType = optionalContentType,
+                annotations = if (prop == null) null else getPropertyAnnotations(prop, notNull))
+    }
+
+    private fun getPropertyAnnotations(prop: BeanProperty, notNull: Boolean): SchemaIr.PropertyAnnotations {
+        val size = prop.getAnnotation(Size::class.java)
+        return SchemaIr.PropertyAnnotations(
+                typeName = prop.type.rawClass.name,
+                notNull = notNull,
+                pattern = prop.getAnnotation(Pattern::class.java)?.regexp,
+                minLength = if (size != null && size.min > 0) size.min else null,
+                maxLength = if (size != null && size.max != Integer.MAX_VALUE) size.max else null,
+                minimum = prop.getAnnotation(Min::class.java)?.value,
+                maximum = prop.getAnnotation(Max::class.java)?.value,
+                defaultValue = prop.getAnnotation(JsonSchemaDefault::class.java)?.value,
+                format = prop.getAnnotation(JsonSchemaFormat::class.java)?.value,
+                // @JsonPropertyDescription wins over @JsonSchemaDescription
+                description = prop.getAnnotation(JsonPropertyDescription::class.java)?.value
+                        ?: prop.getAnnotation(JsonSchemaDescription::class.java)?.value,
+                title = prop.getAnnotation(JsonSchemaTitle::class.java)?.value)
+    }
 
     inner class MyJsonFormatVisitorWrapper
     (
             val objectMapper: ObjectMapper,
             val level: Int = 0,
-            val node: ObjectNode = JsonNodeFactory.instance.objectNode(),
+            val recorder: SchemaRecorder = SchemaRecorder(),
             val definitionsHandler: DefinitionsHandler,
             val currentProperty: BeanProperty? // This property may represent the BeanProperty when we're directly processing beneath the property
     ) : JsonFormatVisitorWrapper, MySerializerProvider() {
 
-        inner open class MyJsonObjectFormatVisitor(var thisObjectNode:ObjectNode, var propertiesNode:ObjectNode) : JsonObjectFormatVisitor, MySerializerProvider() {
-            // Used when rendering schema using propertyOrdering as specified here:
-            // https://github.com/jdorn/json-editor#property-ordering
-            var nextPropertyOrderIndex = 1
+        // Set when visiting created a new definition - it is complete once jackson is done visiting
+        var createdDefinition: Class<*>? = null
 
-            fun myPropertyHandler(propertyName:String, propertyType:JavaType, prop: BeanProperty?, jsonPropertyRequired:Boolean): Unit {
-                l("JsonObjectFormatVisitor - $propertyName: $propertyType")
+        // typePropertyName is set when the object is a child in a polymorphism config
+        inner open class MyJsonObjectFormatVisitor(val typePropertyName: String?) : JsonObjectFormatVisitor, MySerializerProvider() {
+            private val properties = LinkedHashMap<String, () -> SchemaIr.Property>()
+
+            fun getProperties(): List<SchemaIr.Property> = properties.values.map { it() }
 
-                if ( propertiesNode.get(propertyName) != null) {
+            fun myPropertyHandler(propertyName:String, propertyType:JavaType, prop: BeanProperty?, jsonPropertyRequired:Boolean): Unit {
+                if (properties.containsKey(propertyName) || propertyName == typePropertyName) {
                     /*if (!config.disableWarnings) {
                       log.warn(s"Ignoring property '$propertyName' in $propertyType since it has already been added, probably as type-property using polymorphism")
                     }*/
                     return
                 }
 
+                val propertyInfo = getPropertyInfo(propertyType, prop)
 
-                // Need to check for Option/Optional-special-case before we know what node to use here.
+                // Check if we should set this property as required:
+                // primitive or @NotNull, or @JsonPropertyRequired is set to true
+                val required = propertyInfo.required || jsonPropertyRequired
+                eventListener?.onProperty(propertyName, propertyType, prop, required, level)
 
-                val thisPropertyNode:PropertyNode = {
-                    val thisPropertyNode = JsonNodeFactory.instance.objectNode()
-                    propertiesNode.set(propertyName, thisPropertyNode)
-
-                    if ( config.usePropertyOrdering ) {
-                        thisPropertyNode.put("propertyOrder", nextPropertyOrderIndex)
-                        nextPropertyOrderIndex += 1
-                    }
-
-                    // Check for Option/Optional-special-case
-                    // TODO: removed for Java6 compatibility
-//                    if ( config.useOneOfForOption &&
-//                            (    Optional::class.java.isAssignableFrom(propertyType.rawClass)) ) {
-                    if (config.useOneOfForOption &&
-                            propertyType.rawClass.name in arrayOf("java.util.Optional", "java8.util.Optional")) {
-                        // Need to special-case for property using Option/Optional
-                        // Should insert oneOf between 'real one' and 'null'
-                        val oneOfArray = JsonNodeFactory.instance.arrayNode()
-                        thisPropertyNode.set("oneOf", oneOfArray)
-
-
-                        // Create the one used when Option is empty
-                        val oneOfNull = JsonNodeFactory.instance.objectNode()
-                        oneOfNull.put("type", "null")
-                        oneOfNull.put("title", "Not included")
-                        oneOfArray.add(oneOfNull)
-
-                        // Create the one used when Option is defined with the real value
-                        val oneOfReal = JsonNodeFactory.instance.objectNode()
-                        oneOfArray.add(oneOfReal)
-
-                        // Return oneOfReal which, from now on, will be used as the node representing this property
-                        PropertyNode(oneOfReal, thisPropertyNode)
-
-                    } else {
-                        // Not special-casing - using thisPropertyNode as is
-                        PropertyNode(thisPropertyNode, thisPropertyNode)
-                    }
-                }.invoke()
+                val childRecorder = SchemaRecorder()
+                properties.put(propertyName, {
+                    SchemaIr.Property(propertyName, childRecorder.toIr(), required, propertyInfo.isOptional, propertyInfo.annotations)
+                })
 
                 // Continue processing this property
 
-                val childVisitor = createChild(thisPropertyNode.main, currentProperty = prop)
-
-                // TODO: removed for Java6 compatibility
-//                if( Optional::class.java.isAssignableFrom(propertyType.rawClass) && propertyType.containedTypeCount() >= 1) {
-                if (propertyType.rawClass.name in arrayOf("java.util.Optional", "java8.util.Optional")
-                        && propertyType.containedTypeCount() >= 1) {
-                    // Property is Java Optional.
-                    //
-                    // Due to Java's Type Erasure, the type behind Option is lost.
-                    // To workaround this, we use the same workaround as jackson-scala-module described here:
-                    // https://github.com/FasterXML/jackson-module-scala/wiki/FAQ#deserializing-optionint-and-other-primitive-challenges
-
-                    val optionType:JavaType = resolveType(propertyType, prop, objectMapper)
-
-                    definitionsHandler.pushWorkInProgress()
-                    objectMapper.acceptJsonFormatVisitor(optionType, childVisitor)
-                    definitionsHandler.popworkInProgress()
-                } else {
-                    definitionsHandler.pushWorkInProgress()
-                    objectMapper.acceptJsonFormatVisitor(propertyType, childVisitor)
-                    definitionsHandler.popworkInProgress()
-                }
-
-                // Check if we should set this property as required
-                val rawClass = propertyType.rawClass
-                val requiredProperty:Boolean = if ( rawClass.isPrimitive ) {
-                    // primitive boolean MUST have a value
-                    true
-                } else if( jsonPropertyRequired) {
-                    // @JsonPropertyRequired is set to true
-                    true
-                } else if(prop?.getAnnotation(NotNull::class.java) != null) {
-                    true
-                } else {
-                    false
-                }
-
-                if ( requiredProperty) {
-                    getRequiredArrayNode(thisObjectNode).add(propertyName)
-                }
-
-                if(prop != null) {
-                    resolvePropertyFormat(prop)?.let {
-                        setFormat(thisPropertyNode.main, it)
-                    }
+                val childVisitor = createChild(childRecorder, currentProperty = prop)
 
-                    // Optionally add description
-                    prop.getAnnotation(JsonSchemaDescription::class.java)?.let {
-                        thisPropertyNode.meta.put("description", it.value)
-                    }
-                    prop.getAnnotation(JsonPropertyDescription::class.java)?.let {
-                        thisPropertyNode.meta.put("description", it.value)
-                    }
-
-                    // Optionally add description
-                    prop.getAnnotation(JsonSchemaTitle::class.java)?.let {
-                        thisPropertyNode.meta.put("title", it.value)
-                    }
-                    if (config.autoGenerateTitleForProperties &&
-                            !thisPropertyNode.meta.has("title")) {
-                        // We should generate 'pretty-name' based on propertyName
-                        thisPropertyNode.meta.put("title", generateTitleFromPropertyName(propertyName))
-                    }
-                }
+                // If the property is Java Optional, we visit the type it holds
+                definitionsHandler.pushWorkInProgress()
+                visitChild(propertyInfo.optionalContentType ?: propertyType, childVisitor)
+                definitionsHandler.popworkInProgress()
             }
 
             override fun property(writer: BeanProperty?) {
-                l("JsonObjectFormatVisitor.property: prop:$writer")
                 if(writer != null) {
                     myPropertyHandler(writer.name, writer.type, writer, jsonPropertyRequired = true)
                 }
             }
 
             override fun property(name: String, handler: JsonFormatVisitable?, propertyTypeHint: JavaType) {
-                l("JsonObjectFormatVisitor.property: name:$name handler:$handler propertyTypeHint:$propertyTypeHint")
                 myPropertyHandler(name, propertyTypeHint, null, jsonPropertyRequired = true)
             }
 
             override fun optionalProperty(writer: BeanProperty?) {
-                l("JsonObjectFormatVisitor.optionalProperty: prop:$writer")
                 if(writer != null) {
                     myPropertyHandler(writer.name, writer.type, writer, jsonPropertyRequired = false)
                 }
             }
 
             override fun optionalProperty(name: String, handler: JsonFormatVisitable?, propertyTypeHint: JavaType) {
-                l("JsonObjectFormatVisitor.optionalProperty: name:$name handler:$handler propertyTypeHint:$propertyTypeHint")
                 myPropertyHandler(name, propertyTypeHint, null, jsonPropertyRequired = false)
             }
 
         }
 
-        fun l(s: String): Unit {
-            if (!debug) return
-
-            var indent = ""
-            for (i in 0..level) {
-                indent += "  "
-            }
-            println(indent + s)
+        // Visits type using the SerializerProvider jackson gave us - ObjectMapper.acceptJsonFormatVisitor would create
+        // a new one, copying every serializer known so far, for each property
+        fun visitChild(type: JavaType?, child: MyJsonFormatVisitorWrapper) {
+            visit(objectMapper, _provider, type, child)
         }
 
-        fun createChild(childNode: ObjectNode, currentProperty: BeanProperty?): MyJsonFormatVisitorWrapper {
-            return MyJsonFormatVisitorWrapper(objectMapper, level + 1, node = childNode, definitionsHandler = definitionsHandler, currentProperty = currentProperty)
+        fun createChild(childRecorder: SchemaRecorder, currentProperty: BeanProperty?): MyJsonFormatVisitorWrapper {
+            return MyJsonFormatVisitorWrapper(objectMapper, level + 1, recorder = childRecorder, definitionsHandler = definitionsHandler, currentProperty = currentProperty)
         }
 
         override fun expectStringFormat(type: JavaType?): JsonStringFormatVisitor {
-            l("expectStringFormat - _type: $type")
-
-            node.put("type", "string")
-
-            if (currentProperty != null) {
-                // Look for @Pattern
-                currentProperty.getAnnotation(Pattern::class.java)?.let {
-                    node.put("pattern", it.regexp)
-                }
-
-                // Look for @com.dr.ktjsonschema.JsonSchemaDefault
-                currentProperty.getAnnotation(JsonSchemaDefault::class.java)?.let {
-                    node.put("default", it.value)
-                }
-
-                // Look for @Size
-                currentProperty.getAnnotation(Size::class.java)?.let {
-                    if (it.min > 0) {
-                        node.put("minLength", it.min)
-                    }
-                    if (it.max != Integer.MAX_VALUE) {
-                        node.put("maxLength", it.max)
-                    }
-                }
-
-                // If we did not find @Size - check if we should include it anyway
-                if (config.useMinLengthForNotNull &&
-                        !node.has("minLength") && !node.has("maxLength")) {
-                    currentProperty.getAnnotation(NotNull::class.java)?.let {
-                        node.put("minLength", 1)
-                    }
-                }
-            }
+            eventListener?.onFormat(type, JsonFormatTypes.STRING, level)
 
-            return object : JsonStringFormatVisitor, EnumSupport() {
-                override val _node: ObjectNode
-                    get() = node
-
-                override fun format(format: JsonValueFormat?) {
-                    setFormat(node, format.toString())
-                }
-            }
+            val visitor = object : JsonStringFormatVisitor, EnumSupport() {}
+            recorder.builder = { visitor.toIr("string") }
+            return visitor
         }
 
         override fun expectArrayFormat(_type: JavaType?): JsonArrayFormatVisitor {
-            l("expectArrayFormat - _type: $_type")
+            eventListener?.onFormat(_type, JsonFormatTypes.ARRAY, level)
 
-            node.put("type", "array")
-
-            config.defaultArrayFormat?.let {
-                setFormat(node, it)
-            }
-
-            val itemsNode = JsonNodeFactory.instance.objectNode()
-            node.set("items", itemsNode)
+            val itemsRecorder = SchemaRecorder()
+            recorder.builder = { SchemaIr.ArrayOf(itemsRecorder.toIr()) }
 
             // We get improved result while processing kotlin-collections by getting elementType this way
             // instead of using the one which we receive in JsonArrayFormatVisitor.itemsFormat
@@ -385,284 +415,142 @@ class JsonSchemaGenerator @JvmOverloads constructor (
             return object : JsonArrayFormatVisitor, MySerializerProvider() {
 
                 override fun itemsFormat(handler: JsonFormatVisitable?, elementType: JavaType?) {
-                    l("expectArrayFormat - handler: $handler - elementType: $elementType - preferredElementType: $preferredElementType")
-                    objectMapper.acceptJsonFormatVisitor(preferredElementType?:elementType, createChild(itemsNode, currentProperty = null))
+                    visitChild(preferredElementType?:elementType, createChild(itemsRecorder, currentProperty = null))
                 }
 
                 override fun itemsFormat(format: JsonFormatTypes?) {
-                    l("itemsFormat - format: $format")
                     if (format != null) {
-                        itemsNode.put("type", format.value())
+                        itemsRecorder.builder = { SchemaIr.Primitive(format.value(), null, null) }
                     }
                 }
             }
         }
 
         override fun expectNullFormat(type: JavaType?): JsonNullFormatVisitor {
-            l("expectNullFormat - _type: $type")
+            eventListener?.onFormat(type, JsonFormatTypes.NULL, level)
             return object : JsonNullFormatVisitor {}
         }
 
         override fun expectNumberFormat(type: JavaType?): JsonNumberFormatVisitor {
-            l("expectNumberFormat")
-
-            node.put("type", "number")
-
-            // Look for @Min, @Max => minumum, maximum
-            currentProperty?.let {
-                it.getAnnotation(Min::class.java)?.let {
-                    node.put("minimum", it.value)
-                }
-                it.getAnnotation(Max::class.java)?.let {
-                    node.put("maximum", it.value)
-                }
-                it.getAnnotation(JsonSchemaDefault::class.java)?.let {
-                    node.put("default", it.value.toLong())
-                }
-            }
-
-            return object : JsonNumberFormatVisitor, EnumSupport() {
-                override val _node: ObjectNode
-                    get() = node
-
-                override fun format(format: JsonValueFormat?) {
-                    setFormat(node, format.toString())
-                }
+            eventListener?.onFormat(type, JsonFormatTypes.NUMBER, level)
 
-                override fun numberType(type: JsonParser.NumberType?) {
-                    l("JsonNumberFormatVisitor.numberType: $type")
-                }
+            val visitor = object : JsonNumberFormatVisitor, EnumSupport() {
+                override fun numberType(type: JsonParser.NumberType?) {}
             }
+            recorder.builder = { visitor.toIr("number") }
+            return visitor
         }
 
         override fun expectAnyFormat(type: JavaType?): JsonAnyFormatVisitor {
+            eventListener?.onFormat(type, JsonFormatTypes.ANY, level)
             return object : JsonAnyFormatVisitor {}
         }
 
         override fun expectMapFormat(type: JavaType?): JsonMapFormatVisitor {
-            l("expectMapFormat - _type: $type")
-
-            // There is no way to specify map in jsonSchema,
-            // So we're going to treat it as type=object with additionalProperties = true,
-            // so that it can hold whatever the map can hold
+            eventListener?.onFormat(type, JsonFormatTypes.OBJECT, level)
 
-
-            val additionalPropsObject = JsonNodeFactory.instance.objectNode()
-
-            node.put("type", "object")
-            node.set("additionalProperties", additionalPropsObject)
+            val valuesRecorder = SchemaRecorder()
 
             // TODO: this is from latest mbknor - is it better?
 //            definitionsHandler.pushWorkInProgress()
-//            val childVisitor = createChild(additionalPropsObject, null)
+//            val childVisitor = createChild(valuesRecorder, null)
 //            objectMapper.acceptJsonFormatVisitor(type!!.containedType(1), childVisitor)
 //            definitionsHandler.popworkInProgress()
 
-            return object : JsonMapFormatVisitor, MySerializerProvider() {
+            val visitor = object : JsonMapFormatVisitor, MySerializerProvider() {
+                var keysAreStrings = true
+
                 override fun valueFormat(handler: JsonFormatVisitable?, valueType: JavaType?) {
-                    l("JsonMapFormatVisitor.valueFormat handler: $handler - valueType: $valueType")
-                    objectMapper.acceptJsonFormatVisitor(valueType, createChild(additionalPropsObject, currentProperty = null))
+                    visitChild(valueType, createChild(valuesRecorder, currentProperty = null))
                 }
 
                 override fun keyFormat(handler: JsonFormatVisitable?, keyType: JavaType?) {
-                    l("JsonMapFormatVisitor.keyFormat handler: $handler - keyType: $keyType")
                     if(keyType != null) {
                         if(!keyType.isTypeOrSubTypeOf(String::class.java)) {
-                            node.put("additionalProperties", true)
+                            keysAreStrings = false
                         }
                     }
                 }
             }
+            recorder.builder = { SchemaIr.MapOf(valuesRecorder.toIr(), visitor.keysAreStrings) }
+            return visitor
         }
 
         override fun expectIntegerFormat(type: JavaType?): JsonIntegerFormatVisitor {
-            node.put("type", "integer")
+            eventListener?.onFormat(type, JsonFormatTypes.INTEGER, level)
 
-            // Look for @Min, @Max => minumum, maximum
-            currentProperty?.let {
-                it.getAnnotation(Min::class.java)?.let {
-                    node.put("minimum", it.value)
-                }
-                it.getAnnotation(Max::class.java)?.let {
-                    node.put("maximum", it.value)
-                }
-                it.getAnnotation(JsonSchemaDefault::class.java)?.let {
-                    node.put("default", it.value.toInt())
-                }
-            }
-            return object : JsonIntegerFormatVisitor, EnumSupport() {
-                override val _node: ObjectNode
-                    get() = node
-
-                override fun format(format: JsonValueFormat?) {
-                    setFormat(node, format.toString())
-                }
-
-                override fun numberType(type: JsonParser.NumberType?) {
-                    l("JsonIntegerFormatVisitor.numberType: $type")
-                }
+            val visitor = object : JsonIntegerFormatVisitor, EnumSupport() {
+                override fun numberType(type: JsonParser.NumberType?) {}
             }
+            recorder.builder = { visitor.toIr("integer") }
+            return visitor
         }
 
         override fun expectBooleanFormat(type: JavaType?): JsonBooleanFormatVisitor {
-            l("expectBooleanFormat")
-
-            node.put("type", "boolean")
+            eventListener?.onFormat(type, JsonFormatTypes.BOOLEAN, level)
 
-            currentProperty?.let {
-                // Look for @com.dr.ktjsonschema.JsonSchemaDefault
-                it.getAnnotation(JsonSchemaDefault::class.java)?.let {
-                    node.put("default", it.value.toBoolean())
-                }
-            }
-
-            return object : JsonBooleanFormatVisitor, EnumSupport() {
-                override val _node: ObjectNode
-                    get() = node
-
-                override fun format(format: JsonValueFormat?) {
-                    setFormat(node, format.toString())
-                }
-            }
-        }
-
-        private fun getRequiredArrayNode(objectNode: ObjectNode): ArrayNode {
-            if (objectNode.has("required")) {
-                val node = objectNode.get("required")
-                if (node is ArrayNode)
-                    return node
-            }
-            val rn = JsonNodeFactory.instance.arrayNode()
-            objectNode.set("required", rn)
-            return rn
-        }
-
-        private fun extractPolymorphismInfo(_type: JavaType): PolymorphismInfo? {
-            // look for @JsonTypeInfo
-            val ac = AnnotatedClass.construct(_type, objectMapper.deserializationConfig)
-            val jsonTypeInfo: JsonTypeInfo? = ac.annotations?.get(JsonTypeInfo::class.java)
-
-            if (jsonTypeInfo != null) {
-                if (jsonTypeInfo.include != JsonTypeInfo.As.PROPERTY)
-                    throw Exception("We only support polymorphism using jsonTypeInfo.include() == JsonTypeInfo.As.PROPERTY")
-                if (jsonTypeInfo.use != JsonTypeInfo.Id.NAME)
-                    throw Exception("We only support polymorphism using jsonTypeInfo.use == JsonTypeInfo.Id.NAME")
-
-                val propertyName = jsonTypeInfo.property
-                val subTypeName: String = objectMapper.subtypeResolver
-                        .collectAndResolveSubtypesByClass(objectMapper.deserializationConfig, ac)
-                        .filter { it.type == _type.rawClass }
-                        .find { it -> true } // find first
-                        ?.name!!
-                return PolymorphismInfo(propertyName, subTypeName)
-            }
-            return null
+            val visitor = object : JsonBooleanFormatVisitor, EnumSupport() {}
+            recorder.builder = { visitor.toIr("boolean") }
+            return visitor
         }
 
         override fun expectObjectFormat(_type: JavaType): JsonObjectFormatVisitor? {
-            val ac = AnnotatedClass.construct(_type, objectMapper.deserializationConfig)
-            val resolvedSubTypes = objectMapper.subtypeResolver.collectAndResolveSubtypesByClass(objectMapper.deserializationConfig, ac)
-
-            val subTypes = resolvedSubTypes.map { it -> it.type }.filter { it ->
-                _type.rawClass.isAssignableFrom(it) && _type.rawClass != it }
+            eventListener?.onFormat(_type, JsonFormatTypes.OBJECT, level)
+            val classInfo = introspector.getClassInfo(_type)
+            val subTypes = classInfo.subTypes
 
             if (subTypes.isNotEmpty()) {
                 //l(s"polymorphism - subTypes: $subTypes")
 
-                val anyOfArrayNode = JsonNodeFactory.instance.arrayNode()
-                node.set("oneOf", anyOfArrayNode)
-
                 subTypes.forEach {
                     val subType = it
 
-                    l("polymorphism - subType: $subType")
+                    eventListener?.onPolymorphismBranch(_type, subType, level)
 
-                    val definitionInfo: DefinitionInfo = definitionsHandler.getOrCreateDefinition(subType, {
+                    definitionsHandler.getOrCreateDefinition(subType, level + 1, {
                         val childVisitor = createChild(it, currentProperty = null)
-                        objectMapper.acceptJsonFormatVisitor(subType, childVisitor)
+                        visitChild(objectMapper.constructType(subType), childVisitor)
+                        eventListener?.onDefinitionEnd(subType, level + 1)
                         null
                     })
 
-                    val thisOneOfNode = JsonNodeFactory.instance.objectNode()
-                    thisOneOfNode.put("\$ref", definitionInfo.ref)
-                    anyOfArrayNode.add(thisOneOfNode)
-
+                    eventListener?.onPolymorphismBranchEnd(_type, subType, level)
                 }
+                val subTypeInfos = subTypes.map { introspector.getClassInfo(objectMapper.constructType(it)).polymorphismInfo }
+                val typePropertyName = subTypeInfos[0]?.typePropertyName
+                val typeIds = if (typePropertyName != null && subTypeInfos.all { it?.typePropertyName == typePropertyName })
+                    subTypeInfos.map { it!!.subTypeName } else null
+                val subTypeNames = subTypes.map { SchemaIr.TypeName.of(it) }
+                recorder.builder = { SchemaIr.OneOf(subTypeNames, if (typeIds != null) typePropertyName else null, typeIds) }
 
                 return null // Returning null to stop jackson from visiting this object since we have done it manually
 
             } else {
 
-                val objectBuilder: (ObjectNode)->JsonObjectFormatVisitor? = {
-                    thisObjectNode ->
-                    {
-                        thisObjectNode.put("type", "object")
-                        thisObjectNode.put("additionalProperties", false)
-
-                        // If class is annotated with com.dr.ktjsonschema.JsonSchemaFormat, we should add it
-                        val ac_i = AnnotatedClass.construct(_type, objectMapper.deserializationConfig)
-                        resolvePropertyFormat(_type, objectMapper)?.let {
-                            setFormat(thisObjectNode, it)
-                        }
-
-                        // If class is annotated with com.dr.ktjsonschema.JsonSchemaDescription, we should add it
-                        ac_i.annotations.get(JsonSchemaDescription::class.java)?.let {
-                            thisObjectNode.put("description", it.value)
-                        }
-                        ac_i.annotations.get(JsonPropertyDescription::class.java)?.let {
-                            thisObjectNode.put("description", it.value)
-                        }
-
-                        // If class is annotated with com.dr.ktjsonschema.JsonSchemaTitle, we should add it
-                        ac_i.annotations.get(JsonSchemaTitle::class.java)?.let {
-                            thisObjectNode.put("title", it.value)
-                        }
-
-                        val propertiesNode = JsonNodeFactory.instance.objectNode()
-                        thisObjectNode.set("properties", propertiesNode)
-
-                        extractPolymorphismInfo(_type)?.let {
-                            val pi = it
-
-                            // This class is a child in a polymorphism config..
-                            // Set the title = subTypeName
-                            thisObjectNode.put("title", pi.subTypeName)
-
-                            // must inject the 'type'-param and value as enum with only one possible value
-                            val enumValuesNode = JsonNodeFactory.instance.arrayNode()
-                            enumValuesNode.add(pi.subTypeName)
-
-                            val enumObjectNode = JsonNodeFactory.instance.objectNode()
-                            enumObjectNode.put("type", "string")
-                            enumObjectNode.set("enum", enumValuesNode)
-                            enumObjectNode.put("default", pi.subTypeName)
-
-                            if (config.hidePolymorphismTypeProperty) {
-                                // Make sure the editor hides this polymorphism-specific property
-                                val optionsNode = JsonNodeFactory.instance.objectNode()
-                                enumObjectNode.set("options", optionsNode)
-                                optionsNode.put("hidden", true)
-                            }
-
-                            propertiesNode.set(pi.typePropertyName, enumObjectNode)
-
-                            getRequiredArrayNode(thisObjectNode).add(pi.typePropertyName)
-                        }
-
-                        MyJsonObjectFormatVisitor(thisObjectNode, propertiesNode)
-                    }.invoke()
+                val clazz = _type.rawClass
+                val objectBuilder: (SchemaRecorder)->JsonObjectFormatVisitor? = {
+                    objectRecorder ->
+                    val polymorphismInfo = classInfo.polymorphismInfo
+                    val objectVisitor = MyJsonObjectFormatVisitor(polymorphismInfo?.typePropertyName)
+                    objectRecorder.builder = {
+                        SchemaIr.ObjectType(SchemaIr.TypeName.of(clazz), classInfo.format, classInfo.description, classInfo.title,
+                                polymorphismInfo, objectVisitor.getProperties())
+                    }
+                    objectVisitor
                 }
 
 
                 if ( level == 0) {
                     // This is the first level - we must not use definitions
-                    return objectBuilder(node)
+                    return objectBuilder(recorder)
                 } else {
-                    val definitionInfo: DefinitionInfo = definitionsHandler.getOrCreateDefinition(_type.rawClass, objectBuilder)
+                    val definitionInfo: DefinitionInfo = definitionsHandler.getOrCreateDefinition(clazz, level, objectBuilder)
 
-                    definitionInfo.ref?.let {
+                    if (definitionInfo.ref != null) {
                         // Must add ref to def at "this location"
-                        node.put("\$ref", it)
+                        recorder.builder = { SchemaIr.Ref(SchemaIr.TypeName.of(clazz)) }
+                        if (definitionInfo.jsonObjectFormatVisitor != null)
+                            createdDefinition = clazz
                     }
 
                     return definitionInfo.jsonObjectFormatVisitor
@@ -671,20 +559,8 @@ class JsonSchemaGenerator @JvmOverloads constructor (
         }
     }
 
-    fun generateTitleFromPropertyName(propertyName: String): String {
-        // Code found here: http://stackoverflow.com/questions/2559759/how-do-i-convert-camelcase-into-human-readable-names-in-java
-        val s = propertyName.replace(
-                Regex(String.format("%s|%s|%s",
-                        "(?<=[A-Z])(?=[A-Z][a-z])",
-                        "(?<=[^A-Z])(?=[A-Z])",
-                        "(?<=[A-Za-z])(?=[^A-Za-z])"
-                )),
-                " "
-        )
-
-        // Make the first letter uppercase
-        return s.substring(0, 1).toUpperCase() + s.substring(1)
-    }
+    fun generateTitleFromPropertyName(propertyName: String): String =
+            renderer.generateTitleFromPropertyName(propertyName)
 
     fun resolvePropertyFormat(_type: JavaType, objectMapper: ObjectMapper): String? {
         val ac = AnnotatedClass.construct(_type, objectMapper.deserializationConfig)
@@ -721,35 +597,216 @@ class JsonSchemaGenerator @JvmOverloads constructor (
             generateJsonSchema(clazz, null, null)
 
     fun <T> generateJsonSchema(clazz: Class<T>, title: String?, description: String?): JsonNode {
-        val rootNode = JsonNodeFactory.instance.objectNode()
+        if (cache == null)
+            return loadOrGenerateJsonSchema(clazz, title, description)
 
-        // Specify that this is a v4 json schema
-        rootNode.put("\$schema", JSON_SCHEMA_DRAFT_4_URL)
-        //rootNode.put("id", "http://my.site/myschema#")
+        val key = JsonSchemaCache.Key(clazz, title, description)
+        cache.get(key)?.let {
+            return it
+        }
+        val schema = loadOrGenerateJsonSchema(clazz, title, description)
+        cache.put(key, schema)
+        return schema
+    }
 
-        // Add schema title
-        if (title == null) {
-            rootNode.put("title", generateTitleFromPropertyName(clazz.simpleName))
-        } else {
-            rootNode.put("title", title)
+    // Reads the schema from persistentCache when stored by a previous run - else generates it, and stores it there
+    private fun loadOrGenerateJsonSchema(clazz: Class<*>, title: String?, description: String?): JsonNode {
+        val key = getPersistentCacheKey(clazz, title, description) ?: return doGenerateJsonSchema(clazz, title, description)
+        persistentCache!!.get(key)?.let {
+            return rootObjectMapper.readTree(ByteBufferBackedInputStream(it))
         }
+        val schema = doGenerateJsonSchema(clazz, title, description)
+        persistentCache.put(key, rootObjectMapper.writeValueAsBytes(schema))
+        return schema
+    }
 
-        // Maybe set schema description
-        description?.let {
-            rootNode.put("description", it)
-            // If root class is annotated with @com.dr.ktjsonschema.JsonSchemaDescription, it will later override this description
+    // The schema as written by rootObjectMapper: the bytes stored in persistentCache - else generated, and stored there
+    private fun loadOrGenerateEncodedJsonSchema(clazz: Class<*>, title: String?, description: String?): ByteArray {
+        val key = getPersistentCacheKey(clazz, title, description)
+                ?: return rootObjectMapper.writeValueAsBytes(doGenerateJsonSchema(clazz, title, description))
+        val stored = persistentCache!!.get(key) ?: return generateAndStoreJsonSchema(clazz, title, description, key)
+        val bytes = ByteArray(stored.remaining())
+        stored.get(bytes)
+        return bytes
+    }
+
+    private fun generateAndStoreJsonSchema(clazz: Class<*>, title: String?, description: String?, key: String): ByteArray {
+        val bytes = rootObjectMapper.writeValueAsBytes(doGenerateJsonSchema(clazz, title, description))
+        persistentCache!!.put(key, bytes)
+        return bytes
+    }
+
+    // null without persistentCache, or when the class can't be fingerprinted - then it is never stored
+    private fun getPersistentCacheKey(clazz: Class<*>, title: String?, description: String?): String? {
+        val fingerprint = fingerprinter?.getFingerprint(clazz) ?: return null
+        val serializationConfig = rootObjectMapper.serializationConfig
+        val mapperFeatures = MapperFeature.values().filter { serializationConfig.isEnabled(it) }
+        val parts = listOf(clazz.name, fingerprint, title, description, config.toString(), rootObjectMapper.version().toString(),
+                serializationConfig.serializationFeatures.toString(), mapperFeatures.toString(), persistentCache!!.settingsId)
+        return sha256Hex(rootObjectMapper.writeValueAsBytes(parts))
+    }
+
+    private fun doGenerateJsonSchema(clazz: Class<*>, title: String?, description: String?): JsonNode {
+        if (metrics == null)
+            return renderer.render(compileJsonSchema(clazz), title, description)
+
+        val start = System.nanoTime()
+        val schema = renderer.render(compileJsonSchema(clazz), title, description)
+        metrics.recordGeneration(clazz, System.nanoTime() - start)
+        return schema
+    }
+
+    /**
+     * Returns the same schema as generateJsonSchema(clazz, title, description), written by rootObjectMapper as UTF-8,
+     * together with its gzipped form and an ETag.
+     *
+     * When using a cache, the encoded schema is kept with the cached one - so serving it again serializes nothing.
+     * Else, with a persistentCache, the bytes stored there are used as they are.
+     */
+    @JvmOverloads
+    fun generateEncodedJsonSchema(clazz: Class<*>, title: String? = null, description: String? = null): EncodedJsonSchema {
+        if (cache == null)
+            return EncodedJsonSchema(loadOrGenerateEncodedJsonSchema(clazz, title, description))
+
+        val key = JsonSchemaCache.Key(clazz, title, description)
+        cache.getEncoded(key)?.let {
+            return it
         }
+        val encoded = EncodedJsonSchema(rootObjectMapper.writeValueAsBytes(generateJsonSchema(clazz, title, description)))
+        cache.putEncoded(key, encoded)
+        return encoded
+    }
 
+    /**
+     * Writes the same schema as generateJsonSchema(clazz, title, description) to generator, without building the
+     * whole document first - see JsonSchemaDraft4Renderer.write(). A schema found in cache is written from there,
+     * but schemas written this way are not added to it.
+     * With a persistentCache, the bytes stored there are copied to generator token by token - a schema not stored yet
+     * is generated and stored first.
+     *
+     * The generator is neither flushed nor closed.
+     */
+    @JvmOverloads
+    fun writeJsonSchema(clazz: Class<*>, generator: JsonGenerator, title: String? = null, description: String? = null) {
+        cache?.get(JsonSchemaCache.Key(clazz, title, description))?.let {
+            (it as JsonSerializable).serialize(generator, null)
+            return
+        }
+        val key = getPersistentCacheKey(clazz, title, description)
+        if (key != null) {
+            val stored = persistentCache!!.get(key) ?: ByteBuffer.wrap(generateAndStoreJsonSchema(clazz, title, description, key))
+            rootObjectMapper.factory.createParser(ByteBufferBackedInputStream(stored)).use {
+                it.nextToken()
+                generator.copyCurrentStructure(it)
+            }
+            return
+        }
+        val start = if (metrics != null) System.nanoTime() else 0L
+        renderer.write(compileJsonSchema(clazz), title, description, generator)
+        metrics?.recordGeneration(clazz, System.nanoTime() - start)
+    }
 
+    /**
+     * Visits clazz, and everything it refers to, without applying config.
+     *
+     * The result can be rendered by any JsonSchemaRenderer, any number of times.
+     */
+    fun compileJsonSchema(clazz: Class<*>): CompiledSchema {
         val definitionsHandler = DefinitionsHandler()
-        val rootVisitor = MyJsonFormatVisitorWrapper(rootObjectMapper, node = rootNode, definitionsHandler = definitionsHandler, currentProperty = null)
-        rootObjectMapper.acceptJsonFormatVisitor(clazz, rootVisitor)
+        val rootRecorder = SchemaRecorder()
+        val rootVisitor = MyJsonFormatVisitorWrapper(rootObjectMapper, recorder = rootRecorder, definitionsHandler = definitionsHandler, currentProperty = null)
+        eventListener?.onCompileStart(clazz)
+        visit(rootObjectMapper, null, rootObjectMapper.constructType(clazz), rootVisitor)
+        eventListener?.onCompileEnd(clazz)
+
+        return definitionsHandler.compile(clazz, rootRecorder)
+    }
+
+    // Lets jackson visit type, telling eventListener. Uses provider if given - else objectMapper creates one
+    private fun visit(objectMapper: ObjectMapper, provider: SerializerProvider?, type: JavaType?, visitor: MyJsonFormatVisitorWrapper) {
+        val listener = eventListener
+        if (listener == null || type == null) {
+            accept(objectMapper, provider, type, visitor)
+            return
+        }
+        listener.onVisitStart(type, visitor.level)
+        accept(objectMapper, provider, type, visitor)
+        visitor.createdDefinition?.let { listener.onDefinitionEnd(it, visitor.level) }
+        listener.onVisitEnd(type, visitor.level)
+    }
+
+    private fun accept(objectMapper: ObjectMapper, provider: SerializerProvider?, type: JavaType?, visitor: MyJsonFormatVisitorWrapper) {
+        if (provider is DefaultSerializerProvider && type != null)
+            provider.acceptJsonFormatVisitor(type, visitor)
+        else
+            objectMapper.acceptJsonFormatVisitor(type, visitor)
+    }
 
-        definitionsHandler.getFinalDefinitionsNode()?.let {
-            rootNode.set("definitions", it)
+    /**
+     * Generates a separate schema for each class, using many threads.
+     *
+     * The result is the same as calling generateJsonSchema for each class.
+     * @param executor Default = null - executor to run on (e.g. ForkJoinPool.commonPool()).
+     *      If null, a temporary pool with one thread per available processor is used.
+     * @return the schema of each class, in the order the classes were given
+     */
+    @JvmOverloads
+    fun generateJsonSchemasInParallel(classes: Collection<Class<*>>, executor: Executor? = null): Map<Class<*>, JsonNode> {
+        val ownExecutor = if (executor == null) Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()) else null
+        try {
+            val tasks = LinkedHashMap<Class<*>, FutureTask<JsonNode>>()
+            classes.forEach {
+                clazz ->
+                if (!tasks.containsKey(clazz)) {
+                    val task = FutureTask<JsonNode>(Callable { generateJsonSchema(clazz) })
+                    tasks.put(clazz, task)
+                    (executor ?: ownExecutor!!).execute(task)
+                }
+            }
+
+            val schemas = LinkedHashMap<Class<*>, JsonNode>()
+            for ((clazz, task) in tasks) {
+                try {
+                    schemas.put(clazz, task.get())
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+            return schemas
+        } finally {
+            ownExecutor?.shutdown()
+        }
+    }
+
+    /**
+     * Generates a single schema document for many classes.
+     *
+     * Each class becomes a definition, and all of them share the same "definitions" object - so a type used by
+     * many classes is only included once. Definition names are picked in the order the classes are given,
+     * using the same naming rules as generateJsonSchema.
+     */
+    fun generateJsonSchemas(classes: Collection<Class<*>>): JsonSchemaBundle {
+        val compiledSchema = compileJsonSchemas(classes)
+        val refs = renderer.getDefinitionRefs(compiledSchema)
+        return JsonSchemaBundle(renderer.render(compiledSchema, null, null), classes.associate { it to refs[SchemaIr.TypeName.of(it)]!! })
+    }
+
+    /**
+     * Compiles many classes into one schema, holding a definition for each of them - see generateJsonSchemas()
+     */
+    fun compileJsonSchemas(classes: Collection<Class<*>>): CompiledSchema {
+        val definitionsHandler = DefinitionsHandler()
+        classes.forEach {
+            clazz ->
+            eventListener?.onCompileStart(clazz)
+            definitionsHandler.getOrCreateRootDefinition(clazz, {
+                val rootVisitor = MyJsonFormatVisitorWrapper(rootObjectMapper, recorder = it, definitionsHandler = definitionsHandler, currentProperty = null)
+                visit(rootObjectMapper, null, rootObjectMapper.constructType(clazz), rootVisitor)
+            })
+            eventListener?.onCompileEnd(clazz)
         }
 
-        return rootNode
+        return definitionsHandler.compile(null, null)
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.JavaType
+import com.fasterxml.jackson.databind.jsonFormatVisitors.JsonFormatTypes
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * What JsonSchemaGenerator did, and how long generating the schema of each root class took - see its metrics parameter.
+ *
+ * Only schemas actually generated are timed - not the ones found in cache or persistentCache, whose hits and misses
+ * are counted by the caches themselves (see JsonSchemaCache.hitCount and PersistentJsonSchemaCache.hitCount).
+ * Latencies are kept by class name, so the metrics never hold on to the classes (nor their ClassLoaders).
+ * Thread-safe, and may be shared by many generators.
+ */
+open class JsonSchemaGeneratorMetrics {
+
+    // Told of every schema generated - e.g. to feed a metrics library
+    interface GenerationObserver {
+        fun onGeneration(rootClass: Class<*>, nanos: Long)
+    }
+
+    private val typesVisitedCount = AtomicLong()
+    private val visitorInvocationCount = AtomicLong()
+    private val definitionsCreatedCount = AtomicLong()
+    private val refsReusedCount = AtomicLong()
+    private val definitionsReusedCount = AtomicLong()
+
+    // Class name -> latency
+    private val latencies = ConcurrentHashMap<String, LatencyHistogram>()
+    private val observers = CopyOnWriteArrayList<GenerationObserver>()
+
+    // Types jackson described to the generator (string, number, object, ...)
+    val typesVisited: Long
+        get() = typesVisitedCount.get()
+
+    // Calls to ObjectMapper.acceptJsonFormatVisitor - a type with a custom serializer may not describe itself
+    val visitorInvocations: Long
+        get() = visitorInvocationCount.get()
+
+    val definitionsCreated: Long
+        get() = definitionsCreatedCount.get()
+
+    // $refs to a definition already in the same schema
+    val refsReused: Long
+        get() = refsReusedCount.get()
+
+    // Definitions copied from a previous schema instead of visiting their class - see reuseDefinitions
+    val definitionsReused: Long
+        get() = definitionsReusedCount.get()
+
+    // The generation latency of each root class generated so far, by class name
+    fun getLatencies(): Map<String, LatencyHistogram> = Collections.unmodifiableMap(latencies)
+
+    fun getLatency(rootClass: Class<*>): LatencyHistogram? = latencies[rootClass.name]
+
+    fun addObserver(observer: GenerationObserver) {
+        observers.add(observer)
+    }
+
+    fun removeObserver(observer: GenerationObserver) {
+        observers.remove(observer)
+    }
+
+    open fun recordGeneration(rootClass: Class<*>, nanos: Long) {
+        var histogram = latencies[rootClass.name]
+        if (histogram == null) {
+            histogram = LatencyHistogram()
+            histogram = latencies.putIfAbsent(rootClass.name, histogram) ?: histogram
+        }
+        histogram.record(nanos)
+        observers.forEach { it.onGeneration(rootClass, nanos) }
+    }
+
+    fun reset() {
+        typesVisitedCount.set(0)
+        visitorInvocationCount.set(0)
+        definitionsCreatedCount.set(0)
+        refsReusedCount.set(0)
+        definitionsReusedCount.set(0)
+        latencies.clear()
+    }
+
+    // Counts the events of the generators using these metrics
+    internal val listener: JsonSchemaGenerationListener = object : JsonSchemaGenerationListener() {
+        override fun onVisitStart(type: JavaType, depth: Int) {
+            visitorInvocationCount.incrementAndGet()
+        }
+
+        override fun onFormat(type: JavaType?, format: JsonFormatTypes, depth: Int) {
+            typesVisitedCount.incrementAndGet()
+        }
+
+        override fun onDefinitionCreated(clazz: Class<*>, depth: Int) {
+            definitionsCreatedCount.incrementAndGet()
+        }
+
+        override fun onRefReused(clazz: Class<*>, depth: Int) {
+            refsReusedCount.incrementAndGet()
+        }
+
+        override fun onDefinitionReused(clazz: Class<*>, depth: Int) {
+            definitionsReusedCount.incrementAndGet()
+        }
+    }
+}
+
+/**
+ * Lock-free histogram of latencies, in buckets doubling in size: bucket 0 holds latencies under 1 microsecond,
+ * bucket i those under 2^i microseconds, and the last one anything longer.
+ */
+class LatencyHistogram {
+
+    companion object {
+        @JvmStatic val BUCKET_COUNT = 32
+
+        // Exclusive upper bound of bucket i
+        @JvmStatic fun getBucketUpperBoundNanos(i: Int): Long =
+                if (i >= BUCKET_COUNT - 1) Long.MAX_VALUE else 1000L shl i
+    }
+
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val countValue = AtomicLong()
+    private val totalValue = AtomicLong()
+    private val maxValue = AtomicLong()
+
+    val count: Long
+        get() = countValue.get()
+
+    val totalNanos: Long
+        get() = totalValue.get()
+
+    val maxNanos: Long
+        get() = maxValue.get()
+
+    val meanNanos: Double
+        get() {
+            val count = countValue.get()
+            return if (count == 0L) 0.0 else totalValue.get().toDouble() / count
+        }
+
+    fun record(nanos: Long) {
+        val micros = Math.max(nanos, 0L) / 1000
+        val bucket = if (micros == 0L) 0 else 64 - java.lang.Long.numberOfLeadingZeros(micros)
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1))
+        countValue.incrementAndGet()
+        totalValue.addAndGet(nanos)
+        while (true) {
+            val max = maxValue.get()
+            if (nanos <= max || maxValue.compareAndSet(max, nanos))
+                break
+        }
+    }
+
+    fun getBucketCounts(): LongArray {
+        val counts = LongArray(BUCKET_COUNT)
+        for (i in counts.indices) {
+            counts[i] = buckets.get(i)
+        }
+        return counts
+    }
+
+    // Upper bound of the bucket holding the given quantile (e.g. 0.99), capped by maxNanos - 0 when empty
+    fun getPercentileNanos(quantile: Double): Long {
+        val counts = getBucketCounts()
+        val total = counts.sum()
+        if (total == 0L)
+            return 0
+        val rank = Math.max(1L, Math.ceil(quantile * total).toLong())
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= rank)
+                return Math.min(getBucketUpperBoundNanos(i), maxNanos)
+        }
+        return maxNanos
+    }
+}
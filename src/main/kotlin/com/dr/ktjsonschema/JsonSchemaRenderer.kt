@@ -0,0 +1,15 @@
+package com.dr.ktjsonschema
+
+/**
+ * Turns a CompiledSchema into a schema document.
+ *
+ * A CompiledSchema holds no JsonSchemaConfig choices, so the same one can be rendered by many renderers.
+ */
+interface JsonSchemaRenderer<out T> {
+
+    /**
+     * @param title title of the schema - ignored when the schema was compiled for many classes
+     * @param description description of the schema - ignored when the schema was compiled for many classes
+     */
+    fun render(schema: CompiledSchema, title: String?, description: String?): T
+}
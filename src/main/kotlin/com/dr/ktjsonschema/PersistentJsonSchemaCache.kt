@@ -0,0 +1,202 @@
+package com.dr.ktjsonschema
+
+import java.io.Closeable
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.CRC32
+
+/**
+ * On-disk store of generated schemas, kept between restarts - see JsonSchemaGenerator's persistentCache.
+ *
+ * Entries are appended to a single file, never rewritten. When opened, the file is memory-mapped and indexed, so a
+ * schema generated by a previous run is read straight from the mapping - no class is introspected.
+ * The generator keys each entry by a fingerprint of the bytecode of the class and of the classes it depends on
+ * (mixins and subtypes known to its ObjectMapper included), of its config, and of the version and the enabled
+ * serialization and mapper features of its ObjectMapper - so a changed class gets a new entry, and stale ones are
+ * simply never read again. Delete the file to reclaim their space.
+ *
+ * Classes loaded from a jar are fingerprinted by the jar: changing it invalidates all of them, but only their
+ * supertypes, mixins and subtypes are looked at beyond it. Modules of the ObjectMapper are not part of the key:
+ * change settingsId (or the file) when changing them, or when upgrading a library a schema depends on.
+ *
+ * Record format: key length, value length, CRC32 of the value (ints), key (UTF-8), value (the schema, as UTF-8 JSON).
+ * An incomplete or corrupt record at the end of the file (e.g. after a crash while appending) is cut off when opening.
+ *
+ * Many caches - in this process or others - may use the same file: opening and appending hold a lock on it.
+ *
+ * @param file where entries are kept - created if missing
+ * @param settingsId Default = "" - identifies what the generator depends on beside its classes and config
+ */
+class PersistentJsonSchemaCache @JvmOverloads constructor(val file: File, val settingsId: String = "") : Closeable {
+
+    companion object {
+        private val MAGIC = 0x4b4a5343 // "KJSC"
+        private val VERSION = 1
+        private val HEADER_SIZE = 8
+        private val RECORD_HEADER_SIZE = 12
+
+        // Canonical path -> what the caches of this JVM using that file synchronize on. File locks are held by the
+        // whole JVM, so they only keep other processes out
+        private val fileMonitors = ConcurrentHashMap<String, Any>()
+    }
+
+    private val randomAccessFile: RandomAccessFile
+    private val channel: FileChannel
+    private val fileMonitor: Any
+
+    // Key -> the schema, as UTF-8 JSON. Slices of the mapping for entries read when opening, heap buffers for new ones
+    private val entries = ConcurrentHashMap<String, ByteBuffer>()
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    init {
+        file.absoluteFile.parentFile.mkdirs()
+        val path = file.canonicalPath
+        fileMonitor = fileMonitors[path] ?: fileMonitors.putIfAbsent(path, Any()) ?: fileMonitors[path]!!
+        randomAccessFile = RandomAccessFile(file, "rw")
+        channel = randomAccessFile.channel
+        try {
+            withFileLock { load() }
+        } catch (e: Exception) {
+            close()
+            throw e
+        }
+    }
+
+    val hitCount: Long
+        get() = hits.get()
+
+    val missCount: Long
+        get() = misses.get()
+
+    val size: Int
+        get() = entries.size
+
+    // A read-only view of the schema stored under key, or null
+    fun get(key: String): ByteBuffer? {
+        val entry = entries[key]
+        if (entry == null) {
+            misses.incrementAndGet()
+            return null
+        }
+        hits.incrementAndGet()
+        return entry.duplicate()
+    }
+
+    fun contains(key: String): Boolean = entries.containsKey(key)
+
+    // Appends an entry - ignored if key is already stored
+    fun put(key: String, schema: ByteArray) {
+        if (entries.containsKey(key))
+            return
+        val keyBytes = key.toByteArray(Charsets.UTF_8)
+        val crc = CRC32()
+        crc.update(schema)
+
+        val record = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.size + schema.size)
+        record.putInt(keyBytes.size)
+        record.putInt(schema.size)
+        record.putInt(crc.value.toInt())
+        record.put(keyBytes)
+        record.put(schema)
+        record.flip()
+
+        synchronized(this) {
+            if (entries.containsKey(key))
+                return
+            // Other caches may be appending to the same file
+            withFileLock {
+                var position = channel.size()
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position)
+                }
+            }
+            entries.put(key, ByteBuffer.wrap(schema).asReadOnlyBuffer())
+        }
+    }
+
+    // Closing a file releases every lock this process holds on it - not while another cache of the file holds one
+    override fun close() {
+        synchronized(fileMonitor) {
+            channel.close()
+            randomAccessFile.close()
+        }
+    }
+
+    // Runs block with no other cache on the file reading or writing it
+    private inline fun <T> withFileLock(block: () -> T): T {
+        synchronized(fileMonitor) {
+            val lock = channel.lock()
+            try {
+                return block()
+            } finally {
+                lock.release()
+            }
+        }
+    }
+
+    // Called holding the file lock - no other cache is appending, so a torn record at the end is really torn
+    private fun load() {
+        val length = channel.size()
+        if (length < HEADER_SIZE) {
+            val header = ByteBuffer.allocate(HEADER_SIZE)
+            header.putInt(MAGIC)
+            header.putInt(VERSION)
+            header.flip()
+            channel.truncate(0)
+            channel.write(header, 0)
+            return
+        }
+        if (length > Integer.MAX_VALUE)
+            throw Exception("$file is too large - delete it")
+
+        val mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).asReadOnlyBuffer()
+        if (mapping.getInt(0) != MAGIC || mapping.getInt(4) != VERSION)
+            throw Exception("$file is not a schema cache of this version - delete it")
+
+        var position = HEADER_SIZE
+        while (position + RECORD_HEADER_SIZE <= length) {
+            val keyLength = mapping.getInt(position)
+            val valueLength = mapping.getInt(position + 4)
+            val crc = mapping.getInt(position + 8)
+            val valuePosition = position + RECORD_HEADER_SIZE + keyLength
+            if (keyLength < 0 || valueLength < 0 || valuePosition.toLong() + valueLength > length)
+                break
+
+            val keyBytes = ByteArray(keyLength)
+            mapping.position(position + RECORD_HEADER_SIZE)
+            mapping.get(keyBytes)
+
+            mapping.limit(valuePosition + valueLength)
+            mapping.position(valuePosition)
+            val value = mapping.slice()
+            mapping.limit(length.toInt())
+            if (getCrc(value.duplicate()) != crc)
+                break
+
+            entries.put(String(keyBytes, Charsets.UTF_8), value)
+            position = valuePosition + valueLength
+        }
+
+        if (position < length) {
+            // Cut off what was not fully written
+            channel.truncate(position.toLong())
+        }
+    }
+
+    private fun getCrc(buffer: ByteBuffer): Int {
+        val crc = CRC32()
+        val chunk = ByteArray(Math.min(buffer.remaining(), 8192))
+        while (buffer.hasRemaining()) {
+            val length = Math.min(buffer.remaining(), chunk.size)
+            buffer.get(chunk, 0, length)
+            crc.update(chunk, 0, length)
+        }
+        return crc.value.toInt()
+    }
+}
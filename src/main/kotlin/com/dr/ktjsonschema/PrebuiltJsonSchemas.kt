@@ -0,0 +1,57 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.node.MissingNode
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Serves the schemas written at build time by JsonSchemaExporter (e.g. by the ktjsonschema-gradle-plugin), found as
+ * classpath resources named by getResourceName().
+ *
+ * A class without a pre-built schema gets one generated by generator - so the build only has to export the classes
+ * that matter at startup. The pre-built schemas must have been exported using the same ObjectMapper and config as
+ * generator, with no title or description.
+ *
+ * Each resource is read once, then kept. Like JsonSchemaCache, every call returns a copy.
+ *
+ * @param generator generates the schemas of classes not pre-built
+ * @param classLoader Default = null - where to look for the schemas. If null, the class loader of each class is used
+ */
+class PrebuiltJsonSchemas @JvmOverloads constructor(
+        val generator: JsonSchemaGenerator,
+        val classLoader: ClassLoader? = null
+) {
+
+    companion object {
+        const val RESOURCE_DIR = "META-INF/ktjsonschema/"
+
+        @JvmStatic
+        fun getResourceName(className: String): String = RESOURCE_DIR + className + ".json"
+    }
+
+    // MissingNode when the class has no pre-built schema
+    private val schemas = ConcurrentHashMap<Class<*>, JsonNode>()
+
+    fun getJsonSchema(clazz: Class<*>): JsonNode {
+        val schema = getPrebuiltJsonSchema(clazz)
+        if (schema.isMissingNode)
+            return generator.generateJsonSchema(clazz)
+        return schema.deepCopy()
+    }
+
+    fun isPrebuilt(clazz: Class<*>): Boolean = !getPrebuiltJsonSchema(clazz).isMissingNode
+
+    private fun getPrebuiltJsonSchema(clazz: Class<*>): JsonNode {
+        schemas[clazz]?.let {
+            return it
+        }
+        val schema = readPrebuiltJsonSchema(clazz)
+        return schemas.putIfAbsent(clazz, schema) ?: schema
+    }
+
+    private fun readPrebuiltJsonSchema(clazz: Class<*>): JsonNode {
+        val loader = classLoader ?: clazz.classLoader ?: return MissingNode.getInstance()
+        val input = loader.getResourceAsStream(getResourceName(clazz.name)) ?: return MissingNode.getInstance()
+        return input.use { generator.rootObjectMapper.readTree(it) }
+    }
+}
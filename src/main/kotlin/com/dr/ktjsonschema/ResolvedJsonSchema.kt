@@ -0,0 +1,175 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.JsonNode
+import java.net.URI
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A schema generated by JsonSchemaGenerator (or any draft 4 schema with $refs into itself only), indexed to be
+ * walked without resolving $refs by hand.
+ *
+ * Every json pointer of the document is indexed once, when created, so finding the json at a pointer or a $ref
+ * costs a map lookup. The schemas are seen as a graph of Nodes, with $refs followed: a Node is created the first
+ * time it is reached, and only once per schema - so recursive schemas (e.g. a RecursivePojo holding a list of
+ * RecursivePojos) are walked as cycles, never expanded.
+ *
+ * Thread safe.
+ */
+class ResolvedJsonSchema(val schema: JsonNode) {
+
+    companion object {
+        private val DEFINITIONS_PREFIX = "/definitions/"
+
+        private fun escape(name: String): String = name.replace("~", "~0").replace("/", "~1")
+    }
+
+    // Json pointer (escaped) -> the json there, for every value of the document
+    private val jsons = HashMap<String, JsonNode>()
+
+    // Json pointer -> its Node, once reached. Pointers to $refs share the Node of the schema they lead to
+    private val nodes = ConcurrentHashMap<String, Node>()
+
+    init {
+        index(schema, "")
+    }
+
+    private fun index(json: JsonNode, pointer: String) {
+        jsons.put(pointer, json)
+        if (json.isObject) {
+            val fields = json.fields()
+            while (fields.hasNext()) {
+                val field = fields.next()
+                index(field.value, pointer + "/" + escape(field.key))
+            }
+        } else if (json.isArray) {
+            for (i in 0..json.size() - 1) {
+                index(json.get(i), "$pointer/$i")
+            }
+        }
+    }
+
+    val root: Node
+        get() = getNode("")
+
+    /**
+     * Names of the definitions, e.g. MyPojo for #/definitions/MyPojo
+     */
+    val definitionNames: List<String> = schema.get("definitions")?.fieldNames()?.asSequence()?.toList() ?: emptyList()
+
+    /**
+     * The json at pointer (e.g. /definitions/MyPojo/properties/name), as it is - null if there is nothing there
+     */
+    fun getJson(pointer: String): JsonNode? = jsons[pointer]
+
+    fun getDefinition(name: String): Node? {
+        val pointer = DEFINITIONS_PREFIX + escape(name)
+        return if (jsons.containsKey(pointer)) getNode(pointer) else null
+    }
+
+    /**
+     * The schema a $ref (e.g. #/definitions/MyPojo) leads to
+     */
+    fun resolve(ref: String): Node = getNode(getPointer(ref))
+
+    /**
+     * The schema at pointer, following its $refs
+     */
+    fun getNode(pointer: String): Node {
+        nodes[pointer]?.let {
+            return it
+        }
+        val target = dereference(pointer)
+        val node = nodes[target] ?: nodes.putIfAbsent(target, Node(target, jsons[target]!!)) ?: nodes[target]!!
+        if (target != pointer)
+            nodes.putIfAbsent(pointer, node)
+        return node
+    }
+
+    /**
+     * Every schema reachable from start (itself included), each once, breadth first
+     */
+    fun getReachableNodes(start: Node = root): List<Node> {
+        val reached = LinkedHashSet<Node>()
+        reached.add(start)
+        val pending = ArrayDeque<Node>()
+        pending.add(start)
+        while (pending.isNotEmpty()) {
+            for (child in pending.poll().children) {
+                if (reached.add(child))
+                    pending.add(child)
+            }
+        }
+        return reached.toList()
+    }
+
+    // The pointer of the schema the $refs from pointer lead to
+    private fun dereference(pointer: String): String {
+        var current = pointer
+        var seen: HashSet<String>? = null
+        while (true) {
+            val json = jsons[current] ?: throw Exception("Nothing at '$current' in the schema")
+            val ref = json.get("\$ref")?.asText() ?: return current
+            val set = seen ?: HashSet<String>()
+            seen = set
+            if (!set.add(current))
+                throw Exception("\$ref $ref refers to itself")
+            current = getPointer(ref)
+        }
+    }
+
+    // Only $refs into this document are supported
+    private fun getPointer(ref: String): String {
+        if (!ref.startsWith("#"))
+            throw Exception("Only \$refs into the schema itself are supported, not $ref")
+        val pointer = if (ref.contains('%')) URI(ref).fragment else ref.substring(1)
+        if (!jsons.containsKey(pointer))
+            throw Exception("\$ref $ref does not refer to anything")
+        return pointer
+    }
+
+    /**
+     * A schema of the document - never a $ref. Its sub-schemas are found when first asked for
+     *
+     * @param pointer where the schema is, e.g. /definitions/MyPojo
+     */
+    inner class Node internal constructor(val pointer: String, val json: JsonNode) {
+
+        val type: String?
+            get() = json.get("type")?.let { if (it.isTextual) it.textValue() else null }
+
+        val required: Set<String> by lazy {
+            json.get("required")?.map { it.asText() }?.toSet() ?: emptySet<String>()
+        }
+
+        // In the order of the document
+        val properties: Map<String, Node> by lazy {
+            val properties = LinkedHashMap<String, Node>()
+            json.get("properties")?.fieldNames()?.forEach {
+                properties.put(it, getNode("$pointer/properties/${escape(it)}"))
+            }
+            properties
+        }
+
+        val items: Node? by lazy {
+            json.get("items")?.let { if (it.isObject) getNode("$pointer/items") else null }
+        }
+
+        // null unless it is a schema
+        val additionalProperties: Node? by lazy {
+            json.get("additionalProperties")?.let { if (it.isObject) getNode("$pointer/additionalProperties") else null }
+        }
+
+        val oneOf: List<Node> by lazy {
+            json.get("oneOf")?.let { (0..it.size() - 1).map { getNode("$pointer/oneOf/$it") } } ?: emptyList<Node>()
+        }
+
+        // The schemas this one holds - the ones above
+        val children: List<Node>
+            get() = properties.values + listOfNotNull(items, additionalProperties) + oneOf
+
+        fun getProperty(name: String): Node? = properties[name]
+
+        override fun toString(): String = "#$pointer"
+    }
+}
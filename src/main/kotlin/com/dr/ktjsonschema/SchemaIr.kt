@@ -0,0 +1,100 @@
+package com.dr.ktjsonschema
+
+import java.io.Serializable
+
+/**
+ * Intermediate representation of a schema: what JsonSchemaGenerator found out about a type while visiting it,
+ * before any JsonSchemaConfig choice (titles, formats, definition names, ...) is applied - see JsonSchemaRenderer.
+ *
+ * Definitions are referred to by the name of their class, their names in the schema are picked when rendering - so a
+ * schema can also be compiled from classes that can't be loaded, e.g. by ktjsonschema-processor at compile time.
+ * Never modified once compiled, and Serializable.
+ */
+sealed class SchemaIr : Serializable {
+
+    // A class, as Class.getName() and Class.getSimpleName() tell
+    data class TypeName(val name: String, val simpleName: String) : Serializable {
+        companion object {
+            @JvmStatic
+            fun of(clazz: Class<*>): TypeName = TypeName(clazz.name, clazz.simpleName)
+        }
+    }
+
+    // Nothing is known about the value
+    object AnyValue : SchemaIr() {
+        private fun readResolve(): Any = AnyValue
+    }
+
+    // A value of a single json type - "string", "number", "integer" or "boolean" unless jackson only tells us the type name
+    class Primitive(val type: String, val format: String?, val enumValues: List<String>?) : SchemaIr()
+
+    class ArrayOf(val items: SchemaIr) : SchemaIr()
+
+    // Map with values described by values. If keysAreStrings is false, we don't know what it holds
+    class MapOf(val values: SchemaIr, val keysAreStrings: Boolean) : SchemaIr()
+
+    // The definition of type
+    class Ref(val type: TypeName) : SchemaIr()
+
+    // Polymorphism: the definition of one of subTypes. typeIds, in the order of subTypes, are the values of the property
+    // typePropertyName telling them apart - both null unless every subtype has one
+    class OneOf(val subTypes: List<TypeName>, val typePropertyName: String?, val typeIds: List<String>?) : SchemaIr()
+
+    class ObjectType(
+            val type: TypeName,
+            // From class annotations
+            val format: String?,
+            val description: String?,
+            val title: String?,
+            // Set if this class is a child in a polymorphism config
+            val polymorphismInfo: JsonSchemaGenerator.PolymorphismInfo?,
+            val properties: List<Property>
+    ) : SchemaIr()
+
+    class Property(
+            val name: String,
+            val schema: SchemaIr,
+            // Reported as required by jackson, primitive or @NotNull
+            val required: Boolean,
+            // java.util.Optional or java8.util.Optional - schema is the one of the value it holds
+            val optional: Boolean,
+            // null when jackson only tells us the name and type of the property
+            val annotations: PropertyAnnotations?
+    ) : Serializable
+
+    class PropertyAnnotations(
+            // Name of the raw class of the property - used for JsonSchemaConfig.customType2FormatMapping
+            val typeName: String,
+            val notNull: Boolean,
+            val pattern: String?,
+            val minLength: Int?,
+            val maxLength: Int?,
+            val minimum: Long?,
+            val maximum: Long?,
+            val defaultValue: String?,
+            val format: String?,
+            val description: String?,
+            val title: String?
+    ) : Serializable
+
+    // The types whose definitions are referred to from this schema, in the order the generator visits them
+    fun getReferencedTypes(): List<TypeName> {
+        return when (this) {
+            is Ref -> listOf(type)
+            is OneOf -> subTypes
+            is ArrayOf -> items.getReferencedTypes()
+            is MapOf -> values.getReferencedTypes()
+            is ObjectType -> properties.flatMap { it.schema.getReferencedTypes() }
+            else -> emptyList()
+        }
+    }
+}
+
+/**
+ * A schema compiled by JsonSchemaGenerator, ready to be rendered by a JsonSchemaRenderer.
+ *
+ * @param rootType the class the schema is for - null if compiled for many classes (see JsonSchemaGenerator.compileJsonSchemas)
+ * @param root the schema of rootType - null if compiled for many classes
+ * @param definitions every definition used, in the order they were created
+ */
+class CompiledSchema(val rootType: SchemaIr.TypeName?, val root: SchemaIr?, val definitions: Map<SchemaIr.TypeName, SchemaIr>) : Serializable
@@ -0,0 +1,55 @@
+package com.dr.ktjsonschema
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass
+import com.fasterxml.jackson.databind.jsontype.NamedType
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Index of the polymorphism setup known to an ObjectMapper: the subtypes of each class, and the type id of each subtype.
+ *
+ * Resolving the subtypes of a class gives us everything below it, so all its subtypes are indexed at once -
+ * a hierarchy is resolved by the mapper's SubtypeResolver only once, no matter how many subtypes it has.
+ * The type ids are the ones jackson uses when serializing via the base class.
+ *
+ * An index is only valid for a single mapper configuration - see ClassIntrospector
+ */
+internal class SubtypeIndex(val objectMapper: ObjectMapper) {
+
+    class Entry(
+            // Subtypes of this class (excluding itself) - empty if it is not a polymorphism parent
+            val subTypes: List<Class<*>>,
+            val typeId: String?
+    )
+
+    private val entries = ConcurrentHashMap<Class<*>, Entry>()
+
+    fun getEntry(ac: AnnotatedClass): Entry {
+        val rawClass = ac.rawType
+        entries[rawClass]?.let {
+            return it
+        }
+
+        val resolvedSubTypes = objectMapper.subtypeResolver.collectAndResolveSubtypesByClass(objectMapper.deserializationConfig, ac)
+
+        // Index this class and everything below it.
+        // Other classes in the result (e.g. siblings) are skipped, since their own subtypes might be missing from it
+        for (namedType in resolvedSubTypes) {
+            val clazz = namedType.type
+            if (rawClass.isAssignableFrom(clazz) && !entries.containsKey(clazz))
+                entries.putIfAbsent(clazz, Entry(getSubTypes(clazz, resolvedSubTypes), namedType.name))
+        }
+
+        val entry = entries[rawClass]
+        if (entry != null)
+            return entry
+        // Not part of its own result - happens when using a custom SubtypeResolver
+        val newEntry = Entry(getSubTypes(rawClass, resolvedSubTypes), null)
+        return entries.putIfAbsent(rawClass, newEntry) ?: newEntry
+    }
+
+    private fun getSubTypes(clazz: Class<*>, resolvedSubTypes: Collection<NamedType>): List<Class<*>> {
+        return resolvedSubTypes.map { it -> it.type }.filter { it ->
+            clazz.isAssignableFrom(it) && clazz != it }
+    }
+}
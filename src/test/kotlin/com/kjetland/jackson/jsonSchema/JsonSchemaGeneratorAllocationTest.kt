@@ -0,0 +1,165 @@
+package com.kjetland.jackson.jsonSchema
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.issue_24.model.entities.EntityWrapper
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.module.SimpleModule
+import com.fasterxml.jackson.databind.node.*
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+import com.fasterxml.jackson.datatype.joda.JodaModule
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.kjetland.jackson.jsonSchema.testData.*
+import com.kjetland.jackson.jsonSchema.testData.mixin.MixinModule
+import com.kjetland.jackson.jsonSchema.testData.mixin.MixinParent
+import com.kjetland.jackson.jsonSchema.testDataKotlin.*
+import org.junit.Assert
+import org.junit.Assume
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.util.*
+
+// Checks the bytes allocated by generateJsonSchema, and the size of the schema it returns, against the budgets
+// in allocation-budgets.properties - so that a change allocating much more fails here.
+// What the JDK allocates (HashMaps, Strings, ...) differs between versions, so allocation is measured relative to
+// a baseline measured in the same run: jackson converting a few test models to trees.
+// After an intended change, update the budgets to about 1.5 times the values printed by this test
+class JsonSchemaGeneratorAllocationTest {
+
+    val warmupRuns = 50
+    val runs = 10
+
+    val classes: List<Class<*>> = listOf(
+            ClassNotExtendingAnything::class.java, Parent::class.java, PojoWithParent::class.java, ManyPrimitives::class.java,
+            PojoUsingOptionalJava::class.java, PojoWithArrays::class.java, PojoUsingMaps::class.java, RecursivePojo::class.java,
+            PojoUsingFormat::class.java, MixinParent::class.java, ObjectWithPropertyWithCustomSerializer::class.java,
+            EntityWrapper::class.java, ParentKotlin::class.java, PojoWithParentKotlin::class.java, ManyDates::class.java,
+            ClassUsingValidation::class.java)
+
+    val budgets: Properties by lazy {
+        val properties = Properties()
+        javaClass.getResourceAsStream("allocation-budgets.properties").use { properties.load(it) }
+        properties
+    }
+
+    fun createObjectMapper(): ObjectMapper {
+        val om = ObjectMapper()
+        om.registerModule(KotlinModule())
+        val simpleModule = SimpleModule()
+        simpleModule.addSerializer(PojoWithCustomSerializer::class.java, PojoWithCustomSerializerSerializer())
+        om.registerModule(simpleModule)
+        om.registerModule(JavaTimeModule())
+        om.registerModule(Jdk8Module())
+        om.registerModule(JodaModule())
+        om.registerModule(MixinModule())
+        return om
+    }
+
+    // Bytes allocated by the calling thread while running work, once warmed up - the least of a few runs
+    fun measureAllocatedBytes(work: () -> Unit): Long {
+        val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported)
+        threadMXBean.isThreadAllocatedMemoryEnabled = true
+
+        for (i in 1..warmupRuns) {
+            work()
+        }
+        val threadId = Thread.currentThread().id
+        var min = Long.MAX_VALUE
+        for (i in 1..runs) {
+            val before = threadMXBean.getThreadAllocatedBytes(threadId)
+            work()
+            min = Math.min(min, threadMXBean.getThreadAllocatedBytes(threadId) - before)
+        }
+        return min
+    }
+
+    // The baseline: bytes allocated by jackson converting the test models to trees
+    fun measureBaselineBytes(objectMapper: ObjectMapper): Long {
+        val testData = TestData()
+        val models = listOf(testData.manyPrimitives, testData.pojoWithArrays, testData.pojoWithParent)
+        return measureAllocatedBytes { models.forEach { objectMapper.valueToTree<JsonNode>(it) } }
+    }
+
+    fun getBudget(clazz: Class<*>, kind: String): String {
+        val key = "${clazz.simpleName}.$kind"
+        return budgets.getProperty(key) ?: throw Exception("No budget for $key")
+    }
+
+    @Test
+    fun allocatedBytes() {
+        val objectMapper = createObjectMapper()
+        val generator = JsonSchemaGenerator(objectMapper)
+        val baseline = measureBaselineBytes(objectMapper)
+        val measured = classes.associate { it to measureAllocatedBytes { generator.generateJsonSchema(it) } }
+        println("Baseline: $baseline bytes")
+        measured.forEach { println("${it.key.simpleName}.allocatedBaselines=${"%.2f".format(it.value.toDouble() / baseline)}") }
+        measured.forEach {
+            val budget = getBudget(it.key, "allocatedBaselines").toDouble()
+            Assert.assertTrue("${it.key.simpleName}: ${it.value} bytes allocated, baseline $baseline - budget is $budget baselines",
+                    it.value <= budget * baseline)
+        }
+    }
+
+    @Test
+    fun retainedBytes() {
+        val generator = JsonSchemaGenerator(createObjectMapper())
+        val measured = classes.associate { it to JsonNodeSizes.getRetainedBytes(generator.generateJsonSchema(it)) }
+        measured.forEach { println("${it.key.simpleName}.retainedBytes=${it.value}") }
+        measured.forEach {
+            val budget = getBudget(it.key, "retainedBytes").toLong()
+            Assert.assertTrue("${it.key.simpleName}: schema retains ${it.value} bytes - budget is $budget", it.value <= budget)
+        }
+    }
+}
+
+// Estimates the heap retained by a JsonNode tree on a 64-bit JVM using compressed oops (12 bytes object headers,
+// 4 bytes references, 8 bytes alignment) - the same numbers on every JVM, unlike measuring the heap.
+// Shared nodes (booleans, null) and the node factory are not counted
+object JsonNodeSizes {
+
+    fun getRetainedBytes(node: JsonNode): Long {
+        return when (node) {
+            is ObjectNode -> {
+                // ObjectNode (factory and map), LinkedHashMap, its table, and an entry per field
+                var size = align(12 + 4 + 4) + align(12 + 4 * 4 + 4 * 4 + 4 + 1) + getArrayBytes(getTableSize(node.size()), 4)
+                val fields = node.fields()
+                while (fields.hasNext()) {
+                    val field = fields.next()
+                    size += align(12 + 4 + 4 + 4 + 4 + 4 + 4) + getStringBytes(field.key) + getRetainedBytes(field.value)
+                }
+                size
+            }
+            is ArrayNode -> {
+                // ArrayNode (factory and list), ArrayList and its array
+                var size = align(12 + 4 + 4) + align(12 + 4 + 4 + 4) + getArrayBytes(Math.max(node.size(), 10), 4)
+                node.forEach { size += getRetainedBytes(it) }
+                size
+            }
+            is TextNode -> align(12 + 4) + getStringBytes(node.textValue())
+            is IntNode -> align(12 + 4)
+            is LongNode, is DoubleNode -> align(12 + 8)
+            is BooleanNode, is NullNode, is MissingNode -> 0
+            else -> throw Exception("Unknown node ${node.javaClass}")
+        }
+    }
+
+    // String and its char[]
+    private fun getStringBytes(s: String): Long = align(12 + 4 + 4) + getArrayBytes(s.length, 2)
+
+    private fun getArrayBytes(length: Int, elementSize: Int): Long = align(16L + length.toLong() * elementSize)
+
+    // HashMap capacity: the smallest power of two keeping the load under 0.75
+    private fun getTableSize(entries: Int): Int {
+        var capacity = 16
+        while (entries > capacity * 3 / 4) {
+            capacity *= 2
+        }
+        return capacity
+    }
+
+    private fun align(size: Int): Long = align(size.toLong())
+
+    private fun align(size: Long): Long = (size + 7) / 8 * 8
+}
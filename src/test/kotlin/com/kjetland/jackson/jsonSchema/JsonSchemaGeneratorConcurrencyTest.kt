@@ -0,0 +1,164 @@
+package com.kjetland.jackson.jsonSchema
+
+import com.dr.ktjsonschema.JsonSchemaCache
+import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.issue_24.model.entities.EntityWrapper
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.module.SimpleModule
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+import com.fasterxml.jackson.datatype.joda.JodaModule
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.kjetland.jackson.jsonSchema.testData.*
+import com.kjetland.jackson.jsonSchema.testData.mixin.MixinModule
+import com.kjetland.jackson.jsonSchema.testData.mixin.MixinParent
+import com.kjetland.jackson.jsonSchema.testDataKotlin.*
+import org.junit.Assert
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.*
+
+// Makes sure generating schemas from many threads at once gives exactly the same result as generating them one by one
+class JsonSchemaGeneratorConcurrencyTest {
+    val threadCount = 8
+    val rounds = 5
+
+    val classes: List<Class<*>> = listOf(
+            ClassNotExtendingAnything::class.java, Child1::class.java, Child2::class.java, Parent::class.java,
+            PojoWithParent::class.java, ManyPrimitives::class.java, PojoUsingOptionalJava::class.java,
+            PojoWithArrays::class.java, PojoUsingMaps::class.java, RecursivePojo::class.java, PojoUsingFormat::class.java,
+            MixinParent::class.java, ObjectWithPropertyWithCustomSerializer::class.java, EntityWrapper::class.java,
+            ParentKotlin::class.java, PojoWithParentKotlin::class.java, PojoWithArraysKotlin::class.java,
+            PojoUsingOptionKotlin::class.java, ManyDates::class.java, ClassUsingValidation::class.java)
+
+    // A new ObjectMapper for each generator, so that jackson's serializer caches are also populated concurrently
+    fun createObjectMapper(): ObjectMapper {
+        val om = ObjectMapper()
+        om.registerModule(KotlinModule())
+        val simpleModule = SimpleModule()
+        simpleModule.addSerializer(PojoWithCustomSerializer::class.java, PojoWithCustomSerializerSerializer())
+        om.registerModule(simpleModule)
+        om.registerModule(JavaTimeModule())
+        om.registerModule(Jdk8Module())
+        om.registerModule(JodaModule())
+        om.registerModule(MixinModule())
+        return om
+    }
+
+    fun generateSequentially(config: JsonSchemaConfig): Map<Class<*>, String> {
+        val g = JsonSchemaGenerator(createObjectMapper(), config)
+        return classes.associate { it to g.generateJsonSchema(it).toString() }
+    }
+
+    // Every thread generates all the classes, in its own random order
+    fun generateConcurrently(g: JsonSchemaGenerator): List<Map<Class<*>, String>> {
+        val pool = Executors.newFixedThreadPool(threadCount)
+        try {
+            val startSignal = CountDownLatch(1)
+            val futures = (1..threadCount).map {
+                threadNo ->
+                pool.submit(Callable {
+                    val order = ArrayList(classes)
+                    Collections.shuffle(order, Random(threadNo.toLong()))
+                    startSignal.await()
+                    order.associate { it to g.generateJsonSchema(it).toString() }
+                })
+            }
+            startSignal.countDown()
+            return futures.map { it.get(60, TimeUnit.SECONDS) }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    fun assertSameAsSequential(config: JsonSchemaConfig, createGenerator: (ObjectMapper) -> JsonSchemaGenerator) {
+        val expected = generateSequentially(config)
+        for (round in 1..rounds) {
+            val g = createGenerator(createObjectMapper())
+            generateConcurrently(g).forEach {
+                result ->
+                classes.forEach {
+                    Assert.assertEquals("Schema for $it", expected[it], result[it])
+                }
+            }
+        }
+    }
+
+    @Test
+    fun concurrentGeneration() {
+        listOf(JsonSchemaConfig.vanillaJsonSchemaDraft4, JsonSchemaConfig.html5EnabledSchema).forEach {
+            config ->
+            assertSameAsSequential(config) { JsonSchemaGenerator(it, config) }
+        }
+    }
+
+    @Test
+    fun concurrentGenerationUsingCache() {
+        assertSameAsSequential(JsonSchemaConfig.vanillaJsonSchemaDraft4) {
+            JsonSchemaGenerator(it, JsonSchemaConfig.vanillaJsonSchemaDraft4, cache = JsonSchemaCache(5))
+        }
+    }
+
+    @Test
+    fun concurrentGenerationReusingDefinitions() {
+        listOf(JsonSchemaConfig.vanillaJsonSchemaDraft4, JsonSchemaConfig.html5EnabledSchema).forEach {
+            config ->
+            assertSameAsSequential(config) {
+                JsonSchemaGenerator(it, config, reuseDefinitions = true, cache = JsonSchemaCache(5))
+            }
+        }
+    }
+
+    // Clearing while others put never leaves a schema the cache cannot evict
+    @Test
+    fun concurrentPutAndClear() {
+        val cache = JsonSchemaCache(3)
+        val schema = createObjectMapper().createObjectNode()
+        val pool = Executors.newFixedThreadPool(threadCount)
+        try {
+            val startSignal = CountDownLatch(1)
+            val futures = (1..threadCount).map {
+                threadNo ->
+                pool.submit(Callable {
+                    startSignal.await()
+                    for (i in 1..2000) {
+                        if (threadNo == 1 && i % 10 == 0)
+                            cache.clear()
+                        else
+                            cache.put(JsonSchemaCache.Key(classes[i % classes.size], "$threadNo-$i", null), schema)
+                    }
+                })
+            }
+            startSignal.countDown()
+            futures.forEach { it.get(60, TimeUnit.SECONDS) }
+        } finally {
+            pool.shutdown()
+        }
+        Assert.assertTrue("${cache.size} schemas cached", cache.size <= cache.maxEntries)
+        classes.forEach { cache.put(JsonSchemaCache.Key(it, null, null), schema) }
+        Assert.assertEquals(cache.maxEntries, cache.size)
+    }
+
+    @Test
+    fun generateInParallel() {
+        val expected = generateSequentially(JsonSchemaConfig.vanillaJsonSchemaDraft4)
+
+        val g = JsonSchemaGenerator(createObjectMapper(), reuseDefinitions = true)
+        val usingDefaultExecutor = g.generateJsonSchemasInParallel(classes)
+        Assert.assertEquals(classes, usingDefaultExecutor.keys.toList())
+        classes.forEach {
+            Assert.assertEquals(expected[it], usingDefaultExecutor[it].toString())
+        }
+
+        val pool = Executors.newFixedThreadPool(threadCount)
+        try {
+            val usingPool = JsonSchemaGenerator(createObjectMapper()).generateJsonSchemasInParallel(classes, pool)
+            classes.forEach {
+                Assert.assertEquals(expected[it], usingPool[it].toString())
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.kjetland.jackson.jsonSchema
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.junit.Assert
+import org.junit.Assume
+import org.junit.Test
+import java.lang.management.ManagementFactory
+
+// Makes sure time and allocation grow linearly with the number of types, properties and subtypes, using class graphs
+// built at runtime (see SyntheticClassGraphs). Time depends on the machine and on what else runs on it, so its bound
+// is loose - well below the exponent 2 of a quadratic scan - and it is measured again before failing
+class JsonSchemaGeneratorScalingTest {
+
+    // Exponent of the fitted growth curve - 1 is linear
+    val maxAllocationExponent = 1.2
+    val maxTimeExponent = 1.5
+
+    val runs = 5
+
+    data class Cost(val nanos: Double, val allocatedBytes: Double)
+
+    // The minimum over a few runs, each using a new ObjectMapper so that nothing is cached by jackson either.
+    // Runs on a thread of its own, with a stack large enough for deep graphs
+    fun measure(clazz: Class<*>): Cost {
+        val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        var cost: Cost? = null
+        var error: Throwable? = null
+        val thread = Thread(null, {
+            try {
+                var minNanos = Long.MAX_VALUE
+                var minAllocatedBytes = Long.MAX_VALUE
+                for (run in 1..runs) {
+                    val generator = JsonSchemaGenerator(ObjectMapper())
+                    val threadId = Thread.currentThread().id
+                    val allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId)
+                    val start = System.nanoTime()
+                    generator.generateJsonSchema(clazz)
+                    minNanos = Math.min(minNanos, System.nanoTime() - start)
+                    minAllocatedBytes = Math.min(minAllocatedBytes, threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore)
+                }
+                cost = Cost(minNanos.toDouble(), minAllocatedBytes.toDouble())
+            } catch (e: Throwable) {
+                error = e
+            }
+        }, "scaling", 256L * 1024 * 1024)
+        thread.start()
+        thread.join()
+        error?.let { throw it }
+        return cost!!
+    }
+
+    // k of cost = a * size^k, fitted by least squares on log(size), log(cost)
+    fun growthExponent(sizes: List<Int>, costs: List<Double>): Double {
+        val xs = sizes.map { Math.log(it.toDouble()) }
+        val ys = costs.map { Math.log(it) }
+        val meanX = xs.average()
+        val meanY = ys.average()
+        var covariance = 0.0
+        var variance = 0.0
+        for (i in xs.indices) {
+            covariance += (xs[i] - meanX) * (ys[i] - meanY)
+            variance += (xs[i] - meanX) * (xs[i] - meanX)
+        }
+        return covariance / variance
+    }
+
+    fun assertLinear(dimension: String, sizes: List<Int>, createGraph: (Int) -> Class<*>) {
+        Assume.assumeTrue(SyntheticClassGraphs.isAvailable)
+        val classes = sizes.map(createGraph)
+        // Warm up on the largest graph
+        measure(classes.last())
+
+        var costs = classes.map { measure(it) }
+        var timeExponent = growthExponent(sizes, costs.map { it.nanos })
+        if (timeExponent >= maxTimeExponent) {
+            // Likely a GC or another process - keep the minimum of both measurements
+            costs = classes.indices.map {
+                val cost = measure(classes[it])
+                Cost(Math.min(cost.nanos, costs[it].nanos), Math.min(cost.allocatedBytes, costs[it].allocatedBytes))
+            }
+            timeExponent = growthExponent(sizes, costs.map { it.nanos })
+        }
+        val allocationExponent = growthExponent(sizes, costs.map { it.allocatedBytes })
+        println("$dimension: sizes $sizes - ms ${costs.map { (it.nanos / 1000000).toInt() }} - KB ${costs.map { (it.allocatedBytes / 1024).toInt() }}" +
+                " - time exponent ${"%.2f".format(timeExponent)}, allocation exponent ${"%.2f".format(allocationExponent)}")
+
+        Assert.assertTrue("Time grows as $dimension^$timeExponent", timeExponent < maxTimeExponent)
+        Assert.assertTrue("Allocation grows as $dimension^$allocationExponent", allocationExponent < maxAllocationExponent)
+    }
+
+    @Test
+    fun types() = assertLinear("types", listOf(250, 500, 1000, 2000)) { SyntheticClassGraphs.tree(it, 4) }
+
+    @Test
+    fun properties() = assertLinear("properties", listOf(500, 1000, 2000, 4000)) { SyntheticClassGraphs.wide(it) }
+
+    @Test
+    fun subtypes() = assertLinear("subtypes", listOf(100, 200, 400, 800)) { SyntheticClassGraphs.subtypes(it) }
+
+    @Test
+    fun depth() = assertLinear("depth", listOf(100, 200, 400, 800)) { SyntheticClassGraphs.deep(it) }
+
+    // Every definition needs a name of its own
+    @Test
+    fun definitionsWithTheSameName() = assertLinear("definitions named alike", listOf(250, 500, 1000, 2000)) { SyntheticClassGraphs.sameSimpleName(it) }
+}
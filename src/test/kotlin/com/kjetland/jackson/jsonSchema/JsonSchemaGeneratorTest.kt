@@ -1,12 +1,26 @@
 package com.kjetland.jackson.jsonSchema
 
+import com.dr.ktjsonschema.CompiledSchema
+import com.dr.ktjsonschema.JsonSchemaCache
 import com.dr.ktjsonschema.JsonSchemaConfig
+import com.dr.ktjsonschema.JsonSchemaDraft4Renderer
+import com.dr.ktjsonschema.JsonSchemaExporter
+import com.dr.ktjsonschema.JsonSchemaGenerationListener
 import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.JsonSchemaGeneratorMetrics
+import com.dr.ktjsonschema.PersistentJsonSchemaCache
+import com.dr.ktjsonschema.PrebuiltJsonSchemas
 import com.dr.ktjsonschema.issue_24.model.entities.EntityWrapper
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.annotation.JsonTypeInfo
+import com.fasterxml.jackson.core.Version
 import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.BeanProperty
+import com.fasterxml.jackson.databind.JavaType
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.SerializationFeature
 import com.fasterxml.jackson.databind.module.SimpleModule
+import com.fasterxml.jackson.databind.jsontype.NamedType
 import com.fasterxml.jackson.databind.node.ArrayNode
 import com.fasterxml.jackson.databind.node.ObjectNode
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
@@ -21,6 +35,14 @@ import com.kjetland.jackson.jsonSchema.testData.mixin.MixinParent
 import com.kjetland.jackson.jsonSchema.testDataKotlin.*
 import org.junit.Assert
 import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.StringWriter
+import java.net.URLClassLoader
+import java.util.zip.GZIPInputStream
 import java.time.LocalDate
 import java.time.LocalDateTime
 import java.time.OffsetDateTime
@@ -320,6 +342,22 @@ class JsonSchemaGeneratorTest() {
 
     }
 
+    @Test
+    fun discriminatorMapping(): Unit {
+        Assert.assertTrue(jsonSchemaGenerator.generateJsonSchema(PojoWithParent::class.java).at("/properties/child/discriminator").isMissingNode)
+
+        val g = JsonSchemaGenerator(_objectMapper, config = JsonSchemaConfig.vanillaJsonSchemaDraft4.copy(useDiscriminatorMapping = true))
+        val jsonNode = assertToFromJson(g, testData.pojoWithParent)
+        val schema = generateAndValidateSchema(g, PojoWithParent::class.java, jsonNode)
+
+        val discriminator = schema.at("/properties/child/discriminator")
+        Assert.assertEquals("type", discriminator.get("propertyName").asText())
+        Assert.assertEquals("#/definitions/Child1", discriminator.at("/mapping/child1").asText())
+        Assert.assertEquals("#/definitions/Child2", discriminator.at("/mapping/child2").asText())
+        Assert.assertEquals(2, discriminator.get("mapping").size())
+        assertChild1(schema, "/properties/child/oneOf")
+    }
+
     @Test
     fun primitive(): Unit {
 
@@ -709,10 +747,478 @@ class JsonSchemaGeneratorTest() {
         }
     }
 
+    @Test
+    fun reconfiguringObjectMapper() {
+        val objectMapper = ObjectMapper()
+        val g = JsonSchemaGenerator(objectMapper)
+
+        Assert.assertTrue(g.generateJsonSchema(MixinParent::class.java).at("/oneOf").isMissingNode)
+
+        // Adding a mix-in must be picked up without clearing anything
+        objectMapper.registerModule(MixinModule())
+        val schema = g.generateJsonSchema(MixinParent::class.java)
+        assertChild1(schema, "/oneOf", defName = "MixinChild1")
+        assertChild2(schema, "/oneOf", defName = "MixinChild2")
+    }
+
+    @Test
+    fun polymorphismUsingRegisterSubtypes() {
+        val objectMapper = ObjectMapper()
+        objectMapper.registerSubtypes(
+                NamedType(RegisteredChild1::class.java, "registeredChild1"),
+                NamedType(RegisteredChild2::class.java, "registeredChild2"))
+        val g = JsonSchemaGenerator(objectMapper)
+
+        // A subtype on its own, before its parent is known
+        val child2 = g.generateJsonSchema(RegisteredChild2::class.java)
+        Assert.assertEquals("registeredChild2", child2.at("/properties/type/enum/0").asText())
+
+        val schema = g.generateJsonSchema(RegisteredParent::class.java)
+        assertJsonSubTypesInfo(getNodeViaArrayOfRefs(schema, "/oneOf", "RegisteredChild1"), "type", "registeredChild1")
+        assertJsonSubTypesInfo(getNodeViaArrayOfRefs(schema, "/oneOf", "RegisteredChild2"), "type", "registeredChild2")
+    }
+
     @Test
     fun issue24() {
         jsonSchemaGenerator.generateJsonSchema(EntityWrapper::class.java)
     }
+
+    @Test
+    fun cachedSchema() {
+        val cache = JsonSchemaCache(maxEntries = 2)
+        val g = JsonSchemaGenerator(_objectMapper, cache = cache)
+
+        val first = g.generateJsonSchema(PojoWithParent::class.java)
+        Assert.assertEquals(0, cache.hitCount)
+        Assert.assertEquals(1, cache.missCount)
+
+        // Modifying the returned schema must not affect what the next caller gets
+        (first as ObjectNode).put("title", "modified")
+
+        val second = g.generateJsonSchema(PojoWithParent::class.java)
+        Assert.assertEquals(1, cache.hitCount)
+        Assert.assertEquals(jsonSchemaGenerator.generateJsonSchema(PojoWithParent::class.java), second)
+        Assert.assertNotSame(second, g.generateJsonSchema(PojoWithParent::class.java))
+
+        // title and description are part of the key
+        g.generateJsonSchema(PojoWithParent::class.java, "title", null)
+        Assert.assertEquals(2, cache.missCount)
+        Assert.assertEquals(0, cache.evictionCount)
+
+        g.generateJsonSchema(RecursivePojo::class.java)
+        Assert.assertEquals(2, cache.size)
+        Assert.assertEquals(1, cache.evictionCount)
+    }
+
+    @Test
+    fun encodedSchema() {
+        val cache = JsonSchemaCache()
+        val g = JsonSchemaGenerator(_objectMapper, cache = cache)
+
+        val encoded = g.generateEncodedJsonSchema(PojoWithParent::class.java)
+        Assert.assertEquals(1, cache.missCount)
+        val expected = _objectMapper.writeValueAsBytes(jsonSchemaGenerator.generateJsonSchema(PojoWithParent::class.java))
+        Assert.assertArrayEquals(expected, encoded.toUtf8ByteArray())
+        Assert.assertEquals(expected.size, encoded.size)
+        Assert.assertArrayEquals(expected, GZIPInputStream(ByteArrayInputStream(encoded.toGzippedByteArray())).readBytes())
+        Assert.assertTrue(encoded.etag.matches(Regex("\"[0-9a-f]{64}\"")))
+
+        // Served from the cache, without encoding it again
+        Assert.assertSame(encoded, g.generateEncodedJsonSchema(PojoWithParent::class.java))
+        Assert.assertEquals(1, cache.hitCount)
+        Assert.assertEquals(1, cache.missCount)
+
+        // Same content gives the same ETag, even without a cache
+        val uncached = jsonSchemaGenerator.generateEncodedJsonSchema(PojoWithParent::class.java)
+        Assert.assertEquals(encoded.etag, uncached.etag)
+        Assert.assertNotEquals(encoded.etag, g.generateEncodedJsonSchema(PojoWithParent::class.java, "title", null).etag)
+
+        // The buffers handed out are read-only
+        Assert.assertTrue(encoded.getUtf8().isReadOnly)
+        Assert.assertEquals(encoded.gzippedSize, encoded.getGzipped().remaining())
+    }
+
+    @Test
+    fun exportPrebuiltSchemas() {
+        val dir = createTempDir()
+        try {
+            val outputDir = File(dir, "resources")
+            val exporter = JsonSchemaExporter(jsonSchemaGenerator, outputDir, File(dir, "manifest.properties"), "vanilla")
+            val classes = listOf(PojoWithParent::class.java, ManyPrimitives::class.java)
+
+            val first = exporter.export(classes)
+            Assert.assertEquals(classes, first.written)
+            val file = exporter.getFile(PojoWithParent::class.java.name)
+            Assert.assertEquals(jsonSchemaGenerator.generateJsonSchema(PojoWithParent::class.java), _objectMapper.readTree(file))
+
+            // Nothing changed - nothing generated
+            val second = exporter.export(classes)
+            Assert.assertEquals(classes, second.skipped)
+            Assert.assertTrue(second.written.isEmpty())
+
+            // Other settings - generated again, to the same files
+            val third = JsonSchemaExporter(jsonSchemaGenerator, outputDir, File(dir, "manifest.properties"), "other").export(classes)
+            Assert.assertEquals(classes, third.unchanged)
+
+            // Files of classes no longer exported are deleted
+            val fourth = exporter.export(listOf(PojoWithParent::class.java))
+            Assert.assertEquals(listOf(ManyPrimitives::class.java.name), fourth.deleted)
+            Assert.assertFalse(exporter.getFile(ManyPrimitives::class.java.name).exists())
+
+            val prebuilt = PrebuiltJsonSchemas(jsonSchemaGenerator, URLClassLoader(arrayOf(outputDir.toURI().toURL()), null))
+            Assert.assertTrue(prebuilt.isPrebuilt(PojoWithParent::class.java))
+            Assert.assertEquals(_objectMapper.readTree(file), prebuilt.getJsonSchema(PojoWithParent::class.java))
+
+            // Falls back to generating it
+            Assert.assertFalse(prebuilt.isPrebuilt(ManyPrimitives::class.java))
+            Assert.assertEquals(jsonSchemaGenerator.generateJsonSchema(ManyPrimitives::class.java), prebuilt.getJsonSchema(ManyPrimitives::class.java))
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun persistentCache() {
+        val dir = createTempDir()
+        try {
+            val file = File(dir, "schemas.cache")
+            val visitCounter = VisitCountingModule()
+            val objectMapper = ObjectMapper()
+            objectMapper.registerModule(visitCounter)
+            val fresh = JsonSchemaGenerator(objectMapper)
+
+            PersistentJsonSchemaCache(file).use {
+                val g = JsonSchemaGenerator(objectMapper, persistentCache = it)
+                Assert.assertEquals(fresh.generateJsonSchema(PojoWithParent::class.java).toString(), g.generateJsonSchema(PojoWithParent::class.java).toString())
+                g.generateJsonSchema(Parent::class.java, "title", null)
+                Assert.assertEquals(2, it.size)
+            }
+
+            // As after a restart - read from the file, nothing visited
+            visitCounter.reset()
+            PersistentJsonSchemaCache(file).use {
+                Assert.assertEquals(2, it.size)
+                val schema = JsonSchemaGenerator(objectMapper, persistentCache = it).generateJsonSchema(PojoWithParent::class.java)
+                Assert.assertEquals(0, visitCounter.getVisitCount(PojoWithParent::class.java))
+                Assert.assertEquals(fresh.generateJsonSchema(PojoWithParent::class.java).toString(), schema.toString())
+
+                // Encoded and written from the bytes stored
+                val expectedBytes = objectMapper.writeValueAsBytes(fresh.generateJsonSchema(PojoWithParent::class.java))
+                val expectedWritten = fresh.generateJsonSchema(Parent::class.java, "title", null).toString()
+                visitCounter.reset()
+                val g = JsonSchemaGenerator(objectMapper, persistentCache = it)
+                Assert.assertArrayEquals(expectedBytes, g.generateEncodedJsonSchema(PojoWithParent::class.java).toUtf8ByteArray())
+                val written = StringWriter()
+                objectMapper.factory.createGenerator(written).use { w -> g.writeJsonSchema(Parent::class.java, w, "title") }
+                Assert.assertEquals(expectedWritten, written.toString())
+                Assert.assertEquals(0, visitCounter.getVisitCount(PojoWithParent::class.java))
+                Assert.assertEquals(0, visitCounter.getVisitCount(Parent::class.java))
+
+                // Other config - another entry
+                JsonSchemaGenerator(objectMapper, JsonSchemaConfig.html5EnabledSchema, persistentCache = it).generateJsonSchema(PojoWithParent::class.java)
+                Assert.assertEquals(3, it.size)
+
+                // Stored when written or encoded
+                g.writeJsonSchema(ManyPrimitives::class.java, objectMapper.factory.createGenerator(StringWriter()))
+                g.generateEncodedJsonSchema(PojoWithArrays::class.java)
+                Assert.assertEquals(5, it.size)
+            }
+
+            // A partly written entry is cut off
+            val length = file.length()
+            file.appendBytes(byteArrayOf(0, 0, 0, 10, 0, 0))
+            PersistentJsonSchemaCache(file).use {
+                Assert.assertEquals(5, it.size)
+            }
+            Assert.assertEquals(length, file.length())
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    @JsonIgnoreProperties("groupId")
+    abstract class VersionMixIn
+
+    // Classes from a jar are fingerprinted by the jar, but a mixin set on the ObjectMapper still changes the key
+    @Test
+    fun persistentCacheMixInOfClassInJar() {
+        val dir = createTempDir()
+        try {
+            PersistentJsonSchemaCache(File(dir, "schemas.cache")).use {
+                val schema = JsonSchemaGenerator(ObjectMapper(), persistentCache = it).generateJsonSchema(Version::class.java)
+                Assert.assertTrue(schema.at("/properties").has("groupId"))
+
+                val objectMapper = ObjectMapper().addMixIn(Version::class.java, VersionMixIn::class.java)
+                val mixedIn = JsonSchemaGenerator(objectMapper, persistentCache = it).generateJsonSchema(Version::class.java)
+                Assert.assertFalse(mixedIn.at("/properties").has("groupId"))
+                Assert.assertEquals(2, it.size)
+            }
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    // Caches of this process and of another one append to the same file, while more caches are opened on it - nothing
+    // being appended is taken for a torn record and cut off
+    @Test
+    fun persistentCacheSharedByManyCaches() {
+        val dir = createTempDir()
+        try {
+            val file = File(dir, "schemas.cache")
+            val count = 100
+            val javaBin = File(System.getProperty("java.home"), "bin/java").path
+            val writer = ProcessBuilder(javaBin, "-cp", System.getProperty("java.class.path"),
+                    PersistentJsonSchemaCacheWriter::class.java.name, file.path, "other", count.toString())
+                    .redirectErrorStream(true).start()
+            PersistentJsonSchemaCache(file).use {
+                a ->
+                PersistentJsonSchemaCache(file).use {
+                    b ->
+                    val threads = listOf(a, b).mapIndexed {
+                        i, cache ->
+                        Thread { PersistentJsonSchemaCacheWriter.write(cache, "this$i", count) }
+                    }
+                    threads.forEach { it.start() }
+                    while (threads.any { it.isAlive }) {
+                        PersistentJsonSchemaCache(file).close()
+                    }
+                    threads.forEach { it.join() }
+                }
+            }
+            Assert.assertEquals(writer.inputStream.reader().readText(), 0, writer.waitFor())
+
+            PersistentJsonSchemaCache(file).use {
+                Assert.assertEquals(3 * count, it.size)
+                for (prefix in listOf("this0", "this1", "other")) {
+                    for (i in 0..count - 1) {
+                        val value = it.get("$prefix-$i")!!
+                        val bytes = ByteArray(value.remaining())
+                        value.get(bytes)
+                        Assert.assertEquals(PersistentJsonSchemaCacheWriter.getValue(prefix, i), String(bytes, Charsets.UTF_8))
+                    }
+                }
+            }
+        } finally {
+            dir.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun reuseDefinitions() {
+        val visitCounter = VisitCountingModule()
+        val objectMapper = ObjectMapper()
+        objectMapper.registerModule(Jdk8Module())
+        objectMapper.registerModule(visitCounter)
+
+        val g = JsonSchemaGenerator(objectMapper, reuseDefinitions = true)
+        val fresh = JsonSchemaGenerator(objectMapper)
+
+        fun assertSameAsFresh(clazz: Class<*>) {
+            Assert.assertEquals(fresh.generateJsonSchema(clazz).toString(), g.generateJsonSchema(clazz).toString())
+        }
+
+        assertSameAsFresh(PojoWithArrays::class.java)
+        assertSameAsFresh(RecursivePojo::class.java)
+
+        // Child1, Child2 and ClassNotExtendingAnything are now known - they must be copied, not visited
+        visitCounter.reset()
+        listOf(PojoUsingMaps::class.java, PojoWithParent::class.java, Parent::class.java).forEach {
+            g.generateJsonSchema(it)
+        }
+        Assert.assertEquals(0, visitCounter.getVisitCount(Child1::class.java))
+        Assert.assertEquals(0, visitCounter.getVisitCount(Child2::class.java))
+
+        listOf(PojoUsingMaps::class.java, PojoWithParent::class.java, Parent::class.java,
+                PojoUsingOptionalJava::class.java, RecursivePojo::class.java).forEach {
+            assertSameAsFresh(it)
+        }
+    }
+
+    @Test
+    fun generationListener() {
+        val events = ArrayList<String>()
+        val listener = object : JsonSchemaGenerationListener() {
+            override fun onCompileStart(rootClass: Class<*>) { events.add("compile ${rootClass.simpleName}") }
+            override fun onVisitStart(type: JavaType, depth: Int) { events.add("$depth visit ${type.rawClass.simpleName}") }
+            override fun onProperty(name: String, type: JavaType, property: BeanProperty?, required: Boolean, depth: Int) {
+                events.add("$depth property $name $required")
+            }
+            override fun onDefinitionCreated(clazz: Class<*>, depth: Int) { events.add("$depth created ${clazz.simpleName}") }
+            override fun onDefinitionEnd(clazz: Class<*>, depth: Int) { events.add("$depth end ${clazz.simpleName}") }
+            override fun onRefReused(clazz: Class<*>, depth: Int) { events.add("$depth ref ${clazz.simpleName}") }
+            override fun onPolymorphismBranch(baseType: JavaType, subType: Class<*>, depth: Int) {
+                events.add("$depth branch ${baseType.rawClass.simpleName} ${subType.simpleName}")
+            }
+        }
+        val g = JsonSchemaGenerator(_objectMapper, listener = listener)
+
+        // Listening changes nothing
+        Assert.assertEquals(JsonSchemaGenerator(_objectMapper).generateJsonSchema(PojoWithParent::class.java).toString(),
+                g.generateJsonSchema(PojoWithParent::class.java).toString())
+        Assert.assertEquals("compile PojoWithParent", events[0])
+        Assert.assertEquals("0 visit PojoWithParent", events[1])
+        Assert.assertTrue(events.contains("0 property intWithDefault true"))
+        Assert.assertTrue(events.contains("0 property stringWithDefault false"))
+        val branch = events.indexOf("1 branch Parent Child1")
+        Assert.assertEquals(events.indexOf("0 property child false") + 2, branch)
+        Assert.assertEquals("2 created Child1", events[branch + 1])
+        Assert.assertEquals("2 visit Child1", events[branch + 2])
+        Assert.assertTrue(events.contains("2 created Child2"))
+        Assert.assertTrue(events.indexOf("2 end Child1") > branch)
+        Assert.assertTrue(events.indexOf("2 end Child1") < events.indexOf("1 branch Parent Child2"))
+
+        // The root is not a definition - its children are, and refer to it once created
+        events.clear()
+        g.generateJsonSchema(RecursivePojo::class.java)
+        Assert.assertEquals(1, events.count { it.endsWith("created RecursivePojo") })
+        // Its definition ends after the ref to it, made while visiting it
+        Assert.assertTrue(events.indexOf("2 end RecursivePojo") > events.indexOf("4 ref RecursivePojo"))
+        Assert.assertTrue(events.any { it.endsWith("ref RecursivePojo") })
+    }
+
+    @Test
+    fun generationMetrics() {
+        val metrics = JsonSchemaGeneratorMetrics()
+        val cache = JsonSchemaCache()
+        val g = JsonSchemaGenerator(_objectMapper, cache = cache, metrics = metrics)
+
+        g.generateJsonSchema(RecursivePojo::class.java)
+        Assert.assertEquals(1, metrics.definitionsCreated)
+        Assert.assertEquals(1, metrics.refsReused)
+        // RecursivePojo (root, definition and ref), and myText and children in both root and definition
+        Assert.assertEquals(7, metrics.visitorInvocations)
+        Assert.assertEquals(7, metrics.typesVisited)
+
+        g.generateJsonSchema(PojoWithParent::class.java)
+        Assert.assertEquals(3, metrics.definitionsCreated)
+
+        // Found in cache - not generated again
+        g.generateJsonSchema(PojoWithParent::class.java)
+        Assert.assertEquals(1, cache.hitCount)
+        Assert.assertEquals(2, cache.missCount)
+        val latency = metrics.getLatency(PojoWithParent::class.java)!!
+        Assert.assertEquals(1, latency.count)
+        Assert.assertTrue(latency.totalNanos > 0)
+        Assert.assertEquals(latency.maxNanos, latency.getPercentileNanos(1.0))
+        Assert.assertEquals(setOf(RecursivePojo::class.java.name, PojoWithParent::class.java.name), metrics.getLatencies().keys)
+
+        val generated = ArrayList<Class<*>>()
+        metrics.addObserver(object : JsonSchemaGeneratorMetrics.GenerationObserver {
+            override fun onGeneration(rootClass: Class<*>, nanos: Long) {
+                generated.add(rootClass)
+            }
+        })
+        g.writeJsonSchema(PojoWithArrays::class.java, _objectMapper.factory.createGenerator(StringWriter()))
+        Assert.assertEquals(listOf(PojoWithArrays::class.java), generated)
+
+        metrics.reset()
+        Assert.assertEquals(0, metrics.definitionsCreated)
+        Assert.assertTrue(metrics.getLatencies().isEmpty())
+    }
+
+    @Test
+    fun renderCompiledSchemaUsingManyConfigs() {
+        val generators = listOf(jsonSchemaGenerator, jsonSchemaGeneratorHTML5,
+                JsonSchemaGenerator(_objectMapper, config = vanillaJsonSchemaDraft4WithIds))
+
+        listOf(PojoWithParent::class.java, PojoUsingOptionalJava::class.java, PojoUsingFormat::class.java,
+                ClassUsingValidation::class.java, RecursivePojo::class.java).forEach {
+            clazz ->
+            val compiled = jsonSchemaGenerator.compileJsonSchema(clazz)
+
+            // A compiled schema can be stored, and rendered later without visiting anything
+            val bytes = ByteArrayOutputStream()
+            ObjectOutputStream(bytes).use { it.writeObject(compiled) }
+            val loaded = ObjectInputStream(ByteArrayInputStream(bytes.toByteArray())).use { it.readObject() } as CompiledSchema
+
+            generators.forEach {
+                val expected = it.generateJsonSchema(clazz, "title", null).toString()
+                val renderer = JsonSchemaDraft4Renderer(it.config)
+                Assert.assertEquals(expected, renderer.render(compiled, "title", null).toString())
+                Assert.assertEquals(expected, renderer.render(loaded, "title", null).toString())
+            }
+        }
+    }
+
+    @Test
+    fun writeSchemaToJsonGenerator() {
+        val cached = JsonSchemaGenerator(_objectMapper, cache = JsonSchemaCache())
+
+        listOf(jsonSchemaGenerator, jsonSchemaGeneratorHTML5, cached).forEach {
+            g ->
+            listOf(PojoWithParent::class.java, PojoUsingMaps::class.java, ManyPrimitives::class.java, RecursivePojo::class.java).forEach {
+                val expected = _objectMapper.writeValueAsString(g.generateJsonSchema(it, null, "description"))
+
+                val writer = StringWriter()
+                val generator = _objectMapper.factory.createGenerator(writer)
+                g.writeJsonSchema(it, generator, description = "description")
+                generator.close()
+
+                Assert.assertEquals(expected, writer.toString())
+            }
+        }
+    }
+
+    @Test
+    fun generateManySchemasInOneBundle() {
+        val bundle = jsonSchemaGenerator.generateJsonSchemas(listOf(
+                PojoWithArrays::class.java, PojoUsingMaps::class.java, Parent::class.java,
+                RecursivePojo::class.java, Child1::class.java, SameNameAsOtherClass.Child1::class.java))
+        println(asPrettyJson(bundle.schema, _objectMapper))
+
+        Assert.assertEquals(JsonSchemaGenerator.JSON_SCHEMA_DRAFT_4_URL, bundle.schema.at("/\$schema").asText())
+        Assert.assertEquals("#/definitions/PojoWithArrays", bundle.refs[PojoWithArrays::class.java])
+        Assert.assertEquals("#/definitions/RecursivePojo", bundle.refs[RecursivePojo::class.java])
+        // Child1 was already created while processing PojoWithArrays
+        Assert.assertEquals("#/definitions/Child1", bundle.refs[Child1::class.java])
+        Assert.assertEquals("#/definitions/Child1_1", bundle.refs[SameNameAsOtherClass.Child1::class.java])
+
+        // Shared types are only defined once, and refer to the root definitions
+        val definitionNames = bundle.schema.at("/definitions").fieldNames().asSequence().toList()
+        Assert.assertEquals(definitionNames.distinct(), definitionNames)
+        Assert.assertEquals("#/definitions/RecursivePojo", bundle.schema.at("/definitions/RecursivePojo/properties/children/items/\$ref").asText())
+        assertChild1(bundle.schema, "/definitions/Parent/oneOf")
+        assertChild2(bundle.schema, "/definitions/Parent/oneOf")
+
+        useSchema(bundle.getJsonSchema(RecursivePojo::class.java), assertToFromJson(jsonSchemaGenerator, testData.recursivePojo))
+        useSchema(bundle.getJsonSchema(PojoWithArrays::class.java), assertToFromJson(jsonSchemaGenerator, testData.pojoWithArrays))
+        useSchema(bundle.getJsonSchema(Parent::class.java), assertToFromJson(jsonSchemaGenerator, testData.child1))
+    }
+}
+
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+abstract class RegisteredParent {
+    var parentString: String? = null
+}
+
+class RegisteredChild1 : RegisteredParent() {
+    var child1String: String? = null
+}
+
+class RegisteredChild2 : RegisteredParent() {
+    var child2int: Int = 0
+}
+
+class SameNameAsOtherClass {
+    class Child1 {
+        var x: Int = 0
+    }
+}
+
+// Appends entries to a PersistentJsonSchemaCache from another process - see persistentCacheSharedByManyCaches
+object PersistentJsonSchemaCacheWriter {
+
+    fun getValue(prefix: String, i: Int): String = "{\"$prefix\": $i, \"padding\": \"${"x".repeat(i * 4000)}\"}"
+
+    fun write(cache: PersistentJsonSchemaCache, prefix: String, count: Int) {
+        for (i in 0..count - 1) {
+            cache.put("$prefix-$i", getValue(prefix, i).toByteArray(Charsets.UTF_8))
+        }
+    }
+
+    @JvmStatic fun main(args: Array<String>) {
+        PersistentJsonSchemaCache(File(args[0])).use { write(it, args[1], args[2].toInt()) }
+    }
 }
 
 class TestData {
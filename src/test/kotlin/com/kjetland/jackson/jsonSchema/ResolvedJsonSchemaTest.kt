@@ -0,0 +1,93 @@
+package com.kjetland.jackson.jsonSchema
+
+import com.dr.ktjsonschema.JsonSchemaGenerator
+import com.dr.ktjsonschema.ResolvedJsonSchema
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import com.kjetland.jackson.jsonSchema.testData.PojoUsingOptionalJava
+import com.kjetland.jackson.jsonSchema.testData.PojoWithParent
+import com.kjetland.jackson.jsonSchema.testData.RecursivePojo
+import org.junit.Assert
+import org.junit.Test
+
+class ResolvedJsonSchemaTest {
+
+    val objectMapper = ObjectMapper()
+
+    init {
+        objectMapper.registerModule(KotlinModule())
+        objectMapper.registerModule(Jdk8Module())
+    }
+
+    val jsonSchemaGenerator = JsonSchemaGenerator(objectMapper)
+
+    // The pointer of every value in json
+    fun getPointers(json: JsonNode, pointer: String = ""): List<String> {
+        return listOf(pointer) + when {
+            json.isObject -> json.fields().asSequence().toList().flatMap {
+                getPointers(it.value, pointer + "/" + it.key.replace("~", "~0").replace("/", "~1"))
+            }
+            json.isArray -> (0..json.size() - 1).flatMap { getPointers(json.get(it), "$pointer/$it") }
+            else -> emptyList()
+        }
+    }
+
+    @Test
+    fun indexesEveryPointer() {
+        for (clazz in listOf(PojoWithParent::class.java, RecursivePojo::class.java, PojoUsingOptionalJava::class.java)) {
+            val schema = jsonSchemaGenerator.generateJsonSchema(clazz)
+            val resolved = ResolvedJsonSchema(schema)
+            for (pointer in getPointers(schema)) {
+                Assert.assertSame(pointer, schema.at(pointer), resolved.getJson(pointer))
+            }
+            Assert.assertNull(resolved.getJson("/definitions/Missing"))
+        }
+    }
+
+    // The definition is reached again through its own property, instead of being expanded
+    @Test
+    fun recursiveRefs() {
+        val resolved = ResolvedJsonSchema(jsonSchemaGenerator.generateJsonSchema(RecursivePojo::class.java))
+        val definition = resolved.getDefinition("RecursivePojo")!!
+        Assert.assertSame(definition, resolved.root.getProperty("children")!!.items)
+        Assert.assertSame(definition, definition.getProperty("children")!!.items)
+        Assert.assertSame(definition, resolved.resolve("#/definitions/RecursivePojo"))
+        Assert.assertEquals("/definitions/RecursivePojo", definition.pointer)
+        Assert.assertEquals("string", definition.getProperty("myText")!!.type)
+
+        val reachable = resolved.getReachableNodes()
+        Assert.assertEquals(reachable.size, reachable.toSet().size)
+        Assert.assertEquals(listOf("", "/properties/myText", "/properties/children", "/definitions/RecursivePojo",
+                "/definitions/RecursivePojo/properties/myText", "/definitions/RecursivePojo/properties/children"),
+                reachable.map { it.pointer })
+    }
+
+    @Test
+    fun polymorphism() {
+        val resolved = ResolvedJsonSchema(jsonSchemaGenerator.generateJsonSchema(PojoWithParent::class.java))
+        Assert.assertEquals(listOf("Child1", "Child2"), resolved.definitionNames.sorted())
+
+        val child = resolved.root.getProperty("child")!!
+        Assert.assertEquals(setOf(resolved.getDefinition("Child1"), resolved.getDefinition("Child2")), child.oneOf.toSet())
+        for (subType in child.oneOf) {
+            Assert.assertTrue(subType.required.contains("type"))
+            Assert.assertEquals("object", subType.type)
+        }
+        Assert.assertTrue(resolved.getReachableNodes().containsAll(child.oneOf))
+    }
+
+    @Test
+    fun unresolvableRefs() {
+        listOf("""{"${'$'}ref": "#/definitions/Missing"}""", """{"${'$'}ref": "http://example.com/schema"}""",
+                """{"${'$'}ref": "#/definitions/A", "definitions": {"A": {"${'$'}ref": "#/definitions/A"}}}""").forEach {
+            try {
+                ResolvedJsonSchema(objectMapper.readTree(it)).root
+                Assert.fail("Resolved $it")
+            } catch (e: Exception) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.kjetland.jackson.jsonSchema
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo
+import java.io.File
+import java.net.URI
+import java.net.URLClassLoader
+import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.ToolProvider
+
+// Builds large class graphs at runtime, by compiling generated Java sources with the JDK's compiler.
+// Each graph gets its own package, and each method returns the class to generate the schema of
+object SyntheticClassGraphs {
+    private val graphCount = AtomicInteger()
+
+    private val outputDir: File by lazy {
+        val dir = createTempDir("synthetic-classes")
+        Runtime.getRuntime().addShutdownHook(Thread({ dir.deleteRecursively() }))
+        dir
+    }
+
+    private val propertyTypes = listOf("String", "int", "Integer", "long", "double", "boolean", "java.util.List<String>")
+
+    // false when running on a JRE
+    val isAvailable: Boolean
+        get() = ToolProvider.getSystemJavaCompiler() != null
+
+    // A class with propertyCount properties, of all kinds
+    fun wide(propertyCount: Int): Class<*> {
+        val pkg = newPackage("wide")
+        return compile(pkg, mapOf("Wide" to createClass(pkg, "public class Wide", properties(propertyCount))))["Wide"]!!
+    }
+
+    // classCount classes, each referring to the next one, and the last one back to the first one
+    fun deep(classCount: Int): Class<*> {
+        val pkg = newPackage("deep")
+        val sources = LinkedHashMap<String, String>()
+        for (i in 0..classCount - 1) {
+            val next = if (i == classCount - 1) "Level0 first" else "Level${i + 1} child"
+            sources.put("Level$i", createClass(pkg, "public class Level$i", properties(3) + "    public $next;\n"))
+        }
+        return compile(pkg, sources)["Level0"]!!
+    }
+
+    // A tree of classCount classes, each referring to its two children and back to its parent.
+    // Deep as log2(classCount) - thousands of classes can be visited without running out of stack
+    fun tree(classCount: Int, propertiesPerClass: Int): Class<*> {
+        val pkg = newPackage("tree")
+        val sources = LinkedHashMap<String, String>()
+        for (i in 0..classCount - 1) {
+            val body = StringBuilder(properties(propertiesPerClass))
+            if (i > 0)
+                body.append("    public Node${(i - 1) / 2} parent;\n")
+            for (child in listOf(2 * i + 1, 2 * i + 2).filter { it < classCount }) {
+                body.append("    public Node$child child$child;\n")
+            }
+            sources.put("Node$i", createClass(pkg, "public class Node$i", body.toString()))
+        }
+        return compile(pkg, sources)["Node0"]!!
+    }
+
+    // A polymorphic base class with subtypeCount subtypes, held by the class returned
+    fun subtypes(subtypeCount: Int): Class<*> {
+        val pkg = newPackage("subtypes")
+        val sources = LinkedHashMap<String, String>()
+        val subTypes = (0..subtypeCount - 1).joinToString(",\n") { "        @JsonSubTypes.Type(value = Sub$it.class, name = \"sub$it\")" }
+        sources.put("Base", createClass(pkg,
+                "@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = \"type\")\n" +
+                        "@JsonSubTypes({\n$subTypes\n})\npublic abstract class Base", properties(2)))
+        for (i in 0..subtypeCount - 1) {
+            sources.put("Sub$i", createClass(pkg, "public class Sub$i extends Base", "    public String value$i;\n    public Shared shared;\n"))
+        }
+        sources.put("Shared", createClass(pkg, "public class Shared", properties(3)))
+        sources.put("Holder", createClass(pkg, "public class Holder", "    public Base main;\n    public java.util.List<Base> all;\n"))
+        return compile(pkg, sources)["Holder"]!!
+    }
+
+    // classCount classes all named Item (nested in classes of their own), held by the class returned
+    fun sameSimpleName(classCount: Int): Class<*> {
+        val pkg = newPackage("names")
+        val sources = LinkedHashMap<String, String>()
+        val holder = StringBuilder()
+        for (i in 0..classCount - 1) {
+            sources.put("Group$i", createClass(pkg, "public class Group$i",
+                    "    public static class Item {\n${properties(2)}    }\n"))
+            holder.append("    public Group$i.Item item$i;\n")
+        }
+        sources.put("Holder", createClass(pkg, "public class Holder", holder.toString()))
+        return compile(pkg, sources)["Holder"]!!
+    }
+
+    private fun newPackage(kind: String) = "synthetic.$kind${graphCount.incrementAndGet()}"
+
+    private fun properties(count: Int): String {
+        val sb = StringBuilder()
+        for (i in 0..count - 1) {
+            sb.append("    public ${propertyTypes[i % propertyTypes.size]} p$i;\n")
+        }
+        return sb.toString()
+    }
+
+    private fun createClass(pkg: String, declaration: String, body: String) =
+            "package $pkg;\n\nimport com.fasterxml.jackson.annotation.*;\n\n$declaration {\n$body}\n"
+
+    // Compiles the sources (simple class name -> source) and loads them
+    private fun compile(pkg: String, sources: Map<String, String>): Map<String, Class<*>> {
+        val compiler = ToolProvider.getSystemJavaCompiler() ?: throw Exception("No Java compiler - running on a JRE?")
+        val files = sources.map {
+            entry ->
+            object : SimpleJavaFileObject(URI.create("string:///${pkg.replace('.', '/')}/${entry.key}.java"), JavaFileObject.Kind.SOURCE) {
+                override fun getCharContent(ignoreEncodingErrors: Boolean): CharSequence = entry.value
+            }
+        }
+        // Only jackson's annotations are needed
+        val classPath = File(JsonTypeInfo::class.java.protectionDomain.codeSource.location.toURI()).path
+        val options = listOf("-d", outputDir.path, "-classpath", classPath, "-nowarn", "-proc:none")
+        if (!compiler.getTask(null, null, null, options, null, files).call())
+            throw Exception("Could not compile the synthetic classes of $pkg")
+
+        val classLoader = URLClassLoader(arrayOf(outputDir.toURI().toURL()), javaClass.classLoader)
+        return sources.keys.associate { it to classLoader.loadClass("$pkg.$it") }
+    }
+}
@@ -0,0 +1,59 @@
+package com.kjetland.jackson.jsonSchema
+
+import com.fasterxml.jackson.core.JsonGenerator
+import com.fasterxml.jackson.databind.*
+import com.fasterxml.jackson.databind.jsonFormatVisitors.JsonFormatVisitorWrapper
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer
+import com.fasterxml.jackson.databind.module.SimpleModule
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier
+import com.fasterxml.jackson.databind.ser.ContextualSerializer
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+// Counts how many times the schema of each bean class is visited
+class VisitCountingModule : SimpleModule() {
+    private val visits = ConcurrentHashMap<Class<*>, AtomicInteger>()
+
+    fun getVisitCount(clazz: Class<*>): Int = visits[clazz]?.get() ?: 0
+
+    fun reset() = visits.clear()
+
+    init {
+        setSerializerModifier(object : BeanSerializerModifier() {
+            override fun modifySerializer(config: SerializationConfig, beanDesc: BeanDescription, serializer: JsonSerializer<*>): JsonSerializer<*> {
+                @Suppress("UNCHECKED_CAST")
+                return CountingSerializer(beanDesc.beanClass, serializer as JsonSerializer<Any>)
+            }
+        })
+    }
+
+    inner class CountingSerializer(val beanClass: Class<*>, val delegate: JsonSerializer<Any>)
+        : JsonSerializer<Any>(), ContextualSerializer, ResolvableSerializer {
+
+        override fun serialize(value: Any?, gen: JsonGenerator?, serializers: SerializerProvider?) {
+            delegate.serialize(value, gen, serializers)
+        }
+
+        override fun serializeWithType(value: Any?, gen: JsonGenerator?, serializers: SerializerProvider?, typeSer: TypeSerializer?) {
+            delegate.serializeWithType(value, gen, serializers, typeSer)
+        }
+
+        override fun acceptJsonFormatVisitor(visitor: JsonFormatVisitorWrapper?, type: JavaType?) {
+            visits.getOrPut(beanClass) { AtomicInteger() }.incrementAndGet()
+            delegate.acceptJsonFormatVisitor(visitor, type)
+        }
+
+        override fun resolve(provider: SerializerProvider?) {
+            (delegate as? ResolvableSerializer)?.resolve(provider)
+        }
+
+        override fun createContextual(prov: SerializerProvider?, property: BeanProperty?): JsonSerializer<*> {
+            val contextual = (delegate as? ContextualSerializer)?.createContextual(prov, property) ?: delegate
+            if (contextual === delegate)
+                return this
+            @Suppress("UNCHECKED_CAST")
+            return CountingSerializer(beanClass, contextual as JsonSerializer<Any>)
+        }
+    }
+}